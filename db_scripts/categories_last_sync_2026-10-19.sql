@@ -0,0 +1,6 @@
+-- Upgrade for databases created before category refreshes were tracked.
+-- Existing categories start without a last sync (UTC) and are fully
+-- synchronized on their next use.
+
+ALTER TABLE `categories`
+  ADD COLUMN `last_sync` datetime DEFAULT NULL AFTER `category_name`;
@@ -0,0 +1,12 @@
+-- Upgrade for databases created before failed fetches were remembered.
+-- revision_date 1970-01-01 00:00:00 marks a failure of the whole page.
+
+CREATE TABLE `fetch_tombstones` (
+  `page_id` int(11) NOT NULL,
+  `revision_date` datetime NOT NULL,
+  `reason` varchar(32) NOT NULL,
+  `attempts` int(11) NOT NULL,
+  `retry_after` datetime NOT NULL,
+  PRIMARY KEY (`page_id`,`revision_date`),
+  KEY `retry_after` (`retry_after`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8;
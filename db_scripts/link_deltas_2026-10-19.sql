@@ -0,0 +1,15 @@
+-- Temporal link storage: per page a checkpoint row (base_revision_date =
+-- revision_date, chain_length 0, added = full link set) followed by rows that
+-- only hold the targets added/removed relative to base_revision_date.
+-- Blobs are LinkSetCodec encoded ids of link_titles (link_sets_2026-10-19.sql).
+
+CREATE TABLE `link_deltas` (
+  `src_page_id` int(11) NOT NULL,
+  `revision_date` datetime NOT NULL,
+  `base_revision_date` datetime NOT NULL,
+  `chain_length` int(11) NOT NULL,
+  `nbr_links` int(11) NOT NULL,
+  `added` mediumblob NOT NULL,
+  `removed` mediumblob NOT NULL,
+  PRIMARY KEY (`src_page_id`,`revision_date`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8;
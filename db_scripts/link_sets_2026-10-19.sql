@@ -0,0 +1,20 @@
+-- Compressed link storage: one row per (page, revision date) holding the
+-- deflated, delta-varint encoded ids of all link targets (see LinkSetCodec).
+-- Titles are dictionary encoded in link_titles, the binary collation keeps
+-- titles that differ only in case apart.
+-- Fill with: java wikipedia.database.LinkSetMigration
+
+CREATE TABLE `link_titles` (
+  `title_id` int(11) NOT NULL AUTO_INCREMENT,
+  `title` varchar(255) CHARACTER SET utf8 COLLATE utf8_bin NOT NULL,
+  PRIMARY KEY (`title_id`),
+  UNIQUE KEY `title` (`title`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8;
+
+CREATE TABLE `link_sets` (
+  `src_page_id` int(11) NOT NULL,
+  `revision_date` datetime NOT NULL,
+  `nbr_links` int(11) NOT NULL,
+  `links` mediumblob NOT NULL,
+  PRIMARY KEY (`src_page_id`,`revision_date`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8;
@@ -0,0 +1,20 @@
+-- Upgrade for databases created before the unique link key was introduced.
+-- Removes duplicate links and replaces the (src_page_id, revision_date) key,
+-- which is a prefix of the new unique key.
+-- Duplicates are identical rows, so the links are copied into a new table with
+-- the unique key (INSERT IGNORE keeps one row each) and the tables are swapped.
+-- Stop all fetchers before running it.
+
+CREATE TABLE `outgoing_links_dedup` LIKE `outgoing_links`;
+ALTER TABLE `outgoing_links_dedup`
+  ADD UNIQUE KEY `link` (`src_page_id`,`revision_date`,`target_page_title`(255)),
+  DROP KEY `page_id`;
+INSERT IGNORE INTO `outgoing_links_dedup` (`src_page_id`, `target_page_title`, `revision_date`)
+  SELECT `src_page_id`, `target_page_title`, `revision_date` FROM `outgoing_links`;
+
+-- foreign key names are unique per database, drop the old table first
+DROP TABLE `outgoing_links`;
+RENAME TABLE `outgoing_links_dedup` TO `outgoing_links`;
+ALTER TABLE `outgoing_links`
+  ADD CONSTRAINT `page_id_link` FOREIGN KEY (`src_page_id`) REFERENCES `pages` (`page_id`)
+  ON DELETE NO ACTION ON UPDATE NO ACTION;
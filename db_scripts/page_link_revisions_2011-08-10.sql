@@ -25,10 +25,79 @@ DROP TABLE IF EXISTS `categories`;
 CREATE TABLE `categories` (
   `category_id` int(11) NOT NULL AUTO_INCREMENT,
   `category_name` varchar(256) NOT NULL,
+  `last_sync` datetime DEFAULT NULL,
   PRIMARY KEY (`category_id`)
 ) ENGINE=InnoDB AUTO_INCREMENT=57 DEFAULT CHARSET=utf8;
 /*!40101 SET character_set_client = @saved_cs_client */;
 
+--
+-- Table structure for table `fetch_tombstones`
+--
+
+DROP TABLE IF EXISTS `fetch_tombstones`;
+/*!40101 SET @saved_cs_client     = @@character_set_client */;
+/*!40101 SET character_set_client = utf8 */;
+CREATE TABLE `fetch_tombstones` (
+  `page_id` int(11) NOT NULL,
+  `revision_date` datetime NOT NULL,
+  `reason` varchar(32) NOT NULL,
+  `attempts` int(11) NOT NULL,
+  `retry_after` datetime NOT NULL,
+  PRIMARY KEY (`page_id`,`revision_date`),
+  KEY `retry_after` (`retry_after`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8;
+/*!40101 SET character_set_client = @saved_cs_client */;
+
+--
+-- Table structure for table `link_deltas`
+--
+
+DROP TABLE IF EXISTS `link_deltas`;
+/*!40101 SET @saved_cs_client     = @@character_set_client */;
+/*!40101 SET character_set_client = utf8 */;
+CREATE TABLE `link_deltas` (
+  `src_page_id` int(11) NOT NULL,
+  `revision_date` datetime NOT NULL,
+  `base_revision_date` datetime NOT NULL,
+  `chain_length` int(11) NOT NULL,
+  `nbr_links` int(11) NOT NULL,
+  `added` mediumblob NOT NULL,
+  `removed` mediumblob NOT NULL,
+  PRIMARY KEY (`src_page_id`,`revision_date`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8;
+/*!40101 SET character_set_client = @saved_cs_client */;
+
+--
+-- Table structure for table `link_sets`
+--
+
+DROP TABLE IF EXISTS `link_sets`;
+/*!40101 SET @saved_cs_client     = @@character_set_client */;
+/*!40101 SET character_set_client = utf8 */;
+CREATE TABLE `link_sets` (
+  `src_page_id` int(11) NOT NULL,
+  `revision_date` datetime NOT NULL,
+  `nbr_links` int(11) NOT NULL,
+  `links` mediumblob NOT NULL,
+  PRIMARY KEY (`src_page_id`,`revision_date`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8;
+/*!40101 SET character_set_client = @saved_cs_client */;
+
+--
+-- Table structure for table `link_titles`
+--
+
+DROP TABLE IF EXISTS `link_titles`;
+/*!40101 SET @saved_cs_client     = @@character_set_client */;
+/*!40101 SET character_set_client = utf8 */;
+CREATE TABLE `link_titles` (
+  `title_id` int(11) NOT NULL AUTO_INCREMENT,
+  `title` varchar(255) CHARACTER SET utf8 COLLATE utf8_bin NOT NULL,
+  PRIMARY KEY (`title_id`),
+  UNIQUE KEY `title` (`title`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8;
+/*!40101 SET character_set_client = @saved_cs_client */;
+
 --
 -- Table structure for table `outgoing_links`
 --
@@ -38,12 +107,40 @@ DROP TABLE IF EXISTS `outgoing_links`;
 /*!40101 SET character_set_client = utf8 */;
 CREATE TABLE `outgoing_links` (
   `src_page_id` int(11) NOT NULL,
-  `target_page_title` varchar(256) NOT NULL,
   `revision_date` datetime NOT NULL,
-  KEY `page_id` (`src_page_id`,`revision_date`),
-  KEY `newindex` (`target_page_title`(255)),
-  CONSTRAINT `page_id_link` FOREIGN KEY (`src_page_id`) REFERENCES `pages` (`page_id`) ON DELETE NO ACTION ON UPDATE NO ACTION
-) ENGINE=InnoDB DEFAULT CHARSET=utf8;
+  `target_page_title` varchar(255) CHARACTER SET utf8 COLLATE utf8_bin NOT NULL,
+  PRIMARY KEY (`src_page_id`,`revision_date`,`target_page_title`),
+  KEY `target` (`target_page_title`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8
+PARTITION BY RANGE (TO_DAYS(`revision_date`)) (
+  PARTITION p2001 VALUES LESS THAN (TO_DAYS('2002-01-01')),
+  PARTITION p2002 VALUES LESS THAN (TO_DAYS('2003-01-01')),
+  PARTITION p2003 VALUES LESS THAN (TO_DAYS('2004-01-01')),
+  PARTITION p2004 VALUES LESS THAN (TO_DAYS('2005-01-01')),
+  PARTITION p2005 VALUES LESS THAN (TO_DAYS('2006-01-01')),
+  PARTITION p2006 VALUES LESS THAN (TO_DAYS('2007-01-01')),
+  PARTITION p2007 VALUES LESS THAN (TO_DAYS('2008-01-01')),
+  PARTITION p2008 VALUES LESS THAN (TO_DAYS('2009-01-01')),
+  PARTITION p2009 VALUES LESS THAN (TO_DAYS('2010-01-01')),
+  PARTITION p2010 VALUES LESS THAN (TO_DAYS('2011-01-01')),
+  PARTITION p2011 VALUES LESS THAN (TO_DAYS('2012-01-01')),
+  PARTITION p2012 VALUES LESS THAN (TO_DAYS('2013-01-01')),
+  PARTITION p2013 VALUES LESS THAN (TO_DAYS('2014-01-01')),
+  PARTITION p2014 VALUES LESS THAN (TO_DAYS('2015-01-01')),
+  PARTITION p2015 VALUES LESS THAN (TO_DAYS('2016-01-01')),
+  PARTITION p2016 VALUES LESS THAN (TO_DAYS('2017-01-01')),
+  PARTITION p2017 VALUES LESS THAN (TO_DAYS('2018-01-01')),
+  PARTITION p2018 VALUES LESS THAN (TO_DAYS('2019-01-01')),
+  PARTITION p2019 VALUES LESS THAN (TO_DAYS('2020-01-01')),
+  PARTITION p2020 VALUES LESS THAN (TO_DAYS('2021-01-01')),
+  PARTITION p2021 VALUES LESS THAN (TO_DAYS('2022-01-01')),
+  PARTITION p2022 VALUES LESS THAN (TO_DAYS('2023-01-01')),
+  PARTITION p2023 VALUES LESS THAN (TO_DAYS('2024-01-01')),
+  PARTITION p2024 VALUES LESS THAN (TO_DAYS('2025-01-01')),
+  PARTITION p2025 VALUES LESS THAN (TO_DAYS('2026-01-01')),
+  PARTITION p2026 VALUES LESS THAN (TO_DAYS('2027-01-01')),
+  PARTITION pmax VALUES LESS THAN MAXVALUE
+);
 /*!40101 SET character_set_client = @saved_cs_client */;
 
 --
@@ -62,6 +159,24 @@ CREATE TABLE `page_activity_cache` (
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8;
 /*!40101 SET character_set_client = @saved_cs_client */;
 
+--
+-- Table structure for table `page_revisions`
+--
+
+DROP TABLE IF EXISTS `page_revisions`;
+/*!40101 SET @saved_cs_client     = @@character_set_client */;
+/*!40101 SET character_set_client = utf8 */;
+CREATE TABLE `page_revisions` (
+  `page_title` varchar(255) NOT NULL,
+  `rev_id` int(11) NOT NULL,
+  `parent_id` int(11) NOT NULL,
+  `user_name` varchar(255) DEFAULT NULL,
+  `rev_timestamp` datetime NOT NULL,
+  `size` int(11) NOT NULL,
+  PRIMARY KEY (`page_title`,`rev_id`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8;
+/*!40101 SET character_set_client = @saved_cs_client */;
+
 --
 -- Table structure for table `pages`
 --
@@ -89,12 +204,76 @@ CREATE TABLE `pages_in_categories` (
   `page_id` int(11) DEFAULT NULL,
   `category_id` int(11) DEFAULT NULL,
   KEY `page_id` (`page_id`),
-  KEY `category_id` (`category_id`),
+  UNIQUE KEY `membership` (`category_id`,`page_id`),
   CONSTRAINT `pages_in_categories_ibfk_1` FOREIGN KEY (`page_id`) REFERENCES `pages` (`page_id`),
   CONSTRAINT `pages_in_categories_ibfk_2` FOREIGN KEY (`category_id`) REFERENCES `categories` (`category_id`)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8;
 /*!40101 SET character_set_client = @saved_cs_client */;
 
+--
+-- Table structure for table `redirect_cache`
+--
+
+DROP TABLE IF EXISTS `redirect_cache`;
+/*!40101 SET @saved_cs_client     = @@character_set_client */;
+/*!40101 SET character_set_client = utf8 */;
+CREATE TABLE `redirect_cache` (
+  `redirect_title` varchar(255) NOT NULL,
+  `target_title` varchar(255) NOT NULL,
+  `last_update` datetime NOT NULL,
+  PRIMARY KEY (`redirect_title`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8;
+/*!40101 SET character_set_client = @saved_cs_client */;
+
+--
+-- Table structure for table `schema_version`
+--
+
+DROP TABLE IF EXISTS `schema_version`;
+/*!40101 SET @saved_cs_client     = @@character_set_client */;
+/*!40101 SET character_set_client = utf8 */;
+CREATE TABLE `schema_version` (
+  `version` int(11) NOT NULL,
+  `description` varchar(255) NOT NULL,
+  `applied_at` datetime NOT NULL,
+  PRIMARY KEY (`version`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8;
+/*!40101 SET character_set_client = @saved_cs_client */;
+
+INSERT INTO `schema_version` VALUES (1,'baseline',NOW()),
+  (2,'outgoing_links partitioned by revision date, covering primary key',NOW());
+
+--
+-- Table structure for table `user_contribs`
+--
+
+DROP TABLE IF EXISTS `user_contribs`;
+/*!40101 SET @saved_cs_client     = @@character_set_client */;
+/*!40101 SET character_set_client = utf8 */;
+CREATE TABLE `user_contribs` (
+  `user_name` varchar(255) NOT NULL,
+  `rev_id` int(11) NOT NULL,
+  `page_title` varchar(255) NOT NULL,
+  PRIMARY KEY (`user_name`,`rev_id`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8;
+/*!40101 SET character_set_client = @saved_cs_client */;
+
+--
+-- Table structure for table `user_contrib_sync`
+--
+
+DROP TABLE IF EXISTS `user_contrib_sync`;
+/*!40101 SET @saved_cs_client     = @@character_set_client */;
+/*!40101 SET character_set_client = utf8 */;
+CREATE TABLE `user_contrib_sync` (
+  `user_name` varchar(255) NOT NULL,
+  `last_timestamp` datetime NOT NULL,
+  `last_rev_id` int(11) NOT NULL,
+  `last_sync` datetime NOT NULL,
+  PRIMARY KEY (`user_name`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8;
+/*!40101 SET character_set_client = @saved_cs_client */;
+
 --
 -- Table structure for table `usertalk_cache`
 --
@@ -0,0 +1,12 @@
+-- Upgrade for databases created before revision histories were cached.
+-- One row per revision, timestamps in UTC.
+
+CREATE TABLE `page_revisions` (
+  `page_title` varchar(255) NOT NULL,
+  `rev_id` int(11) NOT NULL,
+  `parent_id` int(11) NOT NULL,
+  `user_name` varchar(255) DEFAULT NULL,
+  `rev_timestamp` datetime NOT NULL,
+  `size` int(11) NOT NULL,
+  PRIMARY KEY (`page_title`,`rev_id`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8;
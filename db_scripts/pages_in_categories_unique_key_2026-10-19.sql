@@ -0,0 +1,20 @@
+-- Upgrade for databases created before the unique membership key was introduced.
+-- Removes duplicate memberships and replaces the category_id key, which is a
+-- prefix of the new unique key.
+-- Duplicates are identical rows, so the memberships are copied into a new table
+-- with the unique key (INSERT IGNORE keeps one row each) and the tables are
+-- swapped. Stop all fetchers before running it.
+
+CREATE TABLE `pages_in_categories_dedup` LIKE `pages_in_categories`;
+ALTER TABLE `pages_in_categories_dedup`
+  ADD UNIQUE KEY `membership` (`category_id`,`page_id`),
+  DROP KEY `category_id`;
+INSERT IGNORE INTO `pages_in_categories_dedup` (`page_id`, `category_id`)
+  SELECT `page_id`, `category_id` FROM `pages_in_categories`;
+
+-- foreign key names are unique per database, drop the old table first
+DROP TABLE `pages_in_categories`;
+RENAME TABLE `pages_in_categories_dedup` TO `pages_in_categories`;
+ALTER TABLE `pages_in_categories`
+  ADD CONSTRAINT `pages_in_categories_ibfk_1` FOREIGN KEY (`page_id`) REFERENCES `pages` (`page_id`),
+  ADD CONSTRAINT `pages_in_categories_ibfk_2` FOREIGN KEY (`category_id`) REFERENCES `categories` (`category_id`);
@@ -0,0 +1,10 @@
+-- Upgrade for databases created before redirect targets were cached.
+-- One row per redirect title, entries older than the TTL are resolved
+-- again and overwritten.
+
+CREATE TABLE `redirect_cache` (
+  `redirect_title` varchar(255) NOT NULL,
+  `target_title` varchar(255) NOT NULL,
+  `last_update` datetime NOT NULL,
+  PRIMARY KEY (`redirect_title`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8;
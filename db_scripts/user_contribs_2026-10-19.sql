@@ -0,0 +1,19 @@
+-- Upgrade for databases created before user contributions were stored.
+-- user_contribs keeps the newest contributions of each author (the edit
+-- counts are computed from them), user_contrib_sync the cursor for the
+-- next refresh.
+
+CREATE TABLE `user_contribs` (
+  `user_name` varchar(255) NOT NULL,
+  `rev_id` int(11) NOT NULL,
+  `page_title` varchar(255) NOT NULL,
+  PRIMARY KEY (`user_name`,`rev_id`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8;
+
+CREATE TABLE `user_contrib_sync` (
+  `user_name` varchar(255) NOT NULL,
+  `last_timestamp` datetime NOT NULL,
+  `last_rev_id` int(11) NOT NULL,
+  `last_sync` datetime NOT NULL,
+  PRIMARY KEY (`user_name`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8;
@@ -0,0 +1,81 @@
+package util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Thread-safe, size-bounded map that evicts the least recently used entry
+ * and counts hits and misses
+ * @param <K> Key Type
+ * @param <V> Value Type
+ */
+public final class LRUCache<K, V> {
+
+    private static final float LOAD_FACTOR = 0.75f;
+    private static final int MAX_INITIAL_CAPACITY = 1024;
+
+    private final String name;
+    private final Map<K, V> entries;
+    private long hits;
+    private long misses;
+
+    public LRUCache(final String name, final int maximumSize) {
+        this.name = name;
+        entries = new LinkedHashMap<K, V>(Math.min(maximumSize, MAX_INITIAL_CAPACITY), LOAD_FACTOR, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<K, V> eldest) {
+                return size() > maximumSize;
+            }
+        };
+    }
+
+    /**
+     * @return cached value or null, counts as hit or miss
+     */
+    public synchronized V get(final K key) {
+        final V value = entries.get(key);
+        if (value == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return value;
+    }
+
+    public synchronized void put(final K key, final V value) {
+        entries.put(key, value);
+    }
+
+    public synchronized void invalidate(final K key) {
+        entries.remove(key);
+    }
+
+    public synchronized void invalidateAll() {
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    public synchronized double getHitRate() {
+        final long requests = hits + misses;
+        return requests == 0 ? 0 : (double) hits / requests;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return name + ": size=" + entries.size() + ", hits=" + hits + ", misses=" + misses + ", hitRate="
+                + String.format("%.2f", getHitRate());
+    }
+}
@@ -0,0 +1,163 @@
+package util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.PriorityQueue;
+
+/**
+ * Selects the k best entries without sorting all of them: a heap of the k
+ * best entries seen so far, with the worst of them at the root, costs
+ * O(n log k). Results are ordered best first, ties in no particular order.
+ */
+public final class TopK {
+
+    private TopK() {
+    }
+
+    /**
+     * @return the (at most) k entries with the largest values, largest first
+     */
+    public static <K, V extends Comparable<? super V>> Map<K, V> largest(final Map<K, V> map,
+                                                                         final int k) {
+        if (k <= 0) {
+            return new LinkedHashMap<K, V>();
+        }
+        final Comparator<Entry<K, V>> byValue = new Comparator<Entry<K, V>>() {
+            @Override
+            public int compare(final Entry<K, V> arg0,
+                               final Entry<K, V> arg1) {
+                return arg0.getValue().compareTo(arg1.getValue());
+            }
+        };
+        PriorityQueue<Entry<K, V>> heap = new PriorityQueue<Entry<K, V>>(Math.min(k, map.size()) + 1, byValue);
+        for (Entry<K, V> entry : map.entrySet()) {
+            if (heap.size() < k) {
+                heap.add(entry);
+            } else if (byValue.compare(entry, heap.peek()) > 0) {
+                heap.poll();
+                heap.add(entry);
+            }
+        }
+        // the root is the worst kept entry, polling yields them worst first
+        List<Entry<K, V>> entries = new ArrayList<Entry<K, V>>(heap.size());
+        while (!heap.isEmpty()) {
+            entries.add(heap.poll());
+        }
+        Collections.reverse(entries);
+        Map<K, V> result = new LinkedHashMap<K, V>();
+        for (Entry<K, V> entry : entries) {
+            result.put(entry.getKey(), entry.getValue());
+        }
+        return result;
+    }
+
+    /**
+     * @return the indices of the (at most) k largest values, largest first
+     */
+    public static int[] largest(final int[] values,
+                                final int k) {
+        return largest(values, getAllIndices(values.length), k);
+    }
+
+    /**
+     * @return the (at most) k candidates with the largest values, largest first
+     */
+    public static int[] largest(final int[] values,
+                                final int[] candidates,
+                                final int k) {
+        return select(values, candidates, k, true);
+    }
+
+    /**
+     * @return the (at most) k candidates with the smallest values, smallest first
+     */
+    public static int[] smallest(final int[] values,
+                                 final int[] candidates,
+                                 final int k) {
+        return select(values, candidates, k, false);
+    }
+
+    private static int[] getAllIndices(final int length) {
+        int[] indices = new int[length];
+        for (int i = 0; i < length; i++) {
+            indices[i] = i;
+        }
+        return indices;
+    }
+
+    private static int[] select(final int[] values,
+                                final int[] candidates,
+                                final int k,
+                                final boolean largest) {
+        int[] heap = new int[Math.max(0, Math.min(k, candidates.length))];
+        int size = 0;
+        for (int candidate : candidates) {
+            if (size < heap.length) {
+                heap[size] = candidate;
+                siftUp(values, largest, heap, size++);
+            } else if (size > 0 && isBetter(values[candidate], values[heap[0]], largest)) {
+                heap[0] = candidate;
+                siftDown(values, largest, heap, size);
+            }
+        }
+        // the root is the worst kept candidate, removing it repeatedly yields them worst first
+        int[] result = new int[size];
+        while (size > 0) {
+            result[size - 1] = heap[0];
+            heap[0] = heap[--size];
+            siftDown(values, largest, heap, size);
+        }
+        return result;
+    }
+
+    private static boolean isBetter(final int value,
+                                    final int other,
+                                    final boolean largest) {
+        return largest ? value > other : value < other;
+    }
+
+    private static void siftUp(final int[] values,
+                               final boolean largest,
+                               final int[] heap,
+                               final int position) {
+        final int index = heap[position];
+        int child = position;
+        while (child > 0) {
+            final int parent = (child - 1) / 2;
+            if (!isBetter(values[heap[parent]], values[index], largest)) {
+                break;
+            }
+            heap[child] = heap[parent];
+            child = parent;
+        }
+        heap[child] = index;
+    }
+
+    private static void siftDown(final int[] values,
+                                 final boolean largest,
+                                 final int[] heap,
+                                 final int size) {
+        if (size == 0) {
+            return;
+        }
+        final int index = heap[0];
+        int parent = 0;
+        while (2 * parent + 1 < size) {
+            int child = 2 * parent + 1;
+            if (child + 1 < size && isBetter(values[heap[child]], values[heap[child + 1]], largest)) {
+                child++;
+            }
+            if (!isBetter(values[index], values[heap[child]], largest)) {
+                break;
+            }
+            heap[parent] = heap[child];
+            parent = child;
+        }
+        heap[parent] = index;
+    }
+}
@@ -4,7 +4,6 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.util.Collection;
-import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
@@ -20,12 +19,13 @@ import org.slf4j.LoggerFactory;
 
 import util.Const;
 import util.DateListGenerator;
-import util.MapSorter;
+import util.TopK;
 import wikipedia.analysis.drilldown.BasicSearch;
 import wikipedia.analysis.drilldown.NumberOfRecentEditsFetcher;
 import wikipedia.analysis.useractivity.PageRevisionFetcher;
 import wikipedia.analysis.useractivity.Revisions;
-import wikipedia.database.DBUtil;
+import wikipedia.database.Storages;
+import wikipedia.database.WikiStorage;
 import wikipedia.http.PageHistoryFetcher;
 import wikipedia.http.PageLinkInfoFetcher;
 import wikipedia.http.WikiAPIClient;
@@ -61,7 +61,7 @@ public final class AuthorInterestFetcher {
 
     private final String lang;
     private final String searchTerm;
-    private final DBUtil database = new DBUtil();
+    private final WikiStorage database = Storages.open();
 
     private final WikiAPIClient wikiAPIClient;
 
@@ -196,9 +196,8 @@ public final class AuthorInterestFetcher {
     private Set<String> getAllInvolvedAuthors(final Set<String> allSeenNodes) {
         Set<String> authors = Sets.newHashSet();
         for (String pageName : allSeenNodes) {
-            Revisions articleRevisions = new PageRevisionFetcher(lang, pageName, 5000).getArticleRevisions();
-            Map<String, Integer> editsPerPageAuthor = articleRevisions.getEditsPerAuthor();
-            authors.addAll(editsPerPageAuthor.keySet());
+            Revisions articleRevisions = new PageRevisionFetcher(lang, pageName, 5000, database).getArticleRevisions();
+            authors.addAll(articleRevisions.getUserNames());
         }
         return authors;
     }
@@ -232,14 +231,6 @@ public final class AuthorInterestFetcher {
 
     private Map<String, Integer> getTopEntries(final int nbrResults,
                                                final Map<String, Integer> results) {
-        LinkedHashMap<String, Integer> sortetedResults = Maps
-                .newLinkedHashMap(new MapSorter<String, Integer>().sortByValue(results));
-        LinkedHashMap<String, Integer> filteredResults = Maps.newLinkedHashMap();
-        List<String> sortedKeys = Lists.newArrayList(sortetedResults.keySet());
-        for (int i = 0; i < nbrResults; i++) {
-            final String currentKey = sortedKeys.get(i);
-            filteredResults.put(currentKey, sortetedResults.get(currentKey));
-        }
-        return filteredResults;
+        return TopK.largest(results, nbrResults);
     }
 }
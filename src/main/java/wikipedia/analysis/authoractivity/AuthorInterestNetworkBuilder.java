@@ -2,29 +2,27 @@ package wikipedia.analysis.authoractivity;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.Random;
 import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.io.FileUtils;
-import org.apache.commons.lang.StringUtils;
-import org.graphstream.algorithm.Dijkstra;
-import org.graphstream.graph.implementations.DefaultGraph;
-import org.graphstream.graph.implementations.MultiGraph;
 import org.joda.time.DateTime;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import util.MapSorter;
+import util.TopK;
 import wikipedia.analysis.useractivity.UserContribFetcher;
 import wikipedia.database.DBUtil;
-import wikipedia.network.GraphEdge;
+import wikipedia.database.Storages;
+import wikipedia.database.WikiStorage;
+import wikipedia.network.BreadthFirstSearch;
+import wikipedia.network.IntGraph;
+import wikipedia.network.Reciprocity;
 import wikipedia.network.TimeFrameGraph;
 
 import com.google.common.collect.Lists;
@@ -37,6 +35,7 @@ import com.google.common.collect.Sets;
 public final class AuthorInterestNetworkBuilder {
 
     private static final int MAX_NODES = 60;
+    private static final int MAX_LISTED_NEIGHBORS = 100;
     /**
      * Constants for Node-Filtering
      */
@@ -48,6 +47,7 @@ public final class AuthorInterestNetworkBuilder {
 
     private final String searchTerm;
     private final Set<String> allInvolvedAuthors;
+    private final WikiStorage database = Storages.open();
 
     public AuthorInterestNetworkBuilder(final Set<String> allInvolvedAuthors,
                           final String searchTerm) {
@@ -57,8 +57,7 @@ public final class AuthorInterestNetworkBuilder {
 
     public TimeFrameGraph getGraphAtDate(final DateTime dateTime) {
         String revisionDateTime = dateTime.toString(DBUtil.MYSQL_DATETIME_FORMATTER);
-        List<GraphEdge> allLinksInNetwork = buildAllLinksWithinNetwork(revisionDateTime);
-        allLinksInNetwork = Lists.newArrayList(Sets.newHashSet(allLinksInNetwork)); //remove duplicates
+        IntGraph linkGraph = buildAllLinksWithinNetwork(revisionDateTime);
 
 //        try {
 //            FileUtils.writeLines(new File("out/allLinksAutorsDsk.txt"), allLinksInNetwork);
@@ -66,28 +65,14 @@ public final class AuthorInterestNetworkBuilder {
 //            e.printStackTrace();
 //        }
 
-        Map<String, List<String>> indegreeMatrix = initIndegreeMatrix(allLinksInNetwork);
+        Map<String, Float> pageIndegMap = createIndegreeMap(linkGraph);
 
-        Map<String, Float> pageIndegMap = createIndegreeMap(allLinksInNetwork, indegreeMatrix);
+        Set<String> mutuallyConnectedNeighbors = findMutuallyConnectedNeighbors(linkGraph);
 
-        Set<String> mutuallyConnectedNeighbors = findMutuallyConnectedNeighbors(allLinksInNetwork);
-
-        //DefaultGraph graph = prepareGraph(allLinksInNetwork);
-        //Dijkstra shortestPath = prepareShortestPath(graph);
-
-        final MapSorter<String, Float> mapSorter = new MapSorter<String, Float>();
-        Map<String, Float> allPagesOrderedByIndeg = mapSorter.sortByValue(pageIndegMap);
-
-        Map<String, Float> allMutuallyConnectdNeighborsByIndeg = mapSorter
-                .sortByValue(generateIndegMapForMutuallyConnectedNeighbors(
-                        mutuallyConnectedNeighbors, allPagesOrderedByIndeg));
-
-        List<Entry<String, Float>> topIndeg;
-        if(allMutuallyConnectdNeighborsByIndeg.size() > 100) {
-            topIndeg = Lists.newArrayList(allMutuallyConnectdNeighborsByIndeg.entrySet()).subList(0, 100);
-        } else {
-            topIndeg = Lists.newArrayList(allMutuallyConnectdNeighborsByIndeg.entrySet());
-        }
+        Map<String, Float> topMutuallyConnectdNeighborsByIndeg = TopK.largest(
+                generateIndegMapForMutuallyConnectedNeighbors(mutuallyConnectedNeighbors, pageIndegMap),
+                MAX_LISTED_NEIGHBORS);
+        List<Entry<String, Float>> topIndeg = Lists.newArrayList(topMutuallyConnectdNeighborsByIndeg.entrySet());
         try {
             FileUtils.writeLines(new File("out/topIndegDSK.txt"), topIndeg);
         } catch (IOException e) {
@@ -95,13 +80,13 @@ public final class AuthorInterestNetworkBuilder {
         }
 
 //        Map<String, Integer> allDirectNeighborsByShortestPath = new MapSorter<String, Integer>()
-//                .sortByValue(generateSPMapForDirectNeighbors(allPagesOrderedByIndeg.keySet(),
-//                                shortestPath, graph), true);
+//                .sortByValue(generateSPMapForDirectNeighbors(pageIndegMap.keySet(),
+//                                linkGraph), true);
 //
 //        Map<String, Integer> nameIndexMap = addQualifiedNodesToMap(allPagesOrderedByIndeg,
 //                allMutuallyConnectdNeighborsByIndeg, allDirectNeighborsByShortestPath);
 //
-//        List<GraphEdge> edgeOutput = prepareEdgeList(indegreeMatrix, nameIndexMap);
+//        List<GraphEdge> edgeOutput = linkGraph.getEdgesWithin(nameIndexMap.keySet());
 
 //        return new TimeFrameGraph(nameIndexMap, edgeOutput, dateTime);
         return null;
@@ -144,118 +129,61 @@ public final class AuthorInterestNetworkBuilder {
         return nameIndexMap;
     }
 
-    private Map<String, Float> createIndegreeMap(final List<GraphEdge> allLinksInNetwork,
-                                                 final Map<String, List<String>> indegreeMatrix) {
-        final int numberOfLinks = allLinksInNetwork.size();
+    private Map<String, Float> createIndegreeMap(final IntGraph linkGraph) {
+        final int numberOfLinks = linkGraph.getNumberOfEdges();
         Map<String, Float> pageIndegMap = Maps.newHashMap();
-        for (String targetPage : indegreeMatrix.keySet()) {
-            final float indegValue = calculateIndegree(numberOfLinks, indegreeMatrix.get(targetPage));
-            pageIndegMap.put(targetPage, indegValue);
+        for (int node = 0; node < linkGraph.getNumberOfNodes(); node++) {
+            final int inDegree = linkGraph.getInDegree(node);
+            if (inDegree > 0) {
+                pageIndegMap.put(linkGraph.getName(node), calculateIndegree(numberOfLinks, inDegree));
+            }
         }
         return pageIndegMap;
     }
 
-    private Set<String> findMutuallyConnectedNeighbors(final List<GraphEdge> allLinksInNetwork) {
+    private Set<String> findMutuallyConnectedNeighbors(final IntGraph linkGraph) {
         Set<String> mutuallyConnectedNeighbors = Sets.newHashSet();
-        int numberOfTasks = 0;
-        Set<GraphEdge> containsCheck = Sets.newHashSet(allLinksInNetwork);
-        for (GraphEdge graphEdge : allLinksInNetwork) {
-            if (containsCheck.contains(new GraphEdge(graphEdge.getTo(), graphEdge.getFrom()))) {
-                if (graphEdge.getFrom().equals(searchTerm) || graphEdge.getTo().equals(searchTerm)) {
-                    mutuallyConnectedNeighbors.add(graphEdge.getFrom());
-                    mutuallyConnectedNeighbors.add(graphEdge.getTo());
-                }
-            }
-            numberOfTasks++;
-            if (numberOfTasks % 1000 == 0) {
-                System.out.println(numberOfTasks);
-            }
+        final int searchNode = linkGraph.getNode(searchTerm);
+        if (searchNode < 0) {
+            return mutuallyConnectedNeighbors;
         }
-        return mutuallyConnectedNeighbors;
-    }
-
-    private List<GraphEdge> prepareEdgeList(final Map<String, List<String>> indegreeMatrix,
-                                            final Map<String, Integer> nameIndexMap) {
-        List<GraphEdge> edgeOutput = Lists.newArrayList();
-        for (Entry<String, List<String>> entry : indegreeMatrix.entrySet()) {
-            String targetPageName = entry.getKey();
-            List<String> incommingLinks = entry.getValue();
-            for (String sourcePageName : incommingLinks) {
-                if (sourcePageName.equals(targetPageName)) {
-                    continue;
-                }
-                if (nameIndexMap.get(sourcePageName) != null && nameIndexMap.get(targetPageName) != null) {
-                    edgeOutput.add(new GraphEdge(sourcePageName, targetPageName));
-                }
-            }
+        for (int neighbor : Reciprocity.getMutualNeighbors(linkGraph, searchNode)) {
+            mutuallyConnectedNeighbors.add(searchTerm);
+            mutuallyConnectedNeighbors.add(linkGraph.getName(neighbor));
         }
-        return edgeOutput;
+        return mutuallyConnectedNeighbors;
     }
 
     private Map<String, Integer> generateSPMapForDirectNeighbors(final Set<String> allPages,
-                                                                 final Dijkstra shortestPath,
-                                                                 final DefaultGraph graph) {
+                                                                 final IntGraph linkGraph) {
+        final int searchNode = linkGraph.getNode(searchTerm);
+        // without the search term in the graph every page is unreachable
+        final int[] distances = BreadthFirstSearch.getDistances(linkGraph,
+                searchNode < 0 ? new int[0] : new int[] {searchNode });
         Map<String, Integer> neighbors = Maps.newHashMap();
         for (String pageName : allPages) {
-            int shortestPathLength = (int) shortestPath.getShortestPathLength(graph.getNode(pageName));
-            neighbors.put(pageName, shortestPathLength);
+            neighbors.put(pageName, distances[linkGraph.getNode(pageName)]);
         }
         return neighbors;
     }
 
     private Map<String, Float> generateIndegMapForMutuallyConnectedNeighbors(
             final Set<String> mutuallyConnectedNeighbors,
-            final Map<String, Float> allPagesOrderedByIndeg) {
+            final Map<String, Float> pageIndegMap) {
         Map<String, Float> neighbors = Maps.newHashMap();
         for (String pageName : mutuallyConnectedNeighbors) {
-            neighbors.put(pageName, allPagesOrderedByIndeg.get(pageName));
+            neighbors.put(pageName, pageIndegMap.get(pageName));
         }
         return neighbors;
     }
 
-    private Dijkstra prepareShortestPath(final DefaultGraph graph) {
-        Dijkstra shortestPath = new Dijkstra(Dijkstra.Element.edge, "weight", searchTerm);
-        shortestPath.init(graph);
-        shortestPath.compute();
-        return shortestPath;
-    }
-
-    private DefaultGraph prepareGraph(final List<GraphEdge> allLinksInNetwork) {
-        // create graph using gs
-        DefaultGraph graph = new MultiGraph("graphForShortestPath", false, true);
-        Random r = new Random();
-        for (GraphEdge edge : allLinksInNetwork) {
-            graph.addEdge(edge.getFrom() + edge.getTo() + r.nextDouble(), edge.getFrom(), edge.getTo(), true);
-        }
-        return graph;
-    }
-
     private float calculateIndegree(final int numberOfLinks,
-                                    final List<String> allIncommingLinks) {
-        int totalNumberOfLinks = allIncommingLinks.size();
-        return ((float) totalNumberOfLinks / (float) numberOfLinks) * INDEG_MULTIPLICATOR;
+                                    final int inDegree) {
+        return ((float) inDegree / (float) numberOfLinks) * INDEG_MULTIPLICATOR;
     }
 
-    /**
-     * @param allLinksInNetwork
-     * @return In-degree matrix key:target_page value: all pages that point to target_page (key)
-     */
-    private Map<String, List<String>> initIndegreeMatrix(final List<GraphEdge> allLinksInNetwork) {
-        Map<String, List<String>> indegreeMatrix = Maps.newHashMap();
-        for (GraphEdge link : allLinksInNetwork) {
-            String from = link.getFrom();
-            String to = link.getTo();
-            if (indegreeMatrix.containsKey(to)) {
-                indegreeMatrix.get(to).add(from);
-            } else {
-                indegreeMatrix.put(to, Lists.newArrayList(from));
-            }
-        }
-        return indegreeMatrix;
-    }
-
-    private List<GraphEdge> buildAllLinksWithinNetwork(final String revisionDateTime) {
-        final List<GraphEdge> allLinksInNetwork = Collections.synchronizedList(Lists.<GraphEdge>newArrayList());
+    private IntGraph buildAllLinksWithinNetwork(final String revisionDateTime) {
+        final IntGraph.Builder allLinksInNetwork = new IntGraph.Builder();
         LOG.info("Number of Tasks: " + allInvolvedAuthors.size());
         int taskCounter = 1;
         try {
@@ -265,7 +193,7 @@ public final class AuthorInterestNetworkBuilder {
         } finally {
             shutdownThreadPool();
         }
-        return allLinksInNetwork;
+        return allLinksInNetwork.build();
     }
 
     private void shutdownThreadPool() {
@@ -282,17 +210,19 @@ public final class AuthorInterestNetworkBuilder {
 
     /**
      * Fetches Information from DB and calculates all incomming links to a given
-     * page in the network
+     * page in the network. The links between the pages of an author are added
+     * to the shared builder in one call.
      */
     private final class LinkCollector implements Runnable {
         private static final int LOG_MODULO = 4000;
+        private static final int NODE_BITS = 32;
         private static final String LANG = "en"; //FIXME
         private final String authorName;
-        private final List<GraphEdge> allLinksInNetwork;
+        private final IntGraph.Builder allLinksInNetwork;
         private final int counter;
         private final String revisionDateTime;
 
-        private LinkCollector(final String authorName, final List<GraphEdge> allLinksInNetwork, final int counter,
+        private LinkCollector(final String authorName, final IntGraph.Builder allLinksInNetwork, final int counter,
                 final String revisionDateTime) {
             this.authorName = authorName;
             this.allLinksInNetwork = allLinksInNetwork;
@@ -305,18 +235,19 @@ public final class AuthorInterestNetworkBuilder {
             if (counter % LOG_MODULO == 0) {
                 LOG.info("Task: " + counter);
             }
-            UserContribFetcher fetcher = new UserContribFetcher(LANG, authorName);
-            Set<String> mostEditedPages = fetcher.getMostEditedPages();
-            Set<GraphEdge> allEdgesByUser = Sets.newHashSet();
-            for (String pageNameSource : mostEditedPages) {
-                for (String pageNameTarget : mostEditedPages) {
-                    if (!StringUtils.equals(pageNameSource, pageNameTarget)) {
-                        allEdgesByUser.add(new GraphEdge(pageNameSource, pageNameTarget));
+            UserContribFetcher fetcher = new UserContribFetcher(LANG, authorName, database);
+            // distinct pages, so distinct nodes: every pair of different pages is linked
+            final int[] nodes = allLinksInNetwork.addNodes(Lists.newArrayList(fetcher.getMostEditedPages()));
+            long[] edges = new long[nodes.length * Math.max(0, nodes.length - 1)];
+            int size = 0;
+            for (int source : nodes) {
+                for (int target : nodes) {
+                    if (source != target) {
+                        edges[size++] = ((long) source << NODE_BITS) | target;
                     }
                 }
             }
-
-            allLinksInNetwork.addAll(allEdgesByUser);
+            allLinksInNetwork.addEdges(edges);
 //            Collection<String> allOutgoingLinksOnPage = database.getAllLinksForRevision(pageId, revisionDateTime);
 //            for (String outgoingLink : allOutgoingLinksOnPage) {
 //                if (allPageNamesInNetwork.contains(outgoingLink)) {
@@ -4,10 +4,8 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.util.Collection;
-import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Properties;
 import java.util.Set;
 
@@ -21,17 +19,17 @@ import org.slf4j.LoggerFactory;
 
 import util.Const;
 import util.DateListGenerator;
-import util.MapSorter;
+import util.TopK;
 import wikipedia.analysis.pagenetwork.DeltaPrinter;
 import wikipedia.analysis.useractivity.PageRevisionFetcher;
 import wikipedia.analysis.useractivity.Revisions;
 import wikipedia.analysis.useractivity.UserContribFetcher;
-import wikipedia.database.DBUtil;
+import wikipedia.database.Storages;
+import wikipedia.database.WikiStorage;
 import wikipedia.http.PageHistoryFetcher;
 import wikipedia.http.PageLinkInfoFetcher;
 import wikipedia.http.WikiAPIClient;
 
-import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 
@@ -39,6 +37,7 @@ import com.google.common.collect.Sets;
 public final class RelatedResultsFetcher {
 
     private static final int MAX_SEARCHRESULTS = 12;
+    private static final int MAX_TOP_AUTHORS = 10;
 
     private static final Logger LOG = LoggerFactory.getLogger(RelatedResultsFetcher.class.getName());
 
@@ -62,7 +61,7 @@ public final class RelatedResultsFetcher {
 
     private final String lang;
     private final String searchTerm;
-    private final DBUtil database = new DBUtil();
+    private final WikiStorage database = Storages.open();
 
     private final WikiAPIClient wikiAPIClient;
 
@@ -193,22 +192,19 @@ public final class RelatedResultsFetcher {
     private Collection<? extends String> addNodesAccordingToTopAuthors(final Set<String> allSeenNodes) {
         Map<String, Integer> editsPerAuthor = Maps.newHashMap();
         for (String pageName : allSeenNodes) {
-            Revisions articleRevisions = new PageRevisionFetcher(lang, pageName).getArticleRevisions();
-            Map<String, Integer> editsPerPageAuthor = articleRevisions.getEditsPerAuthor();
-            for (Entry<String, Integer> pageAuthorEntry : editsPerPageAuthor.entrySet()) {
-                final String userID = pageAuthorEntry.getKey();
-                if (editsPerAuthor.containsKey(userID)) {
-                    editsPerAuthor.put(userID, editsPerAuthor.get(userID) + pageAuthorEntry.getValue());
-                } else {
-                    editsPerAuthor.put(userID, pageAuthorEntry.getValue());
-                }
+            Revisions articleRevisions = new PageRevisionFetcher(lang, pageName, database).getArticleRevisions();
+            int[] editCounts = articleRevisions.getEditCountsPerUser();
+            for (int userId = 0; userId < editCounts.length; userId++) {
+                final String userID = articleRevisions.getUserName(userId);
+                final Integer previousEdits = editsPerAuthor.get(userID);
+                editsPerAuthor.put(userID, previousEdits == null ? editCounts[userId]
+                        : previousEdits + editCounts[userId]);
             }
         }
-        Map<String, Integer> sortByValue = new MapSorter<String, Integer>().sortByValue(editsPerAuthor);
-        final List<String> topAuthors = Lists.newArrayList(sortByValue.keySet()).subList(0, 10);
+        final Set<String> topAuthors = TopK.largest(editsPerAuthor, MAX_TOP_AUTHORS).keySet();
         Set<String> authorRelatedPages = Sets.newHashSet();
         for (String userName : topAuthors) {
-            UserContribFetcher contribFetcher = new UserContribFetcher(lang, userName);
+            UserContribFetcher contribFetcher = new UserContribFetcher(lang, userName, database);
             authorRelatedPages.addAll(contribFetcher.getMostEditedPages());
         }
         return authorRelatedPages;
@@ -243,14 +239,6 @@ public final class RelatedResultsFetcher {
 
     private Map<String, Integer> getTopEntries(final int nbrResults,
                                                final Map<String, Integer> results) {
-        LinkedHashMap<String, Integer> sortetedResults = Maps
-                .newLinkedHashMap(new MapSorter<String, Integer>().sortByValue(results));
-        LinkedHashMap<String, Integer> filteredResults = Maps.newLinkedHashMap();
-        List<String> sortedKeys = Lists.newArrayList(sortetedResults.keySet());
-        for (int i = 0; i < nbrResults; i++) {
-            final String currentKey = sortedKeys.get(i);
-            filteredResults.put(currentKey, sortetedResults.get(currentKey));
-        }
-        return filteredResults;
+        return TopK.largest(results, nbrResults);
     }
 }
@@ -1,31 +1,22 @@
 package wikipedia.analysis.pagenetwork;
 
-import java.util.Collection;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
-import java.util.Random;
-import java.util.Set;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
 
-import org.graphstream.algorithm.Dijkstra;
-import org.graphstream.graph.implementations.DefaultGraph;
-import org.graphstream.graph.implementations.MultiGraph;
 import org.joda.time.DateTime;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
-import util.MapSorter;
-import wikipedia.database.DBUtil;
+import util.TopK;
+import wikipedia.database.WikiStorage;
+import wikipedia.network.BreadthFirstSearch;
 import wikipedia.network.GraphEdge;
+import wikipedia.network.IntGraph;
+import wikipedia.network.LinkGraph;
+import wikipedia.network.LinkSnapshots;
+import wikipedia.network.Reciprocity;
 import wikipedia.network.TimeFrameGraph;
 
-import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
-import com.google.common.collect.Sets;
 
 /**
  * Builds a Network structure based on all pages in the given categories
@@ -36,85 +27,99 @@ public final class ArticleNetworkBuilder {
     /**
      * Constants for Node-Filtering
      */
-    private static final int INDEG_MULTIPLICATOR = 1000;
-
-    private static final Logger LOG = LoggerFactory.getLogger(ArticleNetworkBuilder.class.getName());
-    private static final int NUM_THREADS = 8;
-    private final ExecutorService threadPool = Executors.newFixedThreadPool(NUM_THREADS);
+    private static final int MUTUAL_NODES = 26;
+    private static final int DIRECT_NODES = 21;
 
     private final String searchTerm;
-    private final DBUtil database;
-    private final Map<Integer, String> allPagesInNetwork;
+    private final FrameGraphLoader graphLoader;
 
     public ArticleNetworkBuilder(final Map<Integer, String> allPagesInNetwork,
-                                 final DBUtil database,
+                                 final WikiStorage database,
+                                 final String searchTerm) {
+        this(allPagesInNetwork, database, null, searchTerm);
+    }
+
+    /**
+     * @param snapshots used for all frames they contain, may be null
+     */
+    public ArticleNetworkBuilder(final Map<Integer, String> allPagesInNetwork,
+                                 final WikiStorage database,
+                                 final LinkSnapshots snapshots,
                                  final String searchTerm) {
-        this.database = database;
-        this.allPagesInNetwork = allPagesInNetwork;
+        this.graphLoader = new FrameGraphLoader(allPagesInNetwork, database, snapshots);
         this.searchTerm = searchTerm;
     }
 
     public TimeFrameGraph getGraphAtDate(final DateTime dateTime) {
-        String revisionDateTime = dateTime.toString(DBUtil.MYSQL_DATETIME_FORMATTER);
-        List<GraphEdge> allLinksInNetwork = buildAllLinksWithinNetwork(allPagesInNetwork, revisionDateTime);
-        Map<String, List<String>> indegreeMatrix = initIndegreeMatrix(allLinksInNetwork);
-
-        Map<String, Float> pageIndegMap = createIndegreeMap(allLinksInNetwork, indegreeMatrix);
-
-        Set<String> mutuallyConnectedNeighbors = findMutuallyConnectedNeighbors(allLinksInNetwork);
+        IntGraph linkGraph = graphLoader.load(dateTime);
+        final int searchNode = linkGraph.getNode(searchTerm);
+        final int[] mutualNeighbors = searchNode < 0 ? new int[0] : Reciprocity.getMutualNeighbors(linkGraph,
+                searchNode);
+        return createFrameGraph(linkGraph, searchNode, mutualNeighbors, getShortestPathLengths(linkGraph, searchNode),
+                dateTime);
+    }
 
-        DefaultGraph graph = prepareGraph(allLinksInNetwork);
-        Dijkstra shortestPath = prepareShortestPath(graph);
+    /**
+     * Selects the nodes of a frame and the links between them, also used by
+     * the IncrementalNetworkBuilder
+     *
+     * @param mutualNeighbors of the search node, ascending
+     * @param shortestPathLengths links from the search node, indexed by node
+     */
+    static TimeFrameGraph createFrameGraph(final LinkGraph linkGraph,
+                                           final int searchNode,
+                                           final int[] mutualNeighbors,
+                                           final int[] shortestPathLengths,
+                                           final DateTime dateTime) {
+        // ranked by in degree, the same order as the share of all links pointing to a page
+        final int[] inDegrees = linkGraph.getInDegrees();
+        final int[] linkedPages = linkGraph.getLinkedNodes();
 
-        final MapSorter<String, Float> mapSorter = new MapSorter<String, Float>();
-        Map<String, Float> allPagesOrderedByIndeg = mapSorter.sortByValue(pageIndegMap);
+        int[] mutuallyConnectedNeighborsByIndeg = TopK.largest(inDegrees,
+                addSearchNode(mutualNeighbors, searchNode), MUTUAL_NODES);
 
-        Map<String, Float> allMutuallyConnectdNeighborsByIndeg = mapSorter
-                .sortByValue(generateIndegMapForMutuallyConnectedNeighbors(
-                        mutuallyConnectedNeighbors, allPagesOrderedByIndeg));
+        // at most all mutual neighbours are skipped before enough direct neighbours are found
+        int[] directNeighborsByShortestPath = TopK.smallest(shortestPathLengths, linkedPages, MUTUAL_NODES
+                + DIRECT_NODES);
 
-        Map<String, Integer> allDirectNeighborsByShortestPath = new MapSorter<String, Integer>()
-                .sortByValue(generateSPMapForDirectNeighbors(allPagesOrderedByIndeg.keySet(),
-                                shortestPath, graph), true);
+        int[] pagesByIndeg = TopK.largest(inDegrees, linkedPages, MAX_NODES + 1);
 
-        Map<String, Integer> nameIndexMap = addQualifiedNodesToMap(allPagesOrderedByIndeg,
-                allMutuallyConnectdNeighborsByIndeg, allDirectNeighborsByShortestPath);
+        Map<String, Integer> nameIndexMap = addQualifiedNodesToMap(linkGraph, mutuallyConnectedNeighborsByIndeg,
+                directNeighborsByShortestPath, pagesByIndeg);
 
-        List<GraphEdge> edgeOutput = prepareEdgeList(indegreeMatrix, nameIndexMap);
+        List<GraphEdge> edgeOutput = linkGraph.getEdgesWithin(nameIndexMap.keySet());
 
         return new TimeFrameGraph(nameIndexMap, edgeOutput, dateTime);
     }
 
-    private Map<String, Integer> addQualifiedNodesToMap(final Map<String, Float> allPagesOrderedByIndeg,
-                                                        final Map<String, Float> allMutuallyConnectdNeighborsByIndeg,
-                                                        final Map<String, Integer> allDirectNeighborsByShortestPath) {
+    private static Map<String, Integer> addQualifiedNodesToMap(final LinkGraph linkGraph,
+                                                               final int[] mutuallyConnectedNeighborsByIndeg,
+                                                               final int[] directNeighborsByShortestPath,
+                                                               final int[] pagesByIndeg) {
         Map<String, Integer> nameIndexMap = Maps.newLinkedHashMap();
         int nodeIndex = 0;
-        int mutualLimit = 0;
-        for (String pageName : allMutuallyConnectdNeighborsByIndeg.keySet()) {
-            if (mutualLimit++ > 25) {
-                break;
-            }
-            nameIndexMap.put(pageName, nodeIndex++);
+        for (int node : mutuallyConnectedNeighborsByIndeg) {
+            nameIndexMap.put(linkGraph.getName(node), nodeIndex++);
         }
 
-        int directLimit = 0;
-        for (String pageName : allDirectNeighborsByShortestPath.keySet()) {
-            if (directLimit > 20) {
+        int directNodes = 0;
+        for (int node : directNeighborsByShortestPath) {
+            if (directNodes == DIRECT_NODES) {
                 break;
             }
+            final String pageName = linkGraph.getName(node);
             if (!nameIndexMap.containsKey(pageName)) {
                 nameIndexMap.put(pageName, nodeIndex++);
-                directLimit++;
+                directNodes++;
             }
         }
 
         //indeg, fill up
-        for (Entry<String, Float> entry : allPagesOrderedByIndeg.entrySet()) {
+        for (int node : pagesByIndeg) {
             if (nodeIndex > MAX_NODES) {
                 break;
             }
-            final String pageName = entry.getKey();
+            final String pageName = linkGraph.getName(node);
             if (!nameIndexMap.containsKey(pageName)) {
                 nameIndexMap.put(pageName, nodeIndex++);
             }
@@ -122,177 +127,26 @@ public final class ArticleNetworkBuilder {
         return nameIndexMap;
     }
 
-    private Map<String, Float> createIndegreeMap(final List<GraphEdge> allLinksInNetwork,
-                                                 final Map<String, List<String>> indegreeMatrix) {
-        final int numberOfLinks = allLinksInNetwork.size();
-        Map<String, Float> pageIndegMap = Maps.newHashMap();
-        for (String targetPage : indegreeMatrix.keySet()) {
-            final float indegValue = calculateIndegree(numberOfLinks, indegreeMatrix.get(targetPage));
-            pageIndegMap.put(targetPage, indegValue);
-        }
-        return pageIndegMap;
-    }
-
-    private Set<String> findMutuallyConnectedNeighbors(final List<GraphEdge> allLinksInNetwork) {
-        Set<String> mutuallyConnectedNeighbors = Sets.newHashSet();
-        for (GraphEdge graphEdge : allLinksInNetwork) {
-            if (allLinksInNetwork.contains(new GraphEdge(graphEdge.getTo(), graphEdge.getFrom()))) {
-                if (graphEdge.getFrom().equals(searchTerm) || graphEdge.getTo().equals(searchTerm)) {
-                    mutuallyConnectedNeighbors.add(graphEdge.getFrom());
-                    mutuallyConnectedNeighbors.add(graphEdge.getTo());
-                }
-            }
-        }
-        return mutuallyConnectedNeighbors;
-    }
-
-    private List<GraphEdge> prepareEdgeList(final Map<String, List<String>> indegreeMatrix,
-                                            final Map<String, Integer> nameIndexMap) {
-        List<GraphEdge> edgeOutput = Lists.newArrayList();
-        for (Entry<String, List<String>> entry : indegreeMatrix.entrySet()) {
-            String targetPageName = entry.getKey();
-            List<String> incommingLinks = entry.getValue();
-            for (String sourcePageName : incommingLinks) {
-                if (sourcePageName.equals(targetPageName)) {
-                    continue;
-                }
-                if (nameIndexMap.get(sourcePageName) != null && nameIndexMap.get(targetPageName) != null) {
-                    edgeOutput.add(new GraphEdge(sourcePageName, targetPageName));
-                }
-            }
-        }
-        return edgeOutput;
-    }
-
-    private Map<String, Integer> generateSPMapForDirectNeighbors(final Set<String> allPages,
-                                                                 final Dijkstra shortestPath,
-                                                                 final DefaultGraph graph) {
-        Map<String, Integer> neighbors = Maps.newHashMap();
-        for (String pageName : allPages) {
-            int shortestPathLength = (int) shortestPath.getShortestPathLength(graph.getNode(pageName));
-            neighbors.put(pageName, shortestPathLength);
-        }
-        return neighbors;
-    }
-
-    private Map<String, Float> generateIndegMapForMutuallyConnectedNeighbors(
-            final Set<String> mutuallyConnectedNeighbors,
-            final Map<String, Float> allPagesOrderedByIndeg) {
-        Map<String, Float> neighbors = Maps.newHashMap();
-        for (String pageName : mutuallyConnectedNeighbors) {
-            neighbors.put(pageName, allPagesOrderedByIndeg.get(pageName));
-        }
-        return neighbors;
-    }
-
-    private Dijkstra prepareShortestPath(final DefaultGraph graph) {
-        Dijkstra shortestPath = new Dijkstra(Dijkstra.Element.edge, "weight", searchTerm);
-        shortestPath.init(graph);
-        shortestPath.compute();
-        return shortestPath;
-    }
-
-    private DefaultGraph prepareGraph(final List<GraphEdge> allLinksInNetwork) {
-        // create graph using gs
-        DefaultGraph graph = new MultiGraph("graphForShortestPath", false, true);
-        Random r = new Random();
-        for (GraphEdge edge : allLinksInNetwork) {
-            graph.addEdge(edge.getFrom() + edge.getTo() + r.nextDouble(), edge.getFrom(), edge.getTo(), true);
-        }
-        return graph;
-    }
-
-    private float calculateIndegree(final int numberOfLinks,
-                                    final List<String> allIncommingLinks) {
-        int totalNumberOfLinks = allIncommingLinks.size();
-        return ((float) totalNumberOfLinks / (float) numberOfLinks) * INDEG_MULTIPLICATOR;
-    }
-
     /**
-     * @param allLinksInNetwork
-     * @return In-degree matrix key:target_page value: all pages that point to target_page (key)
+     * @return the search term and all pages it links to that link back to it
      */
-    private Map<String, List<String>> initIndegreeMatrix(final List<GraphEdge> allLinksInNetwork) {
-        Map<String, List<String>> indegreeMatrix = Maps.newHashMap();
-        for (GraphEdge link : allLinksInNetwork) {
-            String from = link.getFrom();
-            String to = link.getTo();
-            if (indegreeMatrix.containsKey(to)) {
-                indegreeMatrix.get(to).add(from);
-            } else {
-                indegreeMatrix.put(to, Lists.newArrayList(from));
-            }
-        }
-        return indegreeMatrix;
-    }
-
-    private List<GraphEdge> buildAllLinksWithinNetwork(final Map<Integer, String> allPagesInNetworkList,
-                                                       final String revisionDateTime) {
-        Set<String> allPageNamesInNetwork = Sets.newHashSet(allPagesInNetworkList.values());
-        final List<GraphEdge> allLinksInNetwork = Collections.synchronizedList(Lists.<GraphEdge>newArrayList());
-        LOG.info("Number of Tasks: " + allPageNamesInNetwork.size());
-        int taskCounter = 1;
-        try {
-            for (Entry<Integer, String> entry : allPagesInNetworkList.entrySet()) {
-                final int pageId = entry.getKey();
-                final String pageName = entry.getValue();
-                threadPool.execute(new SQLExecutor(pageId, allPageNamesInNetwork, pageName,
-                        allLinksInNetwork, taskCounter++, revisionDateTime));
-            }
-        } finally {
-            shutdownThreadPool();
-        }
-        return allLinksInNetwork;
-    }
-
-    private void shutdownThreadPool() {
-        threadPool.shutdown();
-        try {
-            threadPool.awaitTermination(1, TimeUnit.MINUTES);
-        } catch (InterruptedException e) {
-            LOG.error("Error while shutting down Threadpool", e);
-        }
-        while (!threadPool.isTerminated()) {
-            LOG.debug("Waiting for all Tasks to terminate");
+    private static int[] addSearchNode(final int[] mutualNeighbors,
+                                       final int searchNode) {
+        if (mutualNeighbors.length == 0 || Arrays.binarySearch(mutualNeighbors, searchNode) >= 0) {
+            return mutualNeighbors;
         }
+        int[] neighborsAndSearchNode = Arrays.copyOf(mutualNeighbors, mutualNeighbors.length + 1);
+        neighborsAndSearchNode[mutualNeighbors.length] = searchNode;
+        return neighborsAndSearchNode;
     }
 
     /**
-     * Fetches Information from DB and calculates all incomming links to a given
-     * page in the network
+     * @return links from the search term, indexed by node
      */
-    private final class SQLExecutor implements Runnable {
-        private static final int LOG_MODULO = 4000;
-        private final int pageId;
-        private final Set<String> allPageNamesInNetwork;
-        private final String pageName;
-        private final List<GraphEdge> allLinksInNetwork;
-        private final int counter;
-        private final String revisionDateTime;
-
-        private SQLExecutor(final int pageId, final Set<String> allPageNamesInNetwork,
-                final String pageName, final List<GraphEdge> allLinksInNetwork, final int counter,
-                final String revisionDateTime) {
-            this.pageId = pageId;
-            this.allPageNamesInNetwork = allPageNamesInNetwork;
-            this.pageName = pageName;
-            this.allLinksInNetwork = allLinksInNetwork;
-            this.counter = counter;
-            this.revisionDateTime = revisionDateTime;
-        }
-
-        @Override
-        public void run() {
-            if (counter % LOG_MODULO == 0) {
-                LOG.info("Task: " + counter);
-            }
-            Collection<String> allOutgoingLinksOnPage = database.getAllLinksForRevision(pageId, revisionDateTime);
-            for (String outgoingLink : allOutgoingLinksOnPage) {
-                if (allPageNamesInNetwork.contains(outgoingLink)) {
-                    allLinksInNetwork.add(new GraphEdge(pageName, outgoingLink));
-                }
-            }
-        }
+    static int[] getShortestPathLengths(final LinkGraph linkGraph,
+                                        final int searchNode) {
+        // without the search term in the graph every page is unreachable
+        return BreadthFirstSearch.getDistances(linkGraph, searchNode < 0 ? new int[0] : new int[] {searchNode });
     }
 
 }
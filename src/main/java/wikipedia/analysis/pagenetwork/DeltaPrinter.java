@@ -8,9 +8,11 @@ import java.util.Set;
 import org.apache.commons.lang.StringUtils;
 import org.joda.time.DateTime;
 
-import wikipedia.database.DBUtil;
+import wikipedia.database.Storages;
+import wikipedia.database.WikiStorage;
 import wikipedia.http.CategoryMemberFetcher;
 import wikipedia.network.GraphEdge;
+import wikipedia.network.LinkSnapshots;
 import wikipedia.network.TimeFrameGraph;
 
 import com.google.common.collect.Lists;
@@ -25,15 +27,26 @@ public final class DeltaPrinter {
 
     private final Map<Integer, String> allPages;
     private final List<DateTime> allTimeFrames;
+    private final LinkSnapshots snapshots;
 
     public DeltaPrinter(final List<String> categories, final List<DateTime> allTimeFrames, final String lang) {
-        this(new CategoryMemberFetcher(categories, lang, new DBUtil()).getAllPagesInAllCategories(),
+        this(new CategoryMemberFetcher(categories, lang, Storages.open()).getAllPagesInAllCategories(),
                 allTimeFrames);
     }
 
     public DeltaPrinter(final Map<Integer, String> allPages, final List<DateTime> allTimeFrames) {
         this.allPages =  allPages;
         this.allTimeFrames = allTimeFrames;
+        this.snapshots = LinkSnapshots.fromSystemProperty();
+    }
+
+    /**
+     * All pages of the snapshots, frames without snapshot are loaded from the database
+     */
+    public DeltaPrinter(final LinkSnapshots snapshots, final List<DateTime> allTimeFrames) {
+        this.allPages = snapshots.getPages();
+        this.allTimeFrames = allTimeFrames;
+        this.snapshots = snapshots;
     }
 
 //    public static void main(final String[] args) throws IOException {
@@ -53,7 +66,7 @@ public final class DeltaPrinter {
 //    public String buildNetworksAndGenerateInfoXXX() {
 //        List<TimeFrameGraph> dateGraphMap = Lists.newArrayList();
 //        List<DateTime> allTimeFramesOldToNew = Lists.reverse(allTimeFrames);
-//        DBUtil database = new DBUtil();
+//        WikiStorage database = Storages.open();
 //        for (DateTime dateTime : allTimeFramesOldToNew) {
 //            dateGraphMap.add(new SimpleIndegreeNetworkBuilder(allPages, database).getGraphAtDate(dateTime));
 //        }
@@ -61,12 +74,10 @@ public final class DeltaPrinter {
 //    }
 
     public String buildNetworksAndGenerateInfo(final String searchTerm) {
-        List<TimeFrameGraph> dateGraphMap = Lists.newArrayList();
         List<DateTime> allTimeFramesOldToNew = Lists.reverse(allTimeFrames);
-        DBUtil database = new DBUtil();
-        for (DateTime dateTime : allTimeFramesOldToNew) {
-            dateGraphMap.add(new ArticleNetworkBuilder(allPages, database, searchTerm).getGraphAtDate(dateTime));
-        }
+        WikiStorage database = Storages.open();
+        List<TimeFrameGraph> dateGraphMap = new IncrementalNetworkBuilder(allPages, database, snapshots,
+                searchTerm).getGraphsAtDates(allTimeFramesOldToNew);
         return generateTimeFrameInformation(dateGraphMap);
     }
 
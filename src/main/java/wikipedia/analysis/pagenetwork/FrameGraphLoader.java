@@ -0,0 +1,460 @@
+package wikipedia.analysis.pagenetwork;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.joda.time.DateTime;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import wikipedia.database.LinkRowHandler;
+import wikipedia.database.WikiStorage;
+import wikipedia.network.CsrSnapshot;
+import wikipedia.network.IntGraph;
+import wikipedia.network.LinkSnapshots;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * Loads the links between the pages of a network at a given frame into an
+ * IntGraph: from the link snapshots if they contain the frame, otherwise
+ * streamed from the DB in chunks of pages on the shared NetworkPool. Every
+ * page title is a node, a link is kept if its target is the title of one of
+ * the pages.
+ * loadDeltas() loads a sequence of frames as the first frame plus the links
+ * added and removed from frame to frame.
+ */
+final class FrameGraphLoader {
+
+    private static final Logger LOG = LoggerFactory.getLogger(FrameGraphLoader.class.getName());
+    private static final int PAGES_PER_TASK = 1000;
+    private static final int NODE_BITS = 32;
+    private static final long NODE_MASK = 0xFFFFFFFFL;
+
+    private final Map<Integer, String> allPagesInNetwork;
+    private final WikiStorage database;
+    private final LinkSnapshots snapshots;
+    /** pages of the network without node in the snapshots, loaded from the DB */
+    private final List<Integer> pagesMissingInSnapshots;
+
+    /**
+     * @param snapshots used for all frames they contain, may be null
+     */
+    FrameGraphLoader(final Map<Integer, String> allPagesInNetwork, final WikiStorage database,
+            final LinkSnapshots snapshots) {
+        this.allPagesInNetwork = allPagesInNetwork;
+        this.database = database;
+        this.snapshots = snapshots;
+        if (snapshots == null) {
+            pagesMissingInSnapshots = ImmutableList.of();
+        } else {
+            pagesMissingInSnapshots = snapshots.getMissingPages(allPagesInNetwork.keySet());
+            if (!pagesMissingInSnapshots.isEmpty()) {
+                LOG.warn(pagesMissingInSnapshots.size() + " pages of the network are not in the snapshots, "
+                        + "loading their links from the database. Links from other pages to them are "
+                        + "missing in snapshot frames, export the snapshots again to include them.");
+            }
+        }
+    }
+
+    IntGraph load(final DateTime revisionDate) {
+        final IntGraph.Builder graphBuilder = new IntGraph.Builder();
+        final Map<String, Integer> nodesByTitle = addNodes(graphBuilder);
+        if (snapshots != null && snapshots.hasFrame(revisionDate)) {
+            try {
+                addSnapshotLinks(graphBuilder, nodesByTitle, snapshots.getFrame(revisionDate));
+                addDatabaseLinks(graphBuilder, nodesByTitle, revisionDate, pagesMissingInSnapshots);
+                return graphBuilder.build();
+            } catch (IOException e) {
+                LOG.error("Could not read snapshot, loading links from the database", e);
+            }
+        }
+        addDatabaseLinks(graphBuilder, nodesByTitle, revisionDate, allPagesInNetwork.keySet());
+        return graphBuilder.build();
+    }
+
+    /**
+     * Same nodes as load(), the links of all frames are streamed from the DB
+     * in one pass per chunk of pages and compared within the chunk, so only
+     * the first frame and the changes are kept in memory. With LINK_DELTAS
+     * storage the full frames are rebuilt from the stored deltas and compared
+     * again: the stored deltas refer to the previous stored frame of a page,
+     * which need not be the previous requested frame.
+     *
+     * @param revisionDates in animation order
+     */
+    FrameDeltas loadDeltas(final List<DateTime> revisionDates) {
+        final IntGraph.Builder graphBuilder = new IntGraph.Builder();
+        final Map<String, Integer> nodesByTitle = addNodes(graphBuilder);
+        final Map<Integer, Integer> nodesByPageId = Maps.newHashMapWithExpectedSize(allPagesInNetwork.size());
+        for (Entry<Integer, String> page : allPagesInNetwork.entrySet()) {
+            nodesByPageId.put(page.getKey(), nodesByTitle.get(page.getValue()));
+        }
+        final CsrSnapshot[] snapshotFrames = openSnapshotFrames(revisionDates);
+        final DeltaCollector collector = new DeltaCollector(revisionDates, snapshotFrames, nodesByTitle,
+                nodesByPageId);
+
+        List<List<Integer>> pageIdChunks = Lists.partition(Lists.newArrayList(allPagesInNetwork.keySet()),
+                PAGES_PER_TASK);
+        LOG.info("Number of Tasks: " + pageIdChunks.size() + ", Frames: " + revisionDates.size());
+        List<Runnable> tasks = Lists.newArrayListWithCapacity(pageIdChunks.size());
+        for (final List<Integer> pageIds : pageIdChunks) {
+            tasks.add(new Runnable() {
+                @Override
+                public void run() {
+                    collector.collect(pageIds);
+                }
+            });
+        }
+        NetworkPool.runAll(tasks);
+        graphBuilder.addEdges(collector.firstFrameEdges.toArray());
+        long[][] addedEdges = new long[revisionDates.size()][];
+        long[][] removedEdges = new long[revisionDates.size()][];
+        for (int frameIndex = 1; frameIndex < revisionDates.size(); frameIndex++) {
+            addedEdges[frameIndex] = collector.addedEdges.get(frameIndex).toArray();
+            removedEdges[frameIndex] = collector.removedEdges.get(frameIndex).toArray();
+        }
+        return new FrameDeltas(graphBuilder.build(), addedEdges, removedEdges);
+    }
+
+    private Map<String, Integer> addNodes(final IntGraph.Builder graphBuilder) {
+        final Map<String, Integer> nodesByTitle = Maps.newHashMapWithExpectedSize(allPagesInNetwork.size());
+        for (String title : allPagesInNetwork.values()) {
+            nodesByTitle.put(title, graphBuilder.addNode(title));
+        }
+        return nodesByTitle;
+    }
+
+    /**
+     * @return snapshot of each frame, null for frames loaded from the DB
+     */
+    private CsrSnapshot[] openSnapshotFrames(final List<DateTime> revisionDates) {
+        CsrSnapshot[] snapshotFrames = new CsrSnapshot[revisionDates.size()];
+        if (snapshots == null) {
+            return snapshotFrames;
+        }
+        for (int frameIndex = 0; frameIndex < snapshotFrames.length; frameIndex++) {
+            if (snapshots.hasFrame(revisionDates.get(frameIndex))) {
+                try {
+                    snapshotFrames[frameIndex] = snapshots.getFrame(revisionDates.get(frameIndex));
+                } catch (IOException e) {
+                    LOG.error("Could not read snapshot, loading links from the database", e);
+                }
+            }
+        }
+        return snapshotFrames;
+    }
+
+    private static long toEdge(final int source,
+                               final int target) {
+        return ((long) source << NODE_BITS) | target;
+    }
+
+    static int getSource(final long edge) {
+        return (int) (edge >>> NODE_BITS);
+    }
+
+    static int getTarget(final long edge) {
+        return (int) (edge & NODE_MASK);
+    }
+
+    /**
+     * @return all edges of left that are not in right, both sorted
+     */
+    private static long[] difference(final long[] left,
+                                     final long[] right) {
+        long[] result = new long[left.length];
+        int size = 0;
+        int j = 0;
+        for (long edge : left) {
+            while (j < right.length && right[j] < edge) {
+                j++;
+            }
+            if (j == right.length || right[j] != edge) {
+                result[size++] = edge;
+            }
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    private void addSnapshotLinks(final IntGraph.Builder graphBuilder,
+                                  final Map<String, Integer> nodesByTitle,
+                                  final CsrSnapshot snapshot) {
+        for (int snapshotNode = 0; snapshotNode < snapshot.getNumberOfNodes(); snapshotNode++) {
+            final String sourceTitle = allPagesInNetwork.get(snapshots.getPageId(snapshotNode));
+            if (sourceTitle == null) {
+                continue;
+            }
+            final int source = nodesByTitle.get(sourceTitle);
+            final int lastEdge = snapshot.getFirstEdge(snapshotNode + 1);
+            for (int edge = snapshot.getFirstEdge(snapshotNode); edge < lastEdge; edge++) {
+                final Integer target = nodesByTitle.get(snapshots.getTitle(snapshot.getTarget(edge)));
+                if (target != null) {
+                    graphBuilder.addEdge(source, target);
+                }
+            }
+        }
+    }
+
+    private void addDatabaseLinks(final IntGraph.Builder graphBuilder,
+                                  final Map<String, Integer> nodesByTitle,
+                                  final DateTime revisionDate,
+                                  final Collection<Integer> pages) {
+        List<List<Integer>> pageIdChunks = Lists.partition(Lists.newArrayList(pages), PAGES_PER_TASK);
+        LOG.info("Number of Tasks: " + pageIdChunks.size());
+        List<LinkLoader> tasks = Lists.newArrayListWithCapacity(pageIdChunks.size());
+        for (List<Integer> pageIds : pageIdChunks) {
+            tasks.add(new LinkLoader(pageIds, graphBuilder, nodesByTitle, revisionDate));
+        }
+        NetworkPool.runAll(tasks);
+    }
+
+    /**
+     * Streams the links of a chunk of pages from the DB and keeps all links
+     * that point to a page in the network. The links are collected locally and
+     * added to the shared builder in one call.
+     */
+    private final class LinkLoader implements Runnable {
+        private final List<Integer> pageIds;
+        private final IntGraph.Builder graphBuilder;
+        private final Map<String, Integer> nodesByTitle;
+        private final DateTime revisionDate;
+
+        private LinkLoader(final List<Integer> pageIds, final IntGraph.Builder graphBuilder,
+                final Map<String, Integer> nodesByTitle, final DateTime revisionDate) {
+            this.pageIds = pageIds;
+            this.graphBuilder = graphBuilder;
+            this.nodesByTitle = nodesByTitle;
+            this.revisionDate = revisionDate;
+        }
+
+        @Override
+        public void run() {
+            final EdgeBuffer edges = new EdgeBuffer();
+            database.streamLinksForFrames(pageIds, ImmutableList.of(revisionDate), new LinkRowHandler() {
+                @Override
+                public void processLink(final int frameIndex,
+                                        final int srcPageId,
+                                        final String targetPageTitle) {
+                    final Integer target = nodesByTitle.get(targetPageTitle);
+                    if (target != null) {
+                        edges.add(toEdge(nodesByTitle.get(allPagesInNetwork.get(srcPageId)), target));
+                    }
+                }
+            });
+            graphBuilder.addEdges(edges.toArray());
+        }
+    }
+
+    /**
+     * Links of a chunk of pages in all frames, compared frame to frame. The
+     * links of a page belong to its chunk only, so the changes of the chunks
+     * add up to the changes of the network.
+     */
+    private final class DeltaCollector {
+        private final List<DateTime> revisionDates;
+        private final CsrSnapshot[] snapshotFrames;
+        private final Map<String, Integer> nodesByTitle;
+        private final Map<Integer, Integer> nodesByPageId;
+        /** frames without snapshot, as passed to the DB */
+        private final List<DateTime> databaseDates = Lists.newArrayList();
+        private final List<Integer> databaseFrameIndexes = Lists.newArrayList();
+        /** frames with snapshot, loaded from the DB for pages missing in the snapshots */
+        private final List<DateTime> snapshotDates = Lists.newArrayList();
+        private final List<Integer> snapshotFrameIndexes = Lists.newArrayList();
+        /** key: page id, value: snapshot node */
+        private final Map<Integer, Integer> snapshotNodesByPageId = Maps.newHashMap();
+        /** network node of each snapshot node (title), -1 if the title is not in the network */
+        private final int[] networkNodesBySnapshotNode;
+
+        private final EdgeBuffer firstFrameEdges = new EdgeBuffer();
+        private final List<EdgeBuffer> addedEdges = Lists.newArrayList();
+        private final List<EdgeBuffer> removedEdges = Lists.newArrayList();
+
+        private DeltaCollector(final List<DateTime> revisionDates, final CsrSnapshot[] snapshotFrames,
+                final Map<String, Integer> nodesByTitle, final Map<Integer, Integer> nodesByPageId) {
+            this.revisionDates = revisionDates;
+            this.snapshotFrames = snapshotFrames;
+            this.nodesByTitle = nodesByTitle;
+            this.nodesByPageId = nodesByPageId;
+            int numberOfSnapshotNodes = 0;
+            for (int frameIndex = 0; frameIndex < revisionDates.size(); frameIndex++) {
+                addedEdges.add(new EdgeBuffer());
+                removedEdges.add(new EdgeBuffer());
+                if (snapshotFrames[frameIndex] == null) {
+                    databaseDates.add(revisionDates.get(frameIndex));
+                    databaseFrameIndexes.add(frameIndex);
+                } else {
+                    snapshotDates.add(revisionDates.get(frameIndex));
+                    snapshotFrameIndexes.add(frameIndex);
+                    numberOfSnapshotNodes = snapshotFrames[frameIndex].getNumberOfNodes();
+                }
+            }
+            networkNodesBySnapshotNode = new int[numberOfSnapshotNodes];
+            for (int snapshotNode = 0; snapshotNode < numberOfSnapshotNodes; snapshotNode++) {
+                snapshotNodesByPageId.put(snapshots.getPageId(snapshotNode), snapshotNode);
+                final Integer node = nodesByTitle.get(snapshots.getTitle(snapshotNode));
+                networkNodesBySnapshotNode[snapshotNode] = node == null ? -1 : node;
+            }
+        }
+
+        private void collect(final List<Integer> pageIds) {
+            final EdgeBuffer[] frameEdges = new EdgeBuffer[revisionDates.size()];
+            for (int frameIndex = 0; frameIndex < frameEdges.length; frameIndex++) {
+                frameEdges[frameIndex] = new EdgeBuffer();
+            }
+            addDatabaseEdges(pageIds, databaseDates, databaseFrameIndexes, frameEdges);
+            if (!snapshotDates.isEmpty()) {
+                List<Integer> missingPageIds = Lists.newArrayList();
+                for (Integer pageId : pageIds) {
+                    if (!snapshotNodesByPageId.containsKey(pageId)) {
+                        missingPageIds.add(pageId);
+                    }
+                }
+                addDatabaseEdges(missingPageIds, snapshotDates, snapshotFrameIndexes, frameEdges);
+            }
+            for (int frameIndex = 0; frameIndex < frameEdges.length; frameIndex++) {
+                if (snapshotFrames[frameIndex] != null) {
+                    addSnapshotEdges(snapshotFrames[frameIndex], pageIds, frameEdges[frameIndex]);
+                }
+            }
+
+            long[] previous = frameEdges[0].toSortedSet();
+            firstFrameEdges.addAll(previous);
+            for (int frameIndex = 1; frameIndex < frameEdges.length; frameIndex++) {
+                final long[] current = frameEdges[frameIndex].toSortedSet();
+                addedEdges.get(frameIndex).addAll(difference(current, previous));
+                removedEdges.get(frameIndex).addAll(difference(previous, current));
+                previous = current;
+            }
+        }
+
+        /**
+         * @param frameIndexes position of each date in revisionDates
+         */
+        private void addDatabaseEdges(final List<Integer> pageIds,
+                                      final List<DateTime> dates,
+                                      final List<Integer> frameIndexes,
+                                      final EdgeBuffer[] frameEdges) {
+            if (pageIds.isEmpty() || dates.isEmpty()) {
+                return;
+            }
+            database.streamLinksForFrames(pageIds, dates, new LinkRowHandler() {
+                @Override
+                public void processLink(final int frameIndex,
+                                        final int srcPageId,
+                                        final String targetPageTitle) {
+                    final Integer target = nodesByTitle.get(targetPageTitle);
+                    if (target != null) {
+                        frameEdges[frameIndexes.get(frameIndex)].add(toEdge(nodesByPageId.get(srcPageId), target));
+                    }
+                }
+            });
+        }
+
+        private void addSnapshotEdges(final CsrSnapshot snapshot,
+                                      final List<Integer> pageIds,
+                                      final EdgeBuffer edges) {
+            for (Integer pageId : pageIds) {
+                final Integer snapshotNode = snapshotNodesByPageId.get(pageId);
+                if (snapshotNode == null) {
+                    continue;
+                }
+                final int source = nodesByPageId.get(pageId);
+                final int lastEdge = snapshot.getFirstEdge(snapshotNode + 1);
+                for (int edge = snapshot.getFirstEdge(snapshotNode); edge < lastEdge; edge++) {
+                    final int target = networkNodesBySnapshotNode[snapshot.getTarget(edge)];
+                    if (target >= 0) {
+                        edges.add(toEdge(source, target));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Growable array of packed edges, source in the upper 32 bits
+     */
+    private static final class EdgeBuffer {
+        private long[] edges = new long[16];
+        private int size;
+
+        private synchronized void add(final long edge) {
+            if (size == edges.length) {
+                edges = Arrays.copyOf(edges, size * 2);
+            }
+            edges[size++] = edge;
+        }
+
+        private synchronized void addAll(final long[] moreEdges) {
+            if (size + moreEdges.length > edges.length) {
+                edges = Arrays.copyOf(edges, Math.max(size * 2, size + moreEdges.length));
+            }
+            System.arraycopy(moreEdges, 0, edges, size, moreEdges.length);
+            size += moreEdges.length;
+        }
+
+        private synchronized long[] toArray() {
+            return Arrays.copyOf(edges, size);
+        }
+
+        /**
+         * @return sorted edges without duplicates
+         */
+        private synchronized long[] toSortedSet() {
+            long[] sorted = Arrays.copyOf(edges, size);
+            Arrays.sort(sorted);
+            int unique = 0;
+            for (int i = 0; i < sorted.length; i++) {
+                if (i == 0 || sorted[i] != sorted[i - 1]) {
+                    sorted[unique++] = sorted[i];
+                }
+            }
+            return Arrays.copyOf(sorted, unique);
+        }
+    }
+
+    /**
+     * First frame of a sequence as IntGraph, the changes of all later frames
+     * as packed edges (see getSource, getTarget) between its nodes
+     */
+    static final class FrameDeltas {
+        private final IntGraph firstFrame;
+        private final long[][] addedEdges;
+        private final long[][] removedEdges;
+
+        private FrameDeltas(final IntGraph firstFrame, final long[][] addedEdges, final long[][] removedEdges) {
+            this.firstFrame = firstFrame;
+            this.addedEdges = addedEdges;
+            this.removedEdges = removedEdges;
+        }
+
+        IntGraph getFirstFrame() {
+            return firstFrame;
+        }
+
+        int getNumberOfFrames() {
+            return addedEdges.length;
+        }
+
+        /**
+         * @param frameIndex 1 to getNumberOfFrames() - 1
+         */
+        long[] getAddedEdges(final int frameIndex) {
+            return addedEdges[frameIndex];
+        }
+
+        /**
+         * @param frameIndex 1 to getNumberOfFrames() - 1
+         */
+        long[] getRemovedEdges(final int frameIndex) {
+            return removedEdges[frameIndex];
+        }
+    }
+}
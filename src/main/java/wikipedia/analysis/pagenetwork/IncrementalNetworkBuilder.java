@@ -0,0 +1,132 @@
+package wikipedia.analysis.pagenetwork;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+import org.joda.time.DateTime;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import wikipedia.analysis.pagenetwork.FrameGraphLoader.FrameDeltas;
+import wikipedia.database.WikiStorage;
+import wikipedia.network.BreadthFirstSearch;
+import wikipedia.network.DynamicIntGraph;
+import wikipedia.network.IntGraph;
+import wikipedia.network.LinkSnapshots;
+import wikipedia.network.TimeFrameGraph;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Builds the same networks as the ArticleNetworkBuilder for a sequence of
+ * frames, but loads only the first frame completely and applies the added
+ * and removed links of each later frame to a DynamicIntGraph. In degrees and
+ * mutual neighbours follow the changes, the shortest paths from the search
+ * term are searched again only if a change can affect them. Long sequences
+ * are split into segments that are built concurrently on the NetworkPool,
+ * each starting with one complete frame.
+ */
+public final class IncrementalNetworkBuilder {
+
+    private static final Logger LOG = LoggerFactory.getLogger(IncrementalNetworkBuilder.class.getName());
+
+    /**
+     * every segment costs a complete frame, shorter segments are not worth it.
+     * Long sequences have more segments than MAX_SEGMENTS_IN_FLIGHT.
+     */
+    private static final int FRAMES_PER_SEGMENT = 6;
+    /** each segment in flight holds a graph of all pages and the changes of its frames */
+    private static final int MAX_SEGMENTS_IN_FLIGHT = 4;
+
+    private final String searchTerm;
+    private final FrameGraphLoader graphLoader;
+
+    /**
+     * @param snapshots used for all frames they contain, may be null
+     */
+    public IncrementalNetworkBuilder(final Map<Integer, String> allPagesInNetwork,
+                                     final WikiStorage database,
+                                     final LinkSnapshots snapshots,
+                                     final String searchTerm) {
+        this.graphLoader = new FrameGraphLoader(allPagesInNetwork, database, snapshots);
+        this.searchTerm = searchTerm;
+    }
+
+    /**
+     * @param revisionDates in animation order
+     * @return network of each frame, in the same order
+     */
+    public List<TimeFrameGraph> getGraphsAtDates(final List<DateTime> revisionDates) {
+        List<TimeFrameGraph> frameGraphs = Lists.newArrayListWithCapacity(revisionDates.size());
+        if (revisionDates.isEmpty()) {
+            return frameGraphs;
+        }
+        List<Callable<List<TimeFrameGraph>>> segments = Lists.newArrayList();
+        for (final List<DateTime> segmentDates : Lists.partition(revisionDates, FRAMES_PER_SEGMENT)) {
+            segments.add(new Callable<List<TimeFrameGraph>>() {
+                @Override
+                public List<TimeFrameGraph> call() {
+                    return buildSegment(segmentDates);
+                }
+            });
+        }
+        for (List<TimeFrameGraph> segmentGraphs : NetworkPool.invokeOrdered(segments, MAX_SEGMENTS_IN_FLIGHT)) {
+            frameGraphs.addAll(segmentGraphs);
+        }
+        return frameGraphs;
+    }
+
+    private List<TimeFrameGraph> buildSegment(final List<DateTime> revisionDates) {
+        List<TimeFrameGraph> frameGraphs = Lists.newArrayListWithCapacity(revisionDates.size());
+        final FrameDeltas deltas = graphLoader.loadDeltas(revisionDates);
+        final IntGraph firstFrame = deltas.getFirstFrame();
+        final int searchNode = firstFrame.getNode(searchTerm);
+        final DynamicIntGraph linkGraph = new DynamicIntGraph(firstFrame);
+
+        int[] shortestPathLengths = ArticleNetworkBuilder.getShortestPathLengths(linkGraph, searchNode);
+        frameGraphs.add(createFrameGraph(linkGraph, searchNode, shortestPathLengths, revisionDates.get(0)));
+        int searches = 1;
+        int changes = 0;
+        for (int frameIndex = 1; frameIndex < deltas.getNumberOfFrames(); frameIndex++) {
+            final long[] removedEdges = deltas.getRemovedEdges(frameIndex);
+            final long[] addedEdges = deltas.getAddedEdges(frameIndex);
+            boolean pathsChanged = false;
+            for (long edge : removedEdges) {
+                final int from = FrameGraphLoader.getSource(edge);
+                final int to = FrameGraphLoader.getTarget(edge);
+                // the link may have been the last one on a shortest path to its target
+                pathsChanged |= shortestPathLengths[from] != BreadthFirstSearch.UNREACHABLE
+                        && shortestPathLengths[to] == shortestPathLengths[from] + 1;
+                linkGraph.removeEdge(from, to);
+            }
+            for (long edge : addedEdges) {
+                final int from = FrameGraphLoader.getSource(edge);
+                final int to = FrameGraphLoader.getTarget(edge);
+                // a shortcut to its target
+                pathsChanged |= shortestPathLengths[from] != BreadthFirstSearch.UNREACHABLE
+                        && shortestPathLengths[from] + 1 < shortestPathLengths[to];
+                linkGraph.addEdge(from, to);
+            }
+            if (pathsChanged) {
+                shortestPathLengths = ArticleNetworkBuilder.getShortestPathLengths(linkGraph, searchNode);
+                searches++;
+            }
+            changes += removedEdges.length + addedEdges.length;
+            frameGraphs.add(createFrameGraph(linkGraph, searchNode, shortestPathLengths, revisionDates
+                    .get(frameIndex)));
+        }
+        LOG.info("Frames: " + revisionDates.size() + ", links of first frame: " + firstFrame.getNumberOfEdges()
+                + ", changed links: " + changes + ", shortest path searches: " + searches);
+        return frameGraphs;
+    }
+
+    private static TimeFrameGraph createFrameGraph(final DynamicIntGraph linkGraph,
+                                                   final int searchNode,
+                                                   final int[] shortestPathLengths,
+                                                   final DateTime dateTime) {
+        final int[] mutualNeighbors = searchNode < 0 ? new int[0] : linkGraph.getMutualNeighbors(searchNode);
+        return ArticleNetworkBuilder.createFrameGraph(linkGraph, searchNode, mutualNeighbors, shortestPathLengths,
+                dateTime);
+    }
+}
@@ -0,0 +1,72 @@
+package wikipedia.analysis.pagenetwork;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Work-stealing pool shared by all network builders. Frames run as tasks on
+ * it and fork the loaders of their page chunks, idle workers steal chunks of
+ * any frame, so the cores stay busy while a single frame waits for the DB.
+ */
+final class NetworkPool {
+
+    /** the tasks mostly wait for the database, at least as many workers as the former per-frame pools */
+    private static final int PARALLELISM = Math.max(8, Runtime.getRuntime().availableProcessors());
+    private static final ForkJoinPool POOL = new ForkJoinPool(PARALLELISM);
+
+    private NetworkPool() {
+    }
+
+    /**
+     * Runs the tasks in parallel and waits for them. The exception of a failed
+     * task is rethrown, a network with missing chunks must not be built.
+     */
+    static void runAll(final List<? extends Runnable> tasks) {
+        final List<ForkJoinTask<?>> forkedTasks = Lists.newArrayListWithCapacity(tasks.size());
+        for (Runnable task : tasks) {
+            forkedTasks.add(ForkJoinTask.adapt(task));
+        }
+        if (ForkJoinTask.getPool() == POOL) {
+            // called by a frame task, the current worker helps instead of blocking
+            ForkJoinTask.invokeAll(forkedTasks);
+        } else {
+            POOL.invoke(new RecursiveAction() {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected void compute() {
+                    ForkJoinTask.invokeAll(forkedTasks);
+                }
+            });
+        }
+    }
+
+    /**
+     * Runs at most maxInFlight tasks at a time, the next one starts as soon
+     * as the oldest running one is collected
+     *
+     * @return results in the order of the tasks
+     */
+    static <T> List<T> invokeOrdered(final List<? extends Callable<T>> tasks,
+                                     final int maxInFlight) {
+        List<T> results = Lists.newArrayListWithCapacity(tasks.size());
+        Deque<ForkJoinTask<T>> inFlight = new ArrayDeque<ForkJoinTask<T>>(maxInFlight);
+        for (Callable<T> task : tasks) {
+            if (inFlight.size() == maxInFlight) {
+                results.add(inFlight.removeFirst().join());
+            }
+            inFlight.addLast(POOL.submit(task));
+        }
+        while (!inFlight.isEmpty()) {
+            results.add(inFlight.removeFirst().join());
+        }
+        return results;
+    }
+}
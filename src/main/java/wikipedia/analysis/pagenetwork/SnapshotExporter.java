@@ -0,0 +1,39 @@
+package wikipedia.analysis.pagenetwork;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import org.joda.time.DateMidnight;
+import org.joda.time.DateTime;
+
+import util.DateListGenerator;
+import wikipedia.database.Storages;
+import wikipedia.database.WikiStorage;
+import wikipedia.http.CategoryMemberFetcher;
+import wikipedia.network.LinkSnapshots;
+
+/**
+ * Exports the monthly link graphs of a category set as CSR snapshots, later
+ * runs with -Dwikimaps.snapshots=&lt;directory&gt; read the frames from there
+ */
+public final class SnapshotExporter {
+
+    private static final int NUMBER_OF_MONTHS = 36;
+
+    private SnapshotExporter() {
+    }
+
+    /**
+     * @param args target directory
+     */
+    public static void main(final String[] args) throws IOException {
+        final File directory = new File(args.length > 0 ? args[0] : "out/snapshots");
+        final DateTime mostRecent = new DateMidnight(2011, 7, 1).toDateTime();
+        List<DateTime> allTimeFrames = DateListGenerator.getMonthGenerator().getDateList(NUMBER_OF_MONTHS,
+                mostRecent);
+        WikiStorage database = Storages.open();
+        LinkSnapshots.export(database, new CategoryMemberFetcher(CategoryLists.BORN_IN_THE_80IES, "en",
+                database).getAllPagesInAllCategories(), allTimeFrames, directory);
+    }
+}
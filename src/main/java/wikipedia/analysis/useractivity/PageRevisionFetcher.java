@@ -2,19 +2,29 @@ package wikipedia.analysis.useractivity;
 
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
+import java.util.List;
 
 import org.apache.http.impl.client.DefaultHttpClient;
+import org.joda.time.DateTimeZone;
+import org.joda.time.format.ISODateTimeFormat;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import util.Const;
+import util.HTTPUtil;
+import wikipedia.database.CachedRevisionRange;
+import wikipedia.database.WikiStorage;
 import wikipedia.http.WikiAPIClient;
 import wikipedia.xml.Api;
 import wikipedia.xml.Rev;
 import wikipedia.xml.XMLTransformer;
 
+import com.google.common.collect.Lists;
+
 /**
- * Downloads all revisions of a single article
+ * Downloads all revisions of a single article. If a database is given, the
+ * revisions are cached and only revisions newer than the newest cached one
+ * are downloaded.
  */
 public final class PageRevisionFetcher {
 
@@ -24,27 +34,53 @@ public final class PageRevisionFetcher {
 
     private static final int MAX_REVISIONS = 4000;
 
+    private static final String DIRECTION_OLDER = "older";
+    private static final String DIRECTION_NEWER = "newer";
+
     private final DefaultHttpClient httpclient = new DefaultHttpClient();
     private final WikiAPIClient wikiAPIClient = new WikiAPIClient(httpclient);
 
     private final String pageTitle;
     private final String lang;
     private final int numberOfRevisions;
+    private final WikiStorage database;
 
-    public PageRevisionFetcher(final String lang, final String pageTitle, final int numberOfRevisions) {
+    public PageRevisionFetcher(final String lang, final String pageTitle, final int numberOfRevisions,
+            final WikiStorage database) {
         this.lang = lang;
         this.numberOfRevisions = numberOfRevisions;
         this.pageTitle = pageTitle.replaceAll(" ", "_");
+        this.database = database;
+    }
+
+    public PageRevisionFetcher(final String lang, final String pageTitle, final int numberOfRevisions) {
+        this(lang, pageTitle, numberOfRevisions, null);
+    }
+
+    public PageRevisionFetcher(final String lang, final String pageTitle, final WikiStorage database) {
+        this(lang, pageTitle, MAX_REVISIONS, database);
     }
 
     public PageRevisionFetcher(final String lang, final String pageTitle) {
-        this(lang, pageTitle, MAX_REVISIONS);
+        this(lang, pageTitle, MAX_REVISIONS, null);
     }
 
     public Revisions getArticleRevisions() {
         Revisions revisionsResult = new Revisions(pageTitle);
         try {
-            addAllRevisionsToList(revisionsResult);
+            if (database == null) {
+                for (Rev rev : downloadRevisions(DIRECTION_OLDER, "", numberOfRevisions)) {
+                    revisionsResult.addEdit(rev.getUser(), rev.getTimestamp(), rev.getSize());
+                }
+            } else {
+                try {
+                    synchronizeCache();
+                } catch (Exception e) {
+                    // slightly stale revisions are better than none
+                    LOG.error("Could not synchronize revisions of " + pageTitle + ", using the cached ones", e);
+                }
+                database.loadCachedRevisions(pageTitle, numberOfRevisions, revisionsResult);
+            }
         } catch (Exception e) {
             LOG.error("Error while executing HTTP request", e);
         } finally {
@@ -53,30 +89,56 @@ public final class PageRevisionFetcher {
         return revisionsResult;
     }
 
-    private void addAllRevisionsToList(final Revisions revisionsResult) throws Exception {
+    /**
+     * Downloads the revisions missing locally: everything newer than the
+     * newest cached revision and, if less than numberOfRevisions are cached,
+     * older revisions up to that limit
+     */
+    private void synchronizeCache() throws Exception {
+        CachedRevisionRange cachedRange = database.getCachedRevisionRange(pageTitle);
+        if (cachedRange.isEmpty()) {
+            database.storeRevisions(pageTitle, downloadRevisions(DIRECTION_OLDER, "", numberOfRevisions));
+            return;
+        }
+        final String newestTimestamp = cachedRange.getNewestTimestamp().withZone(DateTimeZone.UTC)
+                .toString(ISODateTimeFormat.dateTimeNoMillis());
+        database.storeRevisions(pageTitle, downloadRevisions(DIRECTION_NEWER,
+                "&rvstart=" + HTTPUtil.urlEncode(newestTimestamp), Integer.MAX_VALUE));
+
+        final int missingRevisions = numberOfRevisions - cachedRange.getNumberOfRevisions();
+        if (missingRevisions > 0 && !cachedRange.isHistoryComplete()) {
+            database.storeRevisions(pageTitle, downloadRevisions(DIRECTION_OLDER,
+                    "&rvstartid=" + cachedRange.getOldestRevisionId(), missingRevisions));
+        }
+    }
+
+    private List<Rev> downloadRevisions(final String direction,
+                                        final String startParameter,
+                                        final int maxRevisions) throws Exception {
+        List<Rev> revisions = Lists.newArrayList();
         Api revisionFromXML = null;
-        String queryContinueID = "";
+        String continueParameter = startParameter;
         int counter = 0;
-        while (counter < numberOfRevisions) {
-            final String xml = getArticleRevisionsXML(queryContinueID);
+        while (counter < maxRevisions) {
+            final String xml = getArticleRevisionsXML(direction, continueParameter);
             counter = counter + PAGE_SIZE;
             revisionFromXML = XMLTransformer.getRevisionFromXML(xml);
-            for (Rev rev : revisionFromXML.getQuery().getPages().get(0).getRevisions()) {
-                revisionsResult.addEditEntry(new Revision(rev.getUser(), rev.getTimestamp(), rev.getSize()));
+            final List<Rev> revisionsOnPage = revisionFromXML.getQuery().getPages().get(0).getRevisions();
+            if (revisionsOnPage != null) {
+                revisions.addAll(revisionsOnPage);
             }
             if (revisionFromXML.isLastPageInRequestSeries()) {
                 break;
             } else {
-                queryContinueID = revisionFromXML.getQueryContinue().getRevisions().getRvstartid();
+                continueParameter = "&rvstartid="
+                        + revisionFromXML.getQueryContinue().getRevisions().getRvstartid();
             }
         }
+        return revisions;
     }
 
-    private String getArticleRevisionsXML(final String nextId) {
-        String rvstartid = "&rvstartid=" + nextId;
-        if (nextId.equals("")) {
-            rvstartid = "";
-        }
+    private String getArticleRevisionsXML(final String direction,
+                                          final String continueParameter) {
         String pageid = "";
 
         try {
@@ -87,7 +149,8 @@ public final class PageRevisionFetcher {
 
         String urlStr = "http://" + lang
                 + ".wikipedia.org/w/api.php?format=xml&action=query&prop=revisions&titles=" + pageid
-                + "&rvlimit=" + PAGE_SIZE + "&rvprop=flags%7Ctimestamp%7Cuser%7Csize&rvdir=older" + rvstartid;
+                + "&rvlimit=" + PAGE_SIZE + "&rvprop=ids%7Cflags%7Ctimestamp%7Cuser%7Csize&rvdir="
+                + direction + continueParameter;
         LOG.info("Requesting URL: " + urlStr);
         return wikiAPIClient.executeHTTPRequest(urlStr);
     }
@@ -6,10 +6,10 @@ import org.joda.time.DateTime;
 
 public final class Revision implements Serializable {
 
-    private static final long serialVersionUID = 4868909223601860648L;
+    private static final long serialVersionUID = -6170833413853096312L;
 
     private final String userID;
-    private final DateTime timestamp;
+    private final long timestampMillis;
     private final int editSize;
 
     public int getEditSize() {
@@ -17,7 +17,7 @@ public final class Revision implements Serializable {
     }
 
     public DateTime getTimestamp() {
-        return timestamp;
+        return new DateTime(timestampMillis);
     }
 
     public String getUserID() {
@@ -25,8 +25,12 @@ public final class Revision implements Serializable {
     }
 
     public Revision(final String userID, final String timestamp, final int editSize) {
+        this(userID, new DateTime(timestamp).getMillis(), editSize);
+    }
+
+    public Revision(final String userID, final long timestampMillis, final int editSize) {
         this.userID = userID;
-        this.timestamp = new DateTime(timestamp);
+        this.timestampMillis = timestampMillis;
         this.editSize = editSize;
     }
 
@@ -1,66 +1,188 @@
 package wikipedia.analysis.useractivity;
 
 import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
-import java.util.regex.Pattern;
 
 import org.apache.commons.lang.StringUtils;
+import org.joda.time.format.DateTimeFormatter;
+import org.joda.time.format.ISODateTimeFormat;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.net.InetAddresses;
 
+/**
+ * Revision history of a single article, stored column-wise in parallel
+ * primitive arrays (timestamp, user id, edit size). User names are
+ * dictionary-encoded, the user id is the index into the dictionary.
+ */
 public final class Revisions implements Serializable {
 
-    private static final long serialVersionUID = -4852482473135369468L;
+    private static final long serialVersionUID = 3217460982310155924L;
+
+    private static final int INITIAL_CAPACITY = 512;
+
+    private static final DateTimeFormatter TIMESTAMP_PARSER = ISODateTimeFormat.dateTimeParser();
 
     private final String articleName;
 
-    public String getArticleName() {
-        return articleName;
-    }
+    private long[] timestamps = new long[INITIAL_CAPACITY];
+    private int[] userIds = new int[INITIAL_CAPACITY];
+    private int[] editSizes = new int[INITIAL_CAPACITY];
+    private int numberOfRevisions;
 
-    private final List<Revision> edits = Lists.newArrayList();
+    private final List<String> userNames = Lists.newArrayList();
+    private final Map<String, Integer> userIdsByName = Maps.newHashMap();
 
     public Revisions(final String articleName) {
         this.articleName = articleName;
     }
 
+    public String getArticleName() {
+        return articleName;
+    }
+
     public void addEditEntry(final Revision rev) {
+        addEdit(rev.getUserID(), rev.getTimestamp().getMillis(), rev.getEditSize());
+    }
+
+    /**
+     * @param timestamp ISO 8601 timestamp as returned by the API
+     */
+    public void addEdit(final String userID, final String timestamp, final int editSize) {
+        if (isRegisteredUser(userID)) {
+            addEdit(userID, TIMESTAMP_PARSER.parseMillis(timestamp), editSize);
+        }
+    }
+
+    public void addEdit(final String userID, final long timestampMillis, final int editSize) {
         // ignore anonymous edits
-        if (rev.getUserID() != null && isNotIP(rev.getUserID())) {
-            edits.add(rev);
+        if (!isRegisteredUser(userID)) {
+            return;
+        }
+        if (numberOfRevisions == timestamps.length) {
+            final int newCapacity = timestamps.length * 2;
+            timestamps = Arrays.copyOf(timestamps, newCapacity);
+            userIds = Arrays.copyOf(userIds, newCapacity);
+            editSizes = Arrays.copyOf(editSizes, newCapacity);
+        }
+        timestamps[numberOfRevisions] = timestampMillis;
+        userIds[numberOfRevisions] = getOrCreateUserId(userID);
+        editSizes[numberOfRevisions] = editSize;
+        numberOfRevisions++;
+    }
+
+    private int getOrCreateUserId(final String userID) {
+        Integer userId = userIdsByName.get(userID);
+        if (userId == null) {
+            userId = userNames.size();
+            userNames.add(userID);
+            userIdsByName.put(userID, userId);
         }
+        return userId;
     }
 
-    private boolean isNotIP(final String userID) {
-        return !Pattern.matches("\\d+\\.\\d+\\.\\d+\\.\\d+", userID);
+    private static boolean isRegisteredUser(final String userID) {
+        if (userID == null) {
+            return false;
+        }
+        if (userID.indexOf('.') < 0 && userID.indexOf(':') < 0) {
+            return true;
+        }
+        // IPv4 (1.2.3.4) or IPv6 (2001:DB8::1) address, i.e. an anonymous edit
+        return !InetAddresses.isInetAddress(userID);
     }
 
     public int getNumberOfRevisions() {
-        return edits.size();
+        return numberOfRevisions;
+    }
+
+    public int getNumberOfUsers() {
+        return userNames.size();
+    }
+
+    public String getUserName(final int userId) {
+        return userNames.get(userId);
+    }
+
+    public List<String> getUserNames() {
+        return Collections.unmodifiableList(userNames);
+    }
+
+    public long getTimestampMillis(final int revisionIndex) {
+        return timestamps[revisionIndex];
+    }
+
+    public int getUserId(final int revisionIndex) {
+        return userIds[revisionIndex];
+    }
+
+    public int getEditSize(final int revisionIndex) {
+        return editSizes[revisionIndex];
     }
 
     @Override
     public String toString() {
-        return StringUtils.join(edits, "\n");
+        List<String> allUsers = Lists.newArrayListWithCapacity(numberOfRevisions);
+        for (int i = 0; i < numberOfRevisions; i++) {
+            allUsers.add(userNames.get(userIds[i]));
+        }
+        return StringUtils.join(allUsers, "\n");
     }
 
+    /**
+     * Materializes all revisions as objects, prefer the primitive accessors
+     * for large histories
+     */
     public ImmutableList<Revision> getRevisions() {
-        return ImmutableList.copyOf(edits);
+        ImmutableList.Builder<Revision> revisions = ImmutableList.builder();
+        for (int i = 0; i < numberOfRevisions; i++) {
+            revisions.add(new Revision(userNames.get(userIds[i]), timestamps[i], editSizes[i]));
+        }
+        return revisions.build();
     }
 
-    public Map<String, Integer> getEditsPerAuthor() {
-        Map<String, Integer> editsPerAuthor = Maps.newHashMap();
-        for (Revision rev : edits) {
-            String userID = rev.getUserID();
-            if (editsPerAuthor.containsKey(userID)) {
-                editsPerAuthor.put(userID, editsPerAuthor.get(userID) + 1);
-            } else {
-                editsPerAuthor.put(userID, 1);
+    /**
+     * @return number of edits, indexed by user id
+     */
+    public int[] getEditCountsPerUser() {
+        int[] editCounts = new int[userNames.size()];
+        for (int i = 0; i < numberOfRevisions; i++) {
+            editCounts[userIds[i]]++;
+        }
+        return editCounts;
+    }
+
+    /**
+     * @return number of edits in each of the consecutive windows, the first
+     *         window starts at startMillis
+     */
+    public int[] getEditsPerWindow(final long startMillis,
+                                   final long windowMillis,
+                                   final int numberOfWindows) {
+        int[] editsPerWindow = new int[numberOfWindows];
+        for (int i = 0; i < numberOfRevisions; i++) {
+            final long offset = timestamps[i] - startMillis;
+            if (offset >= 0) {
+                final long window = offset / windowMillis;
+                if (window < numberOfWindows) {
+                    editsPerWindow[(int) window]++;
+                }
             }
         }
+        return editsPerWindow;
+    }
+
+    public Map<String, Integer> getEditsPerAuthor() {
+        final int[] editCounts = getEditCountsPerUser();
+        Map<String, Integer> editsPerAuthor = Maps.newHashMapWithExpectedSize(editCounts.length);
+        for (int userId = 0; userId < editCounts.length; userId++) {
+            editsPerAuthor.put(userNames.get(userId), editCounts[userId]);
+        }
         return editsPerAuthor;
     }
 
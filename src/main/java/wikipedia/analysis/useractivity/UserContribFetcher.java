@@ -5,10 +5,16 @@ import java.util.Map;
 import java.util.Set;
 
 import org.apache.http.impl.client.DefaultHttpClient;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.joda.time.format.ISODateTimeFormat;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import util.MapSorter;
+import util.HTTPUtil;
+import util.TopK;
+import wikipedia.database.ContribSyncState;
+import wikipedia.database.WikiStorage;
 import wikipedia.http.WikiAPIClient;
 import wikipedia.xml.Api;
 import wikipedia.xml.Item;
@@ -21,7 +27,9 @@ import com.google.common.collect.Multiset;
 import com.google.common.collect.Sets;
 
 /**
- * Downloads all the contributions a user has made (on article pages)
+ * Downloads all the contributions a user has made (on article pages). If a
+ * database is given, the newest contributions are stored and only
+ * contributions newer than the stored cursor are downloaded.
  */
 public final class UserContribFetcher {
 
@@ -30,6 +38,9 @@ public final class UserContribFetcher {
     private static final Logger LOG = LoggerFactory.getLogger(UserContribFetcher.class.getName());
 
     private static final int MAX_REVISIONS = 3000;
+    private static final int MAX_TOP_PAGES = 100;
+    /** stored contributions younger than this are used without asking the API */
+    private static final int MIN_REFRESH_HOURS = 24;
 
     private final DefaultHttpClient httpclient = new DefaultHttpClient();
     private final WikiAPIClient wikiAPIClient = new WikiAPIClient(httpclient);
@@ -37,21 +48,37 @@ public final class UserContribFetcher {
     private final String username;
     private final String lang;
     private final int numberOfRevisions;
+    private final WikiStorage database;
 
-    public UserContribFetcher(final String lang, final String userName, final int numberOfRevisions) {
+    public UserContribFetcher(final String lang, final String userName, final int numberOfRevisions,
+            final WikiStorage database) {
         this.lang = lang;
         this.numberOfRevisions = numberOfRevisions;
         this.username = userName.replaceAll(" ", "_");
+        this.database = database;
+    }
+
+    public UserContribFetcher(final String lang, final String userName, final int numberOfRevisions) {
+        this(lang, userName, numberOfRevisions, null);
+    }
+
+    public UserContribFetcher(final String lang, final String userName, final WikiStorage database) {
+        this(lang, userName, MAX_REVISIONS, database);
     }
 
     public UserContribFetcher(final String lang, final String userName) {
-        this(lang, userName, MAX_REVISIONS);
+        this(lang, userName, MAX_REVISIONS, null);
     }
 
     public Set<String> getMostEditedPages() {
         Set<String> relatedPages = Sets.newHashSet();
         try {
-            addBestRelatedChangesToSet(relatedPages);
+            if (database == null) {
+                addBestRelatedChangesToSet(relatedPages);
+            } else {
+                refreshStoredContributions();
+                relatedPages.addAll(database.getMostEditedPages(username, MAX_TOP_PAGES));
+            }
         } catch (Exception e) {
             LOG.error("Error while executing HTTP request", e);
         } finally {
@@ -61,17 +88,73 @@ public final class UserContribFetcher {
     }
 
     private void addBestRelatedChangesToSet(final Set<String> relatedPages) throws Exception {
+        Multiset<String> editsPerPage = HashMultiset.create();
+        for (Item item : downloadContributions("", "", numberOfRevisions)) {
+            editsPerPage.add(item.getTitle());
+        }
+        relatedPages.addAll(TopK.largest(toMap(editsPerPage), MAX_TOP_PAGES).keySet());
+    }
+
+    /**
+     * Initial download: the most recent contributions (newest first). Later
+     * refreshes: everything after the stored cursor (oldest first), without
+     * limit, otherwise a user with more than numberOfRevisions new edits would
+     * only get the oldest of them and the stored window would fall behind.
+     */
+    private void refreshStoredContributions() throws Exception {
+        final ContribSyncState syncState = database.getContribSyncState(username);
+        if (syncState == null) {
+            List<Item> contributions = downloadContributions("", "", numberOfRevisions);
+            if (!contributions.isEmpty()) {
+                final Item newest = contributions.get(0);
+                storeContributions(contributions, newest);
+            }
+        } else if (syncState.getLastSync().isBefore(new DateTime().minusHours(MIN_REFRESH_HOURS))) {
+            final String cursor = syncState.getLastTimestamp().withZone(DateTimeZone.UTC)
+                    .toString(ISODateTimeFormat.dateTimeNoMillis());
+            List<Item> newContributions = Lists.newArrayList();
+            for (Item item : downloadContributions("&ucdir=newer", cursor, Integer.MAX_VALUE)) {
+                if (item.getRevid() > syncState.getLastRevisionId()) {
+                    newContributions.add(item);
+                }
+            }
+            if (newContributions.isEmpty()) {
+                database.touchUserContribSync(username);
+            } else {
+                storeContributions(newContributions,
+                        newContributions.get(newContributions.size() - 1));
+            }
+        }
+    }
+
+    /**
+     * The edit counts cover the same window as without a database, the
+     * newest numberOfRevisions contributions
+     */
+    private void storeContributions(final List<Item> contributions,
+                                    final Item newest) {
+        Map<Integer, String> pageTitlesByRevisionId = Maps.newHashMapWithExpectedSize(contributions.size());
+        for (Item item : contributions) {
+            pageTitlesByRevisionId.put(item.getRevid(), item.getTitle());
+        }
+        database.storeUserContributions(username, pageTitlesByRevisionId,
+                new DateTime(newest.getTimestamp()), newest.getRevid(), numberOfRevisions);
+    }
+
+    private List<Item> downloadContributions(final String direction,
+                                             final String start,
+                                             final int maxContributions) throws Exception {
+        List<Item> contributions = Lists.newArrayList();
         Api revisionFromXML = null;
-        String queryContinueID = "";
+        String queryContinueID = start;
         int counter = 0;
-        Multiset<String> editsPerPage = HashMultiset.create();
-        while (counter < numberOfRevisions) {
-            final String xml = getArticleRevisionsXML(queryContinueID);
+        while (counter < maxContributions) {
+            final String xml = getArticleRevisionsXML(direction, queryContinueID);
             counter = counter + PAGE_SIZE;
             revisionFromXML = XMLTransformer.getRevisionFromXML(xml);
             List<Item> usercontribs = revisionFromXML.getQuery().getUsercontribs();
-            for (Item item : usercontribs) {
-                editsPerPage.add(item.getTitle());
+            if (usercontribs != null) {
+                contributions.addAll(usercontribs);
             }
             if (revisionFromXML.isLastPageInRequestSeries()) {
                 break;
@@ -79,20 +162,20 @@ public final class UserContribFetcher {
                 queryContinueID = revisionFromXML.getQueryContinue().getUsercontribs().getUcstart();
             }
         }
+        return contributions;
+    }
+
+    private static Map<String, Integer> toMap(final Multiset<String> editsPerPage) {
         Map<String, Integer> editsPerPageResult = Maps.newHashMap();
-        for (String pageName : editsPerPage) {
-            editsPerPageResult.put(pageName, editsPerPage.count(pageName));
-        }
-        final Set<String> topPages = new MapSorter<String, Integer>().sortByValue(editsPerPageResult).keySet();
-        if (topPages.size() < 100) {
-            relatedPages.addAll(topPages);
-        } else {
-            relatedPages.addAll(Lists.newArrayList(topPages).subList(0, 100));
+        for (Multiset.Entry<String> entry : editsPerPage.entrySet()) {
+            editsPerPageResult.put(entry.getElement(), entry.getCount());
         }
+        return editsPerPageResult;
     }
 
-    private String getArticleRevisionsXML(final String nextId) {
-        String rvstartid = "&ucstart=" + nextId;
+    private String getArticleRevisionsXML(final String direction,
+                                          final String nextId) {
+        String rvstartid = "&ucstart=" + HTTPUtil.urlEncode(nextId);
         if (nextId.equals("")) {
             rvstartid = "";
         }
@@ -101,8 +184,8 @@ public final class UserContribFetcher {
                 + ".wikipedia.org/w/api.php?format=xml&action=query&" +
                 "list=usercontribs&ucnamespace=0&uclimit=" +
                 PAGE_SIZE +
-                "&ucprop=title&ucuser=" +
-                username + rvstartid;
+                "&ucprop=ids%7Ctitle%7Ctimestamp&ucuser=" +
+                HTTPUtil.urlEncode(username) + direction + rvstartid;
         LOG.info("Requesting URL: " + urlStr);
         return wikiAPIClient.executeHTTPRequest(urlStr);
     }
@@ -12,7 +12,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import util.HTTPUtil;
-import wikipedia.database.DBUtil;
+import wikipedia.database.Storages;
+import wikipedia.database.WikiStorage;
 import wikipedia.http.WikiAPIClient;
 import wikipedia.network.GraphEdge;
 import wikipedia.xml.Api;
@@ -35,7 +36,7 @@ public final class UsertalkNetworkFetcher {
     private final int numberOfUsersInNetwork;
     private final Map<GraphEdge, Integer> talkMatrix = Maps.newConcurrentMap();
     private final ExecutorService newFixedThreadPool = Executors.newFixedThreadPool(NUM_THREADS);
-    private final DBUtil database = new DBUtil();
+    private final WikiStorage database = Storages.open();
 
     public UsertalkNetworkFetcher(final String lang, final List<String> userIDs) {
         this.lang = lang;
@@ -55,6 +56,7 @@ public final class UsertalkNetworkFetcher {
             }
         } finally {
             shutdownThreadPool();
+            LOG.info("Lookup Caches: " + Storages.getCacheStatistics());
         }
         return collectUserTalkEdges();
     }
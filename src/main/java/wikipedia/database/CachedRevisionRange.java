@@ -0,0 +1,45 @@
+package wikipedia.database;
+
+import org.joda.time.DateTime;
+
+/**
+ * Summary of the locally cached revisions of a page
+ */
+public final class CachedRevisionRange {
+
+    private final int numberOfRevisions;
+    private final DateTime newestTimestamp;
+    private final int oldestRevisionId;
+    private final int oldestParentId;
+
+    public CachedRevisionRange(final int numberOfRevisions, final DateTime newestTimestamp,
+            final int oldestRevisionId, final int oldestParentId) {
+        this.numberOfRevisions = numberOfRevisions;
+        this.newestTimestamp = newestTimestamp;
+        this.oldestRevisionId = oldestRevisionId;
+        this.oldestParentId = oldestParentId;
+    }
+
+    public int getNumberOfRevisions() {
+        return numberOfRevisions;
+    }
+
+    public boolean isEmpty() {
+        return numberOfRevisions == 0;
+    }
+
+    public DateTime getNewestTimestamp() {
+        return newestTimestamp;
+    }
+
+    public int getOldestRevisionId() {
+        return oldestRevisionId;
+    }
+
+    /**
+     * @return true if the very first revision of the page is cached
+     */
+    public boolean isHistoryComplete() {
+        return !isEmpty() && oldestParentId == 0;
+    }
+}
@@ -0,0 +1,278 @@
+package wikipedia.database;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import org.joda.time.DateTime;
+import org.springframework.dao.EmptyResultDataAccessException;
+
+import util.LRUCache;
+import wikipedia.analysis.useractivity.Revisions;
+import wikipedia.network.GraphEdge;
+import wikipedia.network.PageLinkInfo;
+import wikipedia.xml.Rev;
+
+/**
+ * Keeps the results of frequently repeated point lookups (page ids, creation
+ * dates, category synchronization times, usertalk counts) in bounded LRU
+ * caches in front of another storage. Writes through this class update or invalidate the
+ * affected entries, all other calls are passed on unchanged.
+ */
+public final class CachingStorage implements WikiStorage {
+
+    private static final int MAX_PAGES = 100000;
+    private static final int MAX_CATEGORIES = 1000;
+    private static final int MAX_USER_CONVERSATIONS = 100000;
+    /** cached value for pairs that are not in the usertalk cache */
+    private static final Integer NOT_CACHED = -1;
+
+    private final WikiStorage delegate;
+    private final LRUCache<String, Integer> pageIds = new LRUCache<String, Integer>("pageIds", MAX_PAGES);
+    private final LRUCache<Integer, String> firstRevisionDates = new LRUCache<Integer, String>(
+            "firstRevisionDates", MAX_PAGES);
+    private final LRUCache<String, DateTime> categoryLastSyncs = new LRUCache<String, DateTime>(
+            "categoryLastSyncs", MAX_CATEGORIES);
+    private final LRUCache<GraphEdge, Integer> userConversations = new LRUCache<GraphEdge, Integer>(
+            "userConversations", MAX_USER_CONVERSATIONS);
+
+    public CachingStorage(final WikiStorage delegate) {
+        this.delegate = delegate;
+    }
+
+    public String getStatistics() {
+        return pageIds + "; " + firstRevisionDates + "; " + categoryLastSyncs + "; " + userConversations;
+    }
+
+    @Override
+    public void storePageEntries(final Map<Integer, String> pageTitles,
+                                 final Map<Integer, DateTime> creationDates) {
+        delegate.storePageEntries(pageTitles, creationDates);
+        for (Integer pageId : creationDates.keySet()) {
+            firstRevisionDates.invalidate(pageId);
+        }
+    }
+
+    /**
+     * Unknown pages ("") are not cached, they may be stored later
+     */
+    @Override
+    public String getFirstRevisionDate(final int pageId) {
+        String firstRevisionDate = firstRevisionDates.get(pageId);
+        if (firstRevisionDate == null) {
+            firstRevisionDate = delegate.getFirstRevisionDate(pageId);
+            if (!firstRevisionDate.isEmpty()) {
+                firstRevisionDates.put(pageId, firstRevisionDate);
+            }
+        }
+        return firstRevisionDate;
+    }
+
+    @Override
+    public int getPageIDFromCache(final String pageTitle,
+                                  final String lang) {
+        final String key = lang + ":" + pageTitle;
+        Integer pageId = pageIds.get(key);
+        if (pageId == null) {
+            pageId = delegate.getPageIDFromCache(pageTitle, lang);
+            pageIds.put(key, pageId);
+        }
+        return pageId;
+    }
+
+    @Override
+    public void storePageLinkInfo(final PageLinkInfo pliToBeStored,
+                                  final DateTime firstRevisionDate) {
+        delegate.storePageLinkInfo(pliToBeStored, firstRevisionDate);
+        firstRevisionDates.invalidate(pliToBeStored.getPageID());
+    }
+
+    @Override
+    public void storePageLinkInfos(final List<PageLinkInfo> linkInfos,
+                                   final Map<Integer, DateTime> firstRevisionDates) {
+        delegate.storePageLinkInfos(linkInfos, firstRevisionDates);
+        for (PageLinkInfo linkInfo : linkInfos) {
+            this.firstRevisionDates.invalidate(linkInfo.getPageID());
+        }
+    }
+
+    @Override
+    public void storeCategoryMembers(final String categoryName,
+                                     final Collection<Integer> pageIds) {
+        delegate.storeCategoryMembers(categoryName, pageIds);
+    }
+
+    @Override
+    public void removeCategoryMembers(final String categoryName,
+                                      final Collection<Integer> pageIds) {
+        delegate.removeCategoryMembers(categoryName, pageIds);
+    }
+
+    /**
+     * Categories that were never synchronized (null) are not cached
+     */
+    @Override
+    public DateTime getCategoryLastSync(final String categoryName) {
+        DateTime lastSync = categoryLastSyncs.get(categoryName);
+        if (lastSync == null) {
+            lastSync = delegate.getCategoryLastSync(categoryName);
+            if (lastSync != null) {
+                categoryLastSyncs.put(categoryName, lastSync);
+            }
+        }
+        return lastSync;
+    }
+
+    @Override
+    public void setCategoryLastSync(final String categoryName,
+                                    final DateTime lastSync) {
+        delegate.setCategoryLastSync(categoryName, lastSync);
+        categoryLastSyncs.put(categoryName, lastSync);
+    }
+
+    @Override
+    public boolean userConversationInCache(final GraphEdge userCommunicationPair) {
+        return !NOT_CACHED.equals(getUserConversation(userCommunicationPair));
+    }
+
+    @Override
+    public int getUserConversationFromCache(final GraphEdge userCommunicationPair) {
+        final Integer numberOfRevisions = getUserConversation(userCommunicationPair);
+        if (NOT_CACHED.equals(numberOfRevisions)) {
+            throw new EmptyResultDataAccessException(1);
+        }
+        return numberOfRevisions;
+    }
+
+    /**
+     * One query per pair for the usual "in cache? then get" sequence
+     */
+    private Integer getUserConversation(final GraphEdge userCommunicationPair) {
+        Integer numberOfRevisions = userConversations.get(userCommunicationPair);
+        if (numberOfRevisions == null) {
+            try {
+                numberOfRevisions = delegate.getUserConversationFromCache(userCommunicationPair);
+            } catch (EmptyResultDataAccessException e) {
+                numberOfRevisions = NOT_CACHED;
+            }
+            userConversations.put(userCommunicationPair, numberOfRevisions);
+        }
+        return numberOfRevisions;
+    }
+
+    @Override
+    public void cacheUserConversation(final GraphEdge userCommunicationPair,
+                                      final int numberOfRevisions) {
+        delegate.cacheUserConversation(userCommunicationPair, numberOfRevisions);
+        userConversations.put(userCommunicationPair, numberOfRevisions);
+    }
+
+    @Override
+    public Map<Integer, DateTime> getCreationDates(final Collection<Integer> pageIds) {
+        return delegate.getCreationDates(pageIds);
+    }
+
+    @Override
+    public boolean localDataForRecordUnavailable(final int pageId,
+                                                 final DateTime revisionDate) {
+        return delegate.localDataForRecordUnavailable(pageId, revisionDate);
+    }
+
+    @Override
+    public Collection<String> getAllLinksForRevision(final int pageId,
+                                                     final String dateTime) {
+        return delegate.getAllLinksForRevision(pageId, dateTime);
+    }
+
+    @Override
+    public void streamLinksForFrames(final Collection<Integer> pageIds,
+                                     final List<DateTime> revisionDates,
+                                     final LinkRowHandler handler) {
+        delegate.streamLinksForFrames(pageIds, revisionDates, handler);
+    }
+
+    @Override
+    public void streamFrameCoverage(final Collection<Integer> pageIds,
+                                    final List<DateTime> revisionDates,
+                                    final FrameCoverageHandler handler) {
+        delegate.streamFrameCoverage(pageIds, revisionDates, handler);
+    }
+
+    @Override
+    public Map<Integer, String> getCategoryMembersByCategoryName(final String categoryName) {
+        return delegate.getCategoryMembersByCategoryName(categoryName);
+    }
+
+    @Override
+    public void streamCategoryMembers(final String categoryName,
+                                      final CategoryMemberHandler handler) {
+        delegate.streamCategoryMembers(categoryName, handler);
+    }
+
+    @Override
+    public Map<String, String> getCachedRedirectTargets(final Collection<String> titles,
+                                                        final DateTime oldestValidEntry) {
+        return delegate.getCachedRedirectTargets(titles, oldestValidEntry);
+    }
+
+    @Override
+    public void cacheRedirectTargets(final Map<String, String> redirectTargets) {
+        delegate.cacheRedirectTargets(redirectTargets);
+    }
+
+    @Override
+    public void storeTombstone(final int pageId,
+                               final DateTime revisionDate,
+                               final TombstoneReason reason) {
+        delegate.storeTombstone(pageId, revisionDate, reason);
+    }
+
+    @Override
+    public Tombstones getActiveTombstones() {
+        return delegate.getActiveTombstones();
+    }
+
+    @Override
+    public CachedRevisionRange getCachedRevisionRange(final String pageTitle) {
+        return delegate.getCachedRevisionRange(pageTitle);
+    }
+
+    @Override
+    public void storeRevisions(final String pageTitle,
+                               final List<Rev> revisions) {
+        delegate.storeRevisions(pageTitle, revisions);
+    }
+
+    @Override
+    public void loadCachedRevisions(final String pageTitle,
+                                    final int maxRevisions,
+                                    final Revisions revisions) {
+        delegate.loadCachedRevisions(pageTitle, maxRevisions, revisions);
+    }
+
+    @Override
+    public ContribSyncState getContribSyncState(final String userName) {
+        return delegate.getContribSyncState(userName);
+    }
+
+    @Override
+    public void storeUserContributions(final String userName,
+                                       final Map<Integer, String> pageTitlesByRevisionId,
+                                       final DateTime lastTimestamp,
+                                       final int lastRevisionId,
+                                       final int maxContributions) {
+        delegate.storeUserContributions(userName, pageTitlesByRevisionId, lastTimestamp, lastRevisionId,
+                maxContributions);
+    }
+
+    @Override
+    public void touchUserContribSync(final String userName) {
+        delegate.touchUserContribSync(userName);
+    }
+
+    @Override
+    public List<String> getMostEditedPages(final String userName,
+                                           final int numberOfPages) {
+        return delegate.getMostEditedPages(userName, numberOfPages);
+    }
+}
@@ -0,0 +1,10 @@
+package wikipedia.database;
+
+/**
+ * Callback for streamed members of a category
+ */
+public interface CategoryMemberHandler {
+
+    void categoryMember(int pageId, String pageTitle);
+
+}
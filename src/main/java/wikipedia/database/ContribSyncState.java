@@ -0,0 +1,35 @@
+package wikipedia.database;
+
+import org.joda.time.DateTime;
+
+/**
+ * Cursor of the locally stored contributions of an author
+ */
+public final class ContribSyncState {
+
+    private final DateTime lastTimestamp;
+    private final int lastRevisionId;
+    private final DateTime lastSync;
+
+    public ContribSyncState(final DateTime lastTimestamp, final int lastRevisionId,
+            final DateTime lastSync) {
+        this.lastTimestamp = lastTimestamp;
+        this.lastRevisionId = lastRevisionId;
+        this.lastSync = lastSync;
+    }
+
+    /**
+     * @return timestamp of the newest stored contribution (next ucstart)
+     */
+    public DateTime getLastTimestamp() {
+        return lastTimestamp;
+    }
+
+    public int getLastRevisionId() {
+        return lastRevisionId;
+    }
+
+    public DateTime getLastSync() {
+        return lastSync;
+    }
+}
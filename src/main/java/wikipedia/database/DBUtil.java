@@ -1,23 +1,33 @@
 package wikipedia.database;
 
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
-import org.apache.commons.dbcp.BasicDataSource;
-import org.apache.http.impl.client.DefaultHttpClient;
+import javax.sql.DataSource;
+
+import org.apache.commons.lang.StringUtils;
 import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
 import org.joda.time.format.DateTimeFormat;
 import org.joda.time.format.DateTimeFormatter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.beans.factory.xml.XmlBeanFactory;
-import org.springframework.core.io.ClassPathResource;
-import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.dao.IncorrectResultSizeDataAccessException;
-import org.springframework.jdbc.UncategorizedSQLException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.SingleColumnRowMapper;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.jdbc.core.simple.SimpleJdbcTemplate;
 import org.springframework.jdbc.datasource.DataSourceTransactionManager;
 import org.springframework.transaction.TransactionStatus;
@@ -25,104 +35,224 @@ import org.springframework.transaction.support.TransactionCallbackWithoutResult;
 import org.springframework.transaction.support.TransactionTemplate;
 
 import wikipedia.analysis.drilldown.NumberOfRecentEditsFetcher;
-import wikipedia.http.FirstRevisionFetcher;
-import wikipedia.http.WikiAPIClient;
+import wikipedia.analysis.useractivity.Revisions;
 import wikipedia.network.GraphEdge;
 import wikipedia.network.PageLinkInfo;
+import wikipedia.xml.Rev;
 
-import com.google.common.base.Function;
-import com.google.common.collect.Collections2;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Ordering;
+import com.google.common.collect.Sets;
+import com.google.common.primitives.Ints;
 
 /**
- * Util for all DB read/write ops, should be specialized / splitt up
+ * SQL implementation of WikiStorage for the MySQL schema in db_scripts. Runs
+ * unchanged on the embedded H2 database (MySQL mode, see EmbeddedDatabase).
  */
-public final class DBUtil {
+public final class DBUtil implements WikiStorage {
 
+    private static final String STORE_LINK_SET = "INSERT INTO link_sets "
+            + "(src_page_id, revision_date, nbr_links, links) VALUES (?, ?, ?, ?) "
+            + "ON DUPLICATE KEY UPDATE nbr_links = VALUES(nbr_links), links = VALUES(links)";
+    /** frames never change, an existing row is kept since later deltas may be based on it */
+    private static final String STORE_LINK_DELTA = "INSERT IGNORE INTO link_deltas "
+            + "(src_page_id, revision_date, base_revision_date, chain_length, nbr_links, added, removed) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?)";
+    /** maximum number of deltas applied to a checkpoint to rebuild a frame */
+    private static final int LINK_DELTA_CHECKPOINT_INTERVAL = 8;
+    /** delta rows of a batch are stored base first */
+    private static final Ordering<PageLinkInfo> ORDER_BY_PAGE_AND_DATE = new Ordering<PageLinkInfo>() {
+        @Override
+        public int compare(final PageLinkInfo left,
+                           final PageLinkInfo right) {
+            if (left.getPageID() != right.getPageID()) {
+                return left.getPageID() < right.getPageID() ? -1 : 1;
+            }
+            return left.getTimeStamp().compareTo(right.getTimeStamp());
+        }
+    };
     private static final String USER_TALK_QUERY = "SELECT nbrRevisions FROM usertalk_cache "
-            + "WHERE usertalk_cache.from = ? AND usertalk_cache.to = ?";
-    private static final int SLEEP_BETWEEN_REQUESTS = 400;
+            + "WHERE `from` = ? AND `to` = ?";
     private static final int MAX_TITLE_LENGTH = 256;
+    private static final int DEFAULT_BATCH_SIZE = 1000;
+    /** Maximum number of ids in a single IN (...) list */
+    private static final int MAX_IDS_PER_QUERY = 1000;
+    /** Rows per round trip for streamed reads (needs useCursorFetch=true) */
+    private static final int STREAMING_FETCH_SIZE = 5000;
     public static final String MYSQL_DATETIME = "YYYY-MM-dd HH:mm:ss";
     public static final DateTimeFormatter MYSQL_DATETIME_FORMATTER = DateTimeFormat
             .forPattern(MYSQL_DATETIME);
+    /** API timestamps are stored in UTC */
+    private static final DateTimeFormatter UTC_DATETIME_FORMATTER = MYSQL_DATETIME_FORMATTER
+            .withZone(DateTimeZone.UTC);
 
     private static final Logger LOG = LoggerFactory.getLogger(DBUtil.class.getName());
 
     private final SimpleJdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate streamingTemplate;
     private final TransactionTemplate transactionTemplate;
+    private int batchSize = DEFAULT_BATCH_SIZE;
+    private LinkStorage linkStorage = LinkStorage.fromSystemProperty();
 
+    /**
+     * Uses the shared connection pool (see context.xml)
+     */
     public DBUtil() {
-        XmlBeanFactory beanFactory = new XmlBeanFactory(new ClassPathResource("context.xml"));
-        final BasicDataSource bean = (BasicDataSource) beanFactory.getBean("dataSource");
-        jdbcTemplate = new SimpleJdbcTemplate(bean);
-        DataSourceTransactionManager dstm = new DataSourceTransactionManager(bean);
+        this(SharedDataSource.get());
+    }
+
+    public DBUtil(final DataSource dataSource) {
+        jdbcTemplate = new SimpleJdbcTemplate(dataSource);
+        JdbcTemplate fetchSizeTemplate = new JdbcTemplate(dataSource);
+        fetchSizeTemplate.setFetchSize(STREAMING_FETCH_SIZE);
+        streamingTemplate = new NamedParameterJdbcTemplate(fetchSizeTemplate);
+        DataSourceTransactionManager dstm = new DataSourceTransactionManager(dataSource);
         transactionTemplate = new TransactionTemplate(dstm);
     }
 
+    /**
+     * Number of rows per JDBC batch, with rewriteBatchedStatements=true the
+     * driver sends each batch as a single multi-row INSERT
+     */
+    public void setBatchSize(final int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Table layout for reading and writing links, defaults to the
+     * wikimaps.linkStorage system property
+     */
+    public void setLinkStorage(final LinkStorage linkStorage) {
+        this.linkStorage = linkStorage;
+    }
+
+    @Override
     public void storePageLinkInfo(final PageLinkInfo pliToBeStored,
                                   final DateTime firstRevisionDate) {
-        // if page entry already there, only store revision
-        final int numberOfPageEntries = jdbcTemplate.queryForInt(
-                "SELECT count(0) FROM pages WHERE page_id = ?",
-                new Object[] {pliToBeStored.getPageID() });
-        final String timeStamp = pliToBeStored.getTimeStamp().toString(MYSQL_DATETIME_FORMATTER);
-        final String firstRevisionDateTime = firstRevisionDate.toString(MYSQL_DATETIME_FORMATTER);
-
-        if (numberOfPageEntries == 0) {
-            jdbcTemplate.update("INSERT INTO pages (page_id, page_title, creation_date) "
-                    + "VALUES (?, ?, ?)",
-                    new Object[] {pliToBeStored.getPageID(), pliToBeStored.getPageTitle(),
-                            firstRevisionDateTime });
-        }
-        storeAllOutGoingLinksInTransaction(pliToBeStored, timeStamp);
+        storePageLinkInfos(ImmutableList.of(pliToBeStored),
+                ImmutableMap.of(pliToBeStored.getPageID(), firstRevisionDate));
     }
 
-    private void storeAllOutGoingLinksInTransaction(final PageLinkInfo pliToBeStored,
-                                                    final String timeStamp) {
+    /**
+     * Stores all link infos (and their page entries, existing pages are left
+     * untouched) in a single transaction
+     *
+     * @param firstRevisionDates key: page id, value: date of the first revision,
+     *            one entry per page of the link infos
+     */
+    @Override
+    public void storePageLinkInfos(final List<PageLinkInfo> linkInfos,
+                                   final Map<Integer, DateTime> firstRevisionDates) {
+        final Map<Integer, String> pageTitles = Maps.newHashMap();
+        for (PageLinkInfo linkInfo : linkInfos) {
+            pageTitles.put(linkInfo.getPageID(), linkInfo.getPageTitle());
+        }
         transactionTemplate.execute(new TransactionCallbackWithoutResult() {
             @Override
             protected void doInTransactionWithoutResult(final TransactionStatus status) {
-                for (String outgoingLink : pliToBeStored.getLinks()) {
-                    if (PageLinkInfo.notInBlockList(outgoingLink)) {
-                        try {
-                            getStoredLink(pliToBeStored, timeStamp, outgoingLink);
-                        } catch (EmptyResultDataAccessException e) {
-                            storeLink(pliToBeStored, timeStamp, outgoingLink);
-                        }
-                    }
-
+                storePageEntries(pageTitles, firstRevisionDates);
+                if (linkStorage == LinkStorage.LINK_SETS) {
+                    storeLinkSets(linkInfos);
+                } else if (linkStorage == LinkStorage.LINK_DELTAS) {
+                    storeLinkDeltas(linkInfos);
+                } else {
+                    storeOutgoingLinkRows(linkInfos);
                 }
             }
+        });
+    }
 
-            private void storeLink(final PageLinkInfo pliToBeStored,
-                                   final String timeStamp,
-                                   final String outgoingLink) {
-                if (outgoingLink.length() < MAX_TITLE_LENGTH) {
-                    try {
-                        jdbcTemplate.update("INSERT INTO outgoing_links "
-                                + "(src_page_id, target_page_title, revision_date) "
-                                + "VALUES (?, ?, ?)", new Object[] {pliToBeStored.getPageID(),
-                                outgoingLink, timeStamp });
-                    } catch (UncategorizedSQLException e) {
-                        e.printStackTrace();
-                    }
-                }
+    private void storeLinkSets(final List<PageLinkInfo> linkInfos) {
+        final List<Set<String>> storableLinks = Lists.newArrayListWithCapacity(linkInfos.size());
+        final Set<String> allTitles = Sets.newHashSet();
+        for (PageLinkInfo linkInfo : linkInfos) {
+            storableLinks.add(getStorableLinks(linkInfo));
+            allTitles.addAll(storableLinks.get(storableLinks.size() - 1));
+        }
+        final Map<String, Integer> titleIds = getOrCreateTitleIds(allTitles);
+        final List<Object[]> batchArgs = Lists.newArrayListWithCapacity(linkInfos.size());
+        for (int i = 0; i < linkInfos.size(); i++) {
+            final int[] linkSet = toTitleIds(storableLinks.get(i), titleIds);
+            batchArgs.add(new Object[] {linkInfos.get(i).getPageID(),
+                    linkInfos.get(i).getTimeStamp().toString(MYSQL_DATETIME_FORMATTER), linkSet.length,
+                    LinkSetCodec.encode(linkSet) });
+        }
+        batchUpdateInChunks(STORE_LINK_SET, batchArgs);
+    }
+
+    /**
+     * The titles of the whole batch are added to the dictionary at once, so
+     * concurrent batches lock the title rows in the same (sorted) order
+     */
+    private void storeLinkDeltas(final List<PageLinkInfo> linkInfos) {
+        // earlier frames first, they are the bases of the later ones
+        final List<PageLinkInfo> sortedLinkInfos = ORDER_BY_PAGE_AND_DATE.sortedCopy(linkInfos);
+        final List<Set<String>> storableLinks = Lists.newArrayListWithCapacity(sortedLinkInfos.size());
+        final Set<String> allTitles = Sets.newHashSet();
+        for (PageLinkInfo linkInfo : sortedLinkInfos) {
+            storableLinks.add(getStorableLinks(linkInfo));
+            allTitles.addAll(storableLinks.get(storableLinks.size() - 1));
+        }
+        final Map<String, Integer> titleIds = getOrCreateTitleIds(allTitles);
+        for (int i = 0; i < sortedLinkInfos.size(); i++) {
+            storeLinkDelta(sortedLinkInfos.get(i).getPageID(),
+                    sortedLinkInfos.get(i).getTimeStamp().toString(MYSQL_DATETIME_FORMATTER),
+                    toTitleIds(storableLinks.get(i), titleIds));
+        }
+    }
+
+    private void storeOutgoingLinkRows(final List<PageLinkInfo> linkInfos) {
+        final List<Object[]> batchArgs = Lists.newArrayList();
+        for (PageLinkInfo linkInfo : linkInfos) {
+            final String timeStamp = linkInfo.getTimeStamp().toString(MYSQL_DATETIME_FORMATTER);
+            for (String outgoingLink : getStorableLinks(linkInfo)) {
+                batchArgs.add(new Object[] {linkInfo.getPageID(), outgoingLink, timeStamp });
             }
+        }
+        // unique key (src_page_id, revision_date, target_page_title) drops duplicates
+        batchUpdateInChunks("INSERT IGNORE INTO outgoing_links "
+                + "(src_page_id, target_page_title, revision_date) VALUES (?, ?, ?)", batchArgs);
+    }
 
-            private void getStoredLink(final PageLinkInfo pliToBeStored,
-                                       final String timeStamp,
-                                       final String outgoingLink) {
-                jdbcTemplate.queryForInt("SELECT src_page_id FROM outgoing_links "
-                        + "WHERE target_page_title = ? AND revision_date = ? "
-                        + "AND src_page_id = ?",
-                        new Object[] {outgoingLink, timeStamp, pliToBeStored.getPageID() });
+    private static Set<String> getStorableLinks(final PageLinkInfo pageLinkInfo) {
+        Set<String> storableLinks = Sets.newLinkedHashSet();
+        for (String outgoingLink : pageLinkInfo.getLinks()) {
+            if (PageLinkInfo.notInBlockList(outgoingLink) && outgoingLink.length() < MAX_TITLE_LENGTH) {
+                storableLinks.add(outgoingLink);
             }
+        }
+        return storableLinks;
+    }
 
-        });
+    /**
+     * Bulk insert of page entries, existing pages are left untouched
+     *
+     * @param creationDates key: page id, value: date of the first revision
+     */
+    @Override
+    public void storePageEntries(final Map<Integer, String> pageTitles,
+                                 final Map<Integer, DateTime> creationDates) {
+        List<Object[]> batchArgs = Lists.newArrayListWithCapacity(creationDates.size());
+        // same insert order in all transactions, concurrent writers can not deadlock on shared pages
+        for (Entry<Integer, DateTime> entry : new TreeMap<Integer, DateTime>(creationDates).entrySet()) {
+            batchArgs.add(new Object[] {entry.getKey(), pageTitles.get(entry.getKey()),
+                    entry.getValue().toString(MYSQL_DATETIME_FORMATTER) });
+        }
+        batchUpdateInChunks("INSERT IGNORE INTO pages (page_id, page_title, creation_date) "
+                + "VALUES (?, ?, ?)", batchArgs);
+    }
+
+    private void batchUpdateInChunks(final String sql,
+                                     final List<Object[]> batchArgs) {
+        for (List<Object[]> chunk : Lists.partition(batchArgs, batchSize)) {
+            jdbcTemplate.batchUpdate(sql, chunk);
+        }
     }
 
+    @Override
     public String getFirstRevisionDate(final int pageId
     /* final String lang */) {
         try {
@@ -133,124 +263,552 @@ public final class DBUtil {
         }
     }
 
+    @Override
     public boolean localDataForRecordUnavailable(final int pageId,
                                                  final DateTime revisionDate) {
         int numRows = jdbcTemplate.queryForInt(
-                "SELECT COUNT(0) FROM outgoing_links WHERE revision_date = ? AND src_page_id = ?",
+                "SELECT COUNT(0) FROM " + linkStorage.getTableName()
+                        + " WHERE revision_date = ? AND src_page_id = ?",
                 new Object[] {
                         revisionDate.toString(DateTimeFormat.forPattern(DBUtil.MYSQL_DATETIME)),
                         pageId });
         return numRows == 0;
     }
 
+    @Override
     public Collection<String> getAllLinksForRevision(final int pageId,
                                                      final String dateTime) {
-        try {
-            List<Map<String, Object>> allLinksString = jdbcTemplate.queryForList(
-                    "SELECT target_page_title FROM outgoing_links "
-                            + "WHERE src_page_id = ? AND revision_date = ?", pageId, dateTime);
-            return Collections2.transform(allLinksString,
-                    new Function<Map<String, Object>, String>() {
-                        @Override
-                        public String apply(final Map<String, Object> input) {
-                            return input.get("target_page_title").toString();
-                        }
-                    });
-        } catch (EmptyResultDataAccessException e) {
+        if (linkStorage != LinkStorage.ROWS) {
+            List<StoredLinkSet> linkSets = loadLinkSets(ImmutableList.of(pageId),
+                    ImmutableMap.of(normalizeDateString(dateTime), 0));
+            if (linkSets.isEmpty()) {
+                LOG.info("NO LINKS! -- PageID : " + pageId + " -- Date: " + dateTime);
+                return Lists.newArrayList();
+            }
+            return getTitles(Ints.asList(linkSets.get(0).titleIds)).values();
+        }
+        final List<String> links = Lists.newArrayList();
+        streamingTemplate.getJdbcOperations().query("SELECT target_page_title FROM outgoing_links "
+                + "WHERE src_page_id = ? AND revision_date = ?", new Object[] {pageId, dateTime },
+                new RowCallbackHandler() {
+                    @Override
+                    public void processRow(final ResultSet rs) throws SQLException {
+                        links.add(rs.getString(1));
+                    }
+                });
+        if (links.isEmpty()) {
             LOG.info("NO LINKS! -- PageID : " + pageId + " -- Date: " + dateTime);
+        }
+        return links;
+    }
+
+    /**
+     * Streams all outgoing links of the given pages at the given revision
+     * dates. Page ids are queried in chunks, no intermediate row maps are built.
+     */
+    @Override
+    public void streamLinksForFrames(final Collection<Integer> pageIds,
+                                     final List<DateTime> revisionDates,
+                                     final LinkRowHandler handler) {
+        final Map<String, Integer> frameIndexes = getFrameIndexes(revisionDates);
+        if (linkStorage != LinkStorage.ROWS) {
+            streamLinkSetsForFrames(pageIds, frameIndexes, handler);
+            return;
+        }
+        final AtomicInteger unmatchedRows = new AtomicInteger();
+        final RowCallbackHandler rowHandler = new RowCallbackHandler() {
+            @Override
+            public void processRow(final ResultSet rs) throws SQLException {
+                final Integer frameIndex = frameIndexes.get(normalizeDateString(rs.getString(2)));
+                if (frameIndex == null) {
+                    unmatchedRows.incrementAndGet();
+                } else {
+                    handler.processLink(frameIndex, rs.getInt(1), rs.getString(3));
+                }
+            }
+        };
+        for (List<Integer> pageIdChunk : Lists.partition(Lists.newArrayList(pageIds), MAX_IDS_PER_QUERY)) {
+            streamingTemplate.query("SELECT src_page_id, revision_date, target_page_title "
+                    + "FROM outgoing_links WHERE src_page_id IN (:pageIds) "
+                    + "AND revision_date IN (:revisionDates)",
+                    ImmutableMap.of("pageIds", pageIdChunk, "revisionDates",
+                            Lists.newArrayList(frameIndexes.keySet())), rowHandler);
+        }
+        logUnmatchedRows(unmatchedRows.get());
+    }
+
+    /**
+     * Rows whose revision date does not map back to one of the requested
+     * frames (e.g. an unexpected DATETIME format) are skipped
+     */
+    private static void logUnmatchedRows(final int unmatchedRows) {
+        if (unmatchedRows > 0) {
+            LOG.warn("Skipped " + unmatchedRows + " rows with a revision date that matches no frame");
+        }
+    }
+
+    private static Map<String, Integer> getFrameIndexes(final List<DateTime> revisionDates) {
+        final Map<String, Integer> frameIndexes = Maps.newHashMap();
+        for (int frameIndex = 0; frameIndex < revisionDates.size(); frameIndex++) {
+            frameIndexes.put(revisionDates.get(frameIndex).toString(MYSQL_DATETIME_FORMATTER), frameIndex);
+        }
+        return frameIndexes;
+    }
+
+    /**
+     * Per chunk of pages: decodes all link sets, resolves the title ids of the
+     * chunk with a single dictionary lookup and passes the links on
+     */
+    private void streamLinkSetsForFrames(final Collection<Integer> pageIds,
+                                         final Map<String, Integer> frameIndexes,
+                                         final LinkRowHandler handler) {
+        for (List<Integer> pageIdChunk : Lists.partition(Lists.newArrayList(pageIds), MAX_IDS_PER_QUERY)) {
+            final List<StoredLinkSet> linkSets = loadLinkSets(pageIdChunk, frameIndexes);
+            final Set<Integer> titleIds = Sets.newHashSet();
+            for (StoredLinkSet linkSet : linkSets) {
+                titleIds.addAll(Ints.asList(linkSet.titleIds));
+            }
+            final Map<Integer, String> titles = getTitles(titleIds);
+            for (StoredLinkSet linkSet : linkSets) {
+                for (int titleId : linkSet.titleIds) {
+                    handler.processLink(linkSet.frameIndex, linkSet.pageId, titles.get(titleId));
+                }
+            }
+        }
+    }
+
+    /**
+     * @param frameIndexes key: revision date, value: frame index
+     * @return decoded title ids of all stored (page, frame) pairs
+     */
+    private List<StoredLinkSet> loadLinkSets(final List<Integer> pageIds,
+                                             final Map<String, Integer> frameIndexes) {
+        if (linkStorage == LinkStorage.LINK_DELTAS) {
+            return loadLinkSetsFromDeltas(pageIds, frameIndexes);
+        }
+        final List<StoredLinkSet> linkSets = Lists.newArrayList();
+        final AtomicInteger unmatchedRows = new AtomicInteger();
+        streamingTemplate.query("SELECT src_page_id, revision_date, links FROM link_sets "
+                + "WHERE src_page_id IN (:pageIds) AND revision_date IN (:revisionDates)",
+                ImmutableMap.of("pageIds", pageIds, "revisionDates",
+                        Lists.newArrayList(frameIndexes.keySet())), new RowCallbackHandler() {
+                    @Override
+                    public void processRow(final ResultSet rs) throws SQLException {
+                        final Integer frameIndex = frameIndexes.get(normalizeDateString(rs.getString(2)));
+                        if (frameIndex == null) {
+                            unmatchedRows.incrementAndGet();
+                        } else {
+                            linkSets.add(new StoredLinkSet(frameIndex, rs.getInt(1),
+                                    LinkSetCodec.decode(rs.getBytes(3))));
+                        }
+                    }
+                });
+        logUnmatchedRows(unmatchedRows.get());
+        return linkSets;
+    }
+
+    /**
+     * Reads only the chain rows needed: first the base pointers of all rows up
+     * to the newest requested frame, then added/removed of the rows on the
+     * chains from the requested frames back to their checkpoints
+     */
+    private List<StoredLinkSet> loadLinkSetsFromDeltas(final List<Integer> pageIds,
+                                                       final Map<String, Integer> frameIndexes) {
+        final Map<String, String> baseDates = Maps.newHashMap();
+        streamingTemplate.query("SELECT src_page_id, revision_date, base_revision_date FROM link_deltas "
+                + "WHERE src_page_id IN (:pageIds) AND revision_date <= :newestDate",
+                ImmutableMap.of("pageIds", pageIds, "newestDate", Collections.max(frameIndexes.keySet())),
+                new RowCallbackHandler() {
+                    @Override
+                    public void processRow(final ResultSet rs) throws SQLException {
+                        baseDates.put(deltaKey(rs.getInt(1), normalizeDateString(rs.getString(2))),
+                                normalizeDateString(rs.getString(3)));
+                    }
+                });
+
+        final Map<String, List<String>> chains = Maps.newHashMap();
+        final Set<String> neededRows = Sets.newHashSet();
+        final Set<String> neededDates = Sets.newHashSet();
+        for (int pageId : pageIds) {
+            for (String revisionDate : frameIndexes.keySet()) {
+                List<String> chain = Lists.newArrayList();
+                String date = revisionDate;
+                while (chain.size() <= LINK_DELTA_CHECKPOINT_INTERVAL
+                        && baseDates.containsKey(deltaKey(pageId, date))) {
+                    chain.add(date);
+                    final String baseDate = baseDates.get(deltaKey(pageId, date));
+                    if (baseDate.equals(date)) {
+                        chains.put(deltaKey(pageId, revisionDate), chain);
+                        break;
+                    }
+                    date = baseDate;
+                }
+            }
+        }
+        for (Entry<String, List<String>> chain : chains.entrySet()) {
+            final int pageId = Integer.parseInt(chain.getKey().substring(0, chain.getKey().indexOf('@')));
+            for (String date : chain.getValue()) {
+                neededRows.add(deltaKey(pageId, date));
+                neededDates.add(date);
+            }
+        }
+        if (chains.isEmpty()) {
             return Lists.newArrayList();
         }
+
+        final Map<String, int[][]> deltas = Maps.newHashMap();
+        streamingTemplate.query("SELECT src_page_id, revision_date, added, removed FROM link_deltas "
+                + "WHERE src_page_id IN (:pageIds) AND revision_date IN (:revisionDates)",
+                ImmutableMap.of("pageIds", pageIds, "revisionDates", Lists.newArrayList(neededDates)),
+                new RowCallbackHandler() {
+                    @Override
+                    public void processRow(final ResultSet rs) throws SQLException {
+                        final String key = deltaKey(rs.getInt(1), normalizeDateString(rs.getString(2)));
+                        if (neededRows.contains(key)) {
+                            deltas.put(key, new int[][] {LinkSetCodec.decode(rs.getBytes(3)),
+                                    LinkSetCodec.decode(rs.getBytes(4)) });
+                        }
+                    }
+                });
+
+        final List<StoredLinkSet> linkSets = Lists.newArrayListWithCapacity(chains.size());
+        for (Entry<String, List<String>> chain : chains.entrySet()) {
+            final int separator = chain.getKey().indexOf('@');
+            final int pageId = Integer.parseInt(chain.getKey().substring(0, separator));
+            final List<String> dates = chain.getValue();
+            int[] titleIds = new int[0];
+            for (int i = dates.size() - 1; i >= 0; i--) {
+                final int[][] delta = deltas.get(deltaKey(pageId, dates.get(i)));
+                titleIds = LinkDeltas.apply(titleIds, delta[0], delta[1]);
+            }
+            linkSets.add(new StoredLinkSet(frameIndexes.get(chain.getKey().substring(separator + 1)),
+                    pageId, titleIds));
+        }
+        return linkSets;
+    }
+
+    /**
+     * Stores the link set as difference to the closest earlier stored frame,
+     * or as checkpoint (full set, base = own date) if there is none, the chain
+     * would get longer than LINK_DELTA_CHECKPOINT_INTERVAL or the difference
+     * is not smaller than the set itself. Stored frames are never rewritten,
+     * later deltas may use them as base.
+     */
+    private void storeLinkDelta(final int pageId,
+                                final String timeStamp,
+                                final int[] linkTitleIds) {
+        final int[] titleIds = linkTitleIds.clone();
+        Arrays.sort(titleIds);
+        List<Object[]> previous = jdbcTemplate.query("SELECT revision_date, chain_length FROM link_deltas "
+                + "WHERE src_page_id = ? AND revision_date < ? ORDER BY revision_date DESC LIMIT 1",
+                new RowMapper<Object[]>() {
+                    @Override
+                    public Object[] mapRow(final ResultSet rs,
+                                           final int rowNum) throws SQLException {
+                        return new Object[] {normalizeDateString(rs.getString(1)), rs.getInt(2) };
+                    }
+                }, pageId, timeStamp);
+        if (!previous.isEmpty() && (Integer) previous.get(0)[1] + 1 < LINK_DELTA_CHECKPOINT_INTERVAL) {
+            final String baseDate = (String) previous.get(0)[0];
+            List<StoredLinkSet> base = loadLinkSets(ImmutableList.of(pageId), ImmutableMap.of(baseDate, 0));
+            if (!base.isEmpty()) {
+                final int[] added = LinkDeltas.difference(titleIds, base.get(0).titleIds);
+                final int[] removed = LinkDeltas.difference(base.get(0).titleIds, titleIds);
+                if (added.length + removed.length < titleIds.length) {
+                    jdbcTemplate.update(STORE_LINK_DELTA, pageId, timeStamp, baseDate,
+                            (Integer) previous.get(0)[1] + 1, titleIds.length,
+                            LinkSetCodec.encode(added), LinkSetCodec.encode(removed));
+                    return;
+                }
+            }
+        }
+        jdbcTemplate.update(STORE_LINK_DELTA, pageId, timeStamp, timeStamp, 0, titleIds.length,
+                LinkSetCodec.encode(titleIds), LinkSetCodec.encode(new int[0]));
+    }
+
+    private static String deltaKey(final int pageId,
+                                   final String revisionDate) {
+        return pageId + "@" + revisionDate;
+    }
+
+    /**
+     * @return key: title, value: dictionary id, missing titles are added to
+     *         the dictionary
+     */
+    private Map<String, Integer> getOrCreateTitleIds(final Collection<String> titles) {
+        final Map<String, Integer> titleIds = getTitleIds(titles);
+        if (titleIds.size() < titles.size()) {
+            List<Object[]> batchArgs = Lists.newArrayList();
+            // same insert order in all transactions, concurrent writers can not deadlock on shared titles
+            for (String title : Ordering.<String>natural().sortedCopy(titles)) {
+                if (!titleIds.containsKey(title)) {
+                    batchArgs.add(new Object[] {title });
+                }
+            }
+            batchUpdateInChunks("INSERT IGNORE INTO link_titles (title) VALUES (?)", batchArgs);
+            titleIds.putAll(getTitleIds(Sets.difference(Sets.newHashSet(titles), titleIds.keySet())));
+        }
+        return titleIds;
+    }
+
+    /**
+     * @return dictionary ids of the links, links without id are left out
+     */
+    private static int[] toTitleIds(final Collection<String> links,
+                                    final Map<String, Integer> titleIds) {
+        final int[] ids = new int[links.size()];
+        int size = 0;
+        for (String link : links) {
+            final Integer titleId = titleIds.get(link);
+            if (titleId == null) {
+                LOG.warn("No dictionary id for link target: " + link);
+            } else {
+                ids[size++] = titleId;
+            }
+        }
+        return Arrays.copyOf(ids, size);
+    }
+
+    private Map<String, Integer> getTitleIds(final Collection<String> titles) {
+        final Map<String, Integer> titleIds = Maps.newHashMapWithExpectedSize(titles.size());
+        final RowCallbackHandler rowHandler = new RowCallbackHandler() {
+            @Override
+            public void processRow(final ResultSet rs) throws SQLException {
+                titleIds.put(rs.getString(2), rs.getInt(1));
+            }
+        };
+        for (List<String> titleChunk : Lists.partition(Lists.newArrayList(titles), MAX_IDS_PER_QUERY)) {
+            streamingTemplate.query("SELECT title_id, title FROM link_titles WHERE title IN (:titles)",
+                    ImmutableMap.of("titles", titleChunk), rowHandler);
+        }
+        return titleIds;
     }
 
-    public void storeAllCategoryMemberPages(final String categoryName,
-                                            final String lang,
-                                            final Map<Integer, String> allPageTitles) {
-        int categoryID = getCategoryID(categoryName);
+    private Map<Integer, String> getTitles(final Collection<Integer> titleIds) {
+        final Map<Integer, String> titles = Maps.newHashMapWithExpectedSize(titleIds.size());
+        final RowCallbackHandler rowHandler = new RowCallbackHandler() {
+            @Override
+            public void processRow(final ResultSet rs) throws SQLException {
+                titles.put(rs.getInt(1), rs.getString(2));
+            }
+        };
+        for (List<Integer> idChunk : Lists.partition(Lists.newArrayList(titleIds), MAX_IDS_PER_QUERY)) {
+            streamingTemplate.query("SELECT title_id, title FROM link_titles WHERE title_id IN (:titleIds)",
+                    ImmutableMap.of("titleIds", idChunk), rowHandler);
+        }
+        return titles;
+    }
 
-        for (Entry<Integer, String> entry : allPageTitles.entrySet()) {
-            // make sure page entry exists!
-            final Integer pageId = entry.getKey();
-            final String pageTitle = entry.getValue();
-            int pageSearchResults = jdbcTemplate.queryForInt(
-                    "SELECT COUNT(0) FROM pages WHERE page_id = ?", new Object[] {pageId });
-            if (pageSearchResults == 0) {
-                try {
-                    Thread.sleep(SLEEP_BETWEEN_REQUESTS); // reduce serverload
-                } catch (InterruptedException e) {
-                    e.printStackTrace();
+    /**
+     * @return ids of all pages with links in outgoing_links, ascending
+     */
+    public List<Integer> getPageIdsWithLinkRows() {
+        final List<Integer> pageIds = Lists.newArrayList();
+        streamingTemplate.getJdbcOperations().query(
+                "SELECT DISTINCT src_page_id FROM outgoing_links ORDER BY src_page_id",
+                new RowCallbackHandler() {
+                    @Override
+                    public void processRow(final ResultSet rs) throws SQLException {
+                        pageIds.add(rs.getInt(1));
+                    }
+                });
+        return pageIds;
+    }
+
+    /**
+     * Copies all links of the given pages from outgoing_links to link_sets,
+     * existing link sets are overwritten
+     *
+     * @return number of link sets written
+     */
+    public int copyLinkRowsToLinkSets(final Collection<Integer> pageIds) {
+        final Map<String, Set<String>> linksPerRevision = Maps.newLinkedHashMap();
+        streamingTemplate.query("SELECT src_page_id, revision_date, target_page_title FROM outgoing_links "
+                + "WHERE src_page_id IN (:pageIds)", ImmutableMap.of("pageIds", pageIds),
+                new RowCallbackHandler() {
+                    @Override
+                    public void processRow(final ResultSet rs) throws SQLException {
+                        final String key = rs.getInt(1) + "@" + normalizeDateString(rs.getString(2));
+                        Set<String> links = linksPerRevision.get(key);
+                        if (links == null) {
+                            links = Sets.newHashSet();
+                            linksPerRevision.put(key, links);
+                        }
+                        links.add(rs.getString(3));
+                    }
+                });
+        Set<String> allTitles = Sets.newHashSet();
+        for (Set<String> links : linksPerRevision.values()) {
+            allTitles.addAll(links);
+        }
+        final Map<String, Integer> titleIds = getOrCreateTitleIds(allTitles);
+        List<Object[]> batchArgs = Lists.newArrayListWithCapacity(linksPerRevision.size());
+        for (Entry<String, Set<String>> revision : linksPerRevision.entrySet()) {
+            final int[] ids = toTitleIds(revision.getValue(), titleIds);
+            final int separator = revision.getKey().indexOf('@');
+            batchArgs.add(new Object[] {Integer.valueOf(revision.getKey().substring(0, separator)),
+                    revision.getKey().substring(separator + 1), ids.length, LinkSetCodec.encode(ids) });
+        }
+        batchUpdateInChunks(STORE_LINK_SET, batchArgs);
+        return batchArgs.size();
+    }
+
+    /**
+     * @return data + index size of the table in bytes, as estimated by InnoDB
+     */
+    public long getTableSize(final String tableName) {
+        return jdbcTemplate.queryForLong("SELECT data_length + index_length FROM information_schema.tables "
+                + "WHERE table_schema = DATABASE() AND table_name = ?", tableName);
+    }
+
+    /**
+     * Streams all (page, revision date) pairs of the given pages and dates
+     * that have at least one stored link
+     */
+    @Override
+    public void streamFrameCoverage(final Collection<Integer> pageIds,
+                                    final List<DateTime> revisionDates,
+                                    final FrameCoverageHandler handler) {
+        final Map<String, Integer> frameIndexes = getFrameIndexes(revisionDates);
+        final AtomicInteger unmatchedRows = new AtomicInteger();
+        final RowCallbackHandler rowHandler = new RowCallbackHandler() {
+            @Override
+            public void processRow(final ResultSet rs) throws SQLException {
+                final Integer frameIndex = frameIndexes.get(normalizeDateString(rs.getString(2)));
+                if (frameIndex == null) {
+                    unmatchedRows.incrementAndGet();
+                } else {
+                    handler.frameCovered(frameIndex, rs.getInt(1));
                 }
-                storePageEntry(lang, pageId, pageTitle);
             }
+        };
+        for (List<Integer> pageIdChunk : Lists.partition(Lists.newArrayList(pageIds), MAX_IDS_PER_QUERY)) {
+            streamingTemplate.query("SELECT DISTINCT src_page_id, revision_date FROM "
+                    + linkStorage.getTableName() + " WHERE src_page_id IN (:pageIds) AND revision_date IN (:revisionDates)",
+                    ImmutableMap.of("pageIds", pageIdChunk, "revisionDates",
+                            Lists.newArrayList(frameIndexes.keySet())), rowHandler);
+        }
+        logUnmatchedRows(unmatchedRows.get());
+    }
 
-            try {
-                jdbcTemplate.update(
-                        "INSERT INTO pages_in_categories (page_id, category_id) VALUES (?, ?)",
-                        new Object[] {pageId, categoryID });
-            } catch (DataIntegrityViolationException e) {
-                e.printStackTrace();
-                LOG.error("IGNORING ARTICLE: " + entry + " (probably too new!)");
+    /**
+     * @return key: page id, value: date of the first revision, only for pages
+     *         stored in the database
+     */
+    @Override
+    public Map<Integer, DateTime> getCreationDates(final Collection<Integer> pageIds) {
+        final Map<Integer, DateTime> creationDates = Maps.newHashMapWithExpectedSize(pageIds.size());
+        final RowCallbackHandler rowHandler = new RowCallbackHandler() {
+            @Override
+            public void processRow(final ResultSet rs) throws SQLException {
+                creationDates.put(rs.getInt(1), MYSQL_DATETIME_FORMATTER.parseDateTime(
+                        normalizeDateString(rs.getString(2))));
             }
+        };
+        for (List<Integer> pageIdChunk : Lists.partition(Lists.newArrayList(pageIds), MAX_IDS_PER_QUERY)) {
+            streamingTemplate.query("SELECT page_id, creation_date FROM pages WHERE page_id IN (:pageIds)",
+                    ImmutableMap.of("pageIds", pageIdChunk), rowHandler);
+        }
+        return creationDates;
+    }
+
+    /**
+     * Batched insert, existing memberships are left untouched. The pages have
+     * to be stored already.
+     */
+    @Override
+    public void storeCategoryMembers(final String categoryName,
+                                     final Collection<Integer> pageIds) {
+        final int categoryID = getCategoryID(categoryName);
+        List<Object[]> batchArgs = Lists.newArrayListWithCapacity(pageIds.size());
+        for (Integer pageId : pageIds) {
+            batchArgs.add(new Object[] {pageId, categoryID });
         }
+        // unique key (category_id, page_id) drops duplicates
+        batchUpdateInChunks("INSERT IGNORE INTO pages_in_categories (page_id, category_id) VALUES (?, ?)",
+                batchArgs);
     }
 
-    private void storePageEntry(final String lang,
-                                final Integer pageId,
-                                final String pageTitle) {
-        final FirstRevisionFetcher firstRevisionFetcher = new FirstRevisionFetcher(pageTitle, lang,
-                new WikiAPIClient(new DefaultHttpClient()));
-        DateTime firstRevisionDate = firstRevisionFetcher.getFirstRevisionDate();
-        String dateString = firstRevisionDate.toString(DateTimeFormat
-                .forPattern(DBUtil.MYSQL_DATETIME));
-        jdbcTemplate.update(
-                "INSERT INTO pages (page_id, page_title, creation_date) VALUES (?, ?, ?)", pageId,
-                pageTitle, dateString);
-        LOG.info("NEW STORAGE: " + pageTitle);
+    @Override
+    public void removeCategoryMembers(final String categoryName,
+                                      final Collection<Integer> pageIds) {
+        final int categoryID = getCategoryID(categoryName);
+        List<Object[]> batchArgs = Lists.newArrayListWithCapacity(pageIds.size());
+        for (Integer pageId : pageIds) {
+            batchArgs.add(new Object[] {categoryID, pageId });
+        }
+        batchUpdateInChunks("DELETE FROM pages_in_categories WHERE category_id = ? AND page_id = ?",
+                batchArgs);
+    }
+
+    /**
+     * @return start of the last complete member download (stored in UTC) or
+     *         null if the category is unknown or was never synchronized
+     */
+    @Override
+    public DateTime getCategoryLastSync(final String categoryName) {
+        List<String> lastSync = jdbcTemplate.query("SELECT last_sync FROM categories WHERE category_name = ?",
+                new SingleColumnRowMapper<String>(String.class), categoryName);
+        if (lastSync.isEmpty() || lastSync.get(0) == null) {
+            return null;
+        }
+        return UTC_DATETIME_FORMATTER.parseDateTime(normalizeDateString(lastSync.get(0)));
+    }
+
+    @Override
+    public void setCategoryLastSync(final String categoryName,
+                                    final DateTime lastSync) {
+        jdbcTemplate.update("UPDATE categories SET last_sync = ? WHERE category_id = ?",
+                lastSync.toString(UTC_DATETIME_FORMATTER), getCategoryID(categoryName));
     }
 
     /**
      * If category does not exist in DB yet, the record will be created
      */
     private int getCategoryID(final String categoryName) {
-        int categoryID = -1;
         try {
-            categoryID = jdbcTemplate.queryForInt(
+            return jdbcTemplate.queryForInt(
                     "SELECT category_id FROM categories WHERE category_name = ?",
                     new Object[] {categoryName });
         } catch (EmptyResultDataAccessException e) {
             jdbcTemplate.update("INSERT INTO categories (category_name) VALUES (?)",
                     new Object[] {categoryName });
-        }
-        categoryID = jdbcTemplate.queryForInt(
-                "SELECT category_id FROM categories WHERE category_name = ?",
-                new Object[] {categoryName });
-        return categoryID;
-    }
-
-    public boolean categoryMembersInDatabase(final String categoryName) {
-        try {
-            int categoryID = jdbcTemplate.queryForInt(
+            return jdbcTemplate.queryForInt(
                     "SELECT category_id FROM categories WHERE category_name = ?",
                     new Object[] {categoryName });
-            return categoryID > 0;
-        } catch (EmptyResultDataAccessException e) {
-            return false;
         }
     }
 
+    @Override
     public Map<Integer, String> getCategoryMembersByCategoryName(final String categoryName) {
-        String sqlStmt = "SELECT pages.page_title, pages.page_id FROM pages_in_categories "
+        final Map<Integer, String> categoryMembers = Maps.newHashMap();
+        streamCategoryMembers(categoryName, new CategoryMemberHandler() {
+            @Override
+            public void categoryMember(final int pageId,
+                                       final String pageTitle) {
+                categoryMembers.put(pageId, pageTitle);
+            }
+        });
+        return categoryMembers;
+    }
+
+    @Override
+    public void streamCategoryMembers(final String categoryName,
+                                      final CategoryMemberHandler handler) {
+        streamingTemplate.getJdbcOperations().query("SELECT pages.page_id, pages.page_title "
+                + "FROM pages_in_categories "
                 + "JOIN pages ON pages.page_id = pages_in_categories.page_id "
                 + "JOIN categories ON categories.category_id = pages_in_categories.category_id "
-                + "WHERE categories.category_name = ?";
-        List<Map<String, Object>> sqlResult = jdbcTemplate.queryForList(sqlStmt, categoryName);
-        Map<Integer, String> categoryMembers = Maps.newHashMap();
-        for (Map<String, Object> resultRow : sqlResult) {
-            categoryMembers.put((Integer) resultRow.get("page_id"),
-                    (String) resultRow.get("page_title"));
-        }
-        return categoryMembers;
+                + "WHERE categories.category_name = ?", new Object[] {categoryName },
+                new RowCallbackHandler() {
+                    @Override
+                    public void processRow(final ResultSet rs) throws SQLException {
+                        handler.categoryMember(rs.getInt(1), rs.getString(2));
+                    }
+                });
     }
 
+    @Override
     public int getPageIDFromCache(final String pageTitle,
                                   final String lang) {
         try {
@@ -267,6 +825,7 @@ public final class DBUtil {
         }
     }
 
+    @Override
     public boolean userConversationInCache(final GraphEdge userCommunicationPair) {
         try {
             jdbcTemplate.queryForInt(USER_TALK_QUERY, new Object[] {userCommunicationPair.getFrom(),
@@ -277,17 +836,259 @@ public final class DBUtil {
         }
     }
 
+    @Override
     public int getUserConversationFromCache(final GraphEdge userCommunicationPair) {
         return jdbcTemplate.queryForInt(USER_TALK_QUERY,
                 new Object[] {userCommunicationPair.getFrom(), userCommunicationPair.getTo() });
     }
 
+    @Override
     public void cacheUserConversation(final GraphEdge userCommunicationPair,
                                       final int numberOfRevisions) {
         jdbcTemplate.update("INSERT INTO usertalk_cache "
-                + "(usertalk_cache.from, usertalk_cache.to, usertalk_cache.nbrRevisions) "
+                + "(`from`, `to`, nbrRevisions) "
                 + "VALUES(?, ?, ?)", new Object[] {userCommunicationPair.getFrom(),
                 userCommunicationPair.getTo(), numberOfRevisions });
     }
 
+    /**
+     * @return key: redirect title, value: canonical title, only for entries
+     *         updated after oldestValidEntry
+     */
+    @Override
+    public Map<String, String> getCachedRedirectTargets(final Collection<String> titles,
+                                                        final DateTime oldestValidEntry) {
+        final Map<String, String> redirectTargets = Maps.newHashMap();
+        final RowCallbackHandler rowHandler = new RowCallbackHandler() {
+            @Override
+            public void processRow(final ResultSet rs) throws SQLException {
+                redirectTargets.put(rs.getString(1), rs.getString(2));
+            }
+        };
+        final String oldestValidDate = oldestValidEntry.toString(MYSQL_DATETIME_FORMATTER);
+        for (List<String> titleChunk : Lists.partition(Lists.newArrayList(titles), MAX_IDS_PER_QUERY)) {
+            streamingTemplate.query("SELECT redirect_title, target_title FROM redirect_cache "
+                    + "WHERE last_update > :oldestValidEntry AND redirect_title IN (:titles)",
+                    ImmutableMap.of("oldestValidEntry", oldestValidDate, "titles", titleChunk), rowHandler);
+        }
+        return redirectTargets;
+    }
+
+    @Override
+    public void cacheRedirectTargets(final Map<String, String> redirectTargets) {
+        final String now = new DateTime().toString(MYSQL_DATETIME_FORMATTER);
+        List<Object[]> batchArgs = Lists.newArrayList();
+        for (Entry<String, String> entry : redirectTargets.entrySet()) {
+            if (entry.getKey().length() < MAX_TITLE_LENGTH
+                    && entry.getValue().length() < MAX_TITLE_LENGTH) {
+                batchArgs.add(new Object[] {entry.getKey(), entry.getValue(), now });
+            }
+        }
+        batchUpdateInChunks("INSERT INTO redirect_cache "
+                + "(redirect_title, target_title, last_update) VALUES (?, ?, ?) "
+                + "ON DUPLICATE KEY UPDATE target_title = VALUES(target_title), "
+                + "last_update = VALUES(last_update)", batchArgs);
+    }
+
+    /**
+     * Remembers a failed fetch, a null revisionDate marks the whole page as unavailable
+     */
+    @Override
+    public void storeTombstone(final int pageId,
+                               final DateTime revisionDate,
+                               final TombstoneReason reason) {
+        final String revisionDateString = revisionDate == null ? Tombstones.PAGE_LEVEL_DATE
+                : revisionDate.toString(MYSQL_DATETIME_FORMATTER);
+        int attempts;
+        try {
+            attempts = jdbcTemplate.queryForInt("SELECT attempts FROM fetch_tombstones "
+                    + "WHERE page_id = ? AND revision_date = ?", pageId, revisionDateString) + 1;
+        } catch (EmptyResultDataAccessException e) {
+            attempts = 1;
+        }
+        final String retryAfter = new DateTime().plusDays(reason.getRetryDays(attempts)).toString(
+                MYSQL_DATETIME_FORMATTER);
+        jdbcTemplate.update("INSERT INTO fetch_tombstones "
+                + "(page_id, revision_date, reason, attempts, retry_after) VALUES (?, ?, ?, ?, ?) "
+                + "ON DUPLICATE KEY UPDATE reason = VALUES(reason), attempts = VALUES(attempts), "
+                + "retry_after = VALUES(retry_after)", pageId, revisionDateString, reason.name(),
+                attempts, retryAfter);
+    }
+
+    /**
+     * @return all failures that must not be retried yet
+     */
+    @Override
+    public Tombstones getActiveTombstones() {
+        final Tombstones tombstones = new Tombstones();
+        streamingTemplate.getJdbcOperations().query(
+                "SELECT page_id, revision_date FROM fetch_tombstones WHERE retry_after > ?",
+                new Object[] {new DateTime().toString(MYSQL_DATETIME_FORMATTER) },
+                new RowCallbackHandler() {
+                    @Override
+                    public void processRow(final ResultSet rs) throws SQLException {
+                        tombstones.add(rs.getInt(1), normalizeDateString(rs.getString(2)));
+                    }
+                });
+        return tombstones;
+    }
+
+    @Override
+    public CachedRevisionRange getCachedRevisionRange(final String pageTitle) {
+        Map<String, Object> range = jdbcTemplate.queryForMap("SELECT COUNT(0) AS nbr_revisions, "
+                + "MAX(rev_timestamp) AS newest, MIN(rev_id) AS oldest FROM page_revisions "
+                + "WHERE page_title = ?", pageTitle);
+        final int numberOfRevisions = ((Number) range.get("nbr_revisions")).intValue();
+        if (numberOfRevisions == 0) {
+            return new CachedRevisionRange(0, null, 0, 0);
+        }
+        final int oldestRevisionId = ((Number) range.get("oldest")).intValue();
+        final int oldestParentId = jdbcTemplate.queryForInt("SELECT parent_id FROM page_revisions "
+                + "WHERE page_title = ? AND rev_id = ?", pageTitle, oldestRevisionId);
+        final DateTime newestTimestamp = UTC_DATETIME_FORMATTER.parseDateTime(
+                normalizeDateString(range.get("newest").toString()));
+        return new CachedRevisionRange(numberOfRevisions, newestTimestamp, oldestRevisionId,
+                oldestParentId);
+    }
+
+    @Override
+    public void storeRevisions(final String pageTitle,
+                               final List<Rev> revisions) {
+        List<Object[]> batchArgs = Lists.newArrayListWithCapacity(revisions.size());
+        for (Rev rev : revisions) {
+            final String timestamp = new DateTime(rev.getTimestamp()).toString(UTC_DATETIME_FORMATTER);
+            batchArgs.add(new Object[] {pageTitle, rev.getRevid(), rev.getParentid(), rev.getUser(),
+                    timestamp, rev.getSize() });
+        }
+        batchUpdateInChunks("INSERT IGNORE INTO page_revisions "
+                + "(page_title, rev_id, parent_id, user_name, rev_timestamp, size) "
+                + "VALUES (?, ?, ?, ?, ?, ?)", batchArgs);
+    }
+
+    /**
+     * Adds the most recent maxRevisions cached revisions to the given
+     * Revisions, newest first
+     */
+    @Override
+    public void loadCachedRevisions(final String pageTitle,
+                                    final int maxRevisions,
+                                    final Revisions revisions) {
+        streamingTemplate.getJdbcOperations().query("SELECT user_name, rev_timestamp, size "
+                + "FROM page_revisions WHERE page_title = ? ORDER BY rev_id DESC LIMIT ?",
+                new Object[] {pageTitle, maxRevisions }, new RowCallbackHandler() {
+                    @Override
+                    public void processRow(final ResultSet rs) throws SQLException {
+                        final long timestamp = UTC_DATETIME_FORMATTER.parseMillis(
+                                normalizeDateString(rs.getString(2)));
+                        revisions.addEdit(rs.getString(1), timestamp, rs.getInt(3));
+                    }
+                });
+    }
+
+    /**
+     * @return null if no contributions of the user are stored yet
+     */
+    @Override
+    public ContribSyncState getContribSyncState(final String userName) {
+        try {
+            return jdbcTemplate.queryForObject("SELECT last_timestamp, last_rev_id, last_sync "
+                    + "FROM user_contrib_sync WHERE user_name = ?", new RowMapper<ContribSyncState>() {
+                        @Override
+                        public ContribSyncState mapRow(final ResultSet rs,
+                                                       final int rowNum) throws SQLException {
+                            return new ContribSyncState(UTC_DATETIME_FORMATTER.parseDateTime(
+                                    normalizeDateString(rs.getString(1))), rs.getInt(2),
+                                    MYSQL_DATETIME_FORMATTER.parseDateTime(
+                                            normalizeDateString(rs.getString(3))));
+                        }
+                    }, userName);
+        } catch (EmptyResultDataAccessException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Adds the contributions, drops all but the newest maxContributions of
+     * the user (revision ids grow with time) and moves the cursor, in one
+     * transaction
+     *
+     * @param pageTitlesByRevisionId key: revision id, value: title of the edited page
+     */
+    @Override
+    public void storeUserContributions(final String userName,
+                                       final Map<Integer, String> pageTitlesByRevisionId,
+                                       final DateTime lastTimestamp,
+                                       final int lastRevisionId,
+                                       final int maxContributions) {
+        final List<Object[]> batchArgs = Lists.newArrayListWithCapacity(pageTitlesByRevisionId.size());
+        for (Entry<Integer, String> entry : pageTitlesByRevisionId.entrySet()) {
+            if (entry.getValue().length() < MAX_TITLE_LENGTH) {
+                batchArgs.add(new Object[] {userName, entry.getKey(), entry.getValue() });
+            }
+        }
+        transactionTemplate.execute(new TransactionCallbackWithoutResult() {
+            @Override
+            protected void doInTransactionWithoutResult(final TransactionStatus status) {
+                batchUpdateInChunks("INSERT IGNORE INTO user_contribs "
+                        + "(user_name, rev_id, page_title) VALUES (?, ?, ?)", batchArgs);
+                List<Integer> oldestKept = jdbcTemplate.query("SELECT rev_id FROM user_contribs "
+                        + "WHERE user_name = ? ORDER BY rev_id DESC LIMIT 1 OFFSET ?",
+                        new SingleColumnRowMapper<Integer>(Integer.class), userName, maxContributions - 1);
+                if (!oldestKept.isEmpty()) {
+                    jdbcTemplate.update("DELETE FROM user_contribs WHERE user_name = ? AND rev_id < ?",
+                            userName, oldestKept.get(0));
+                }
+                jdbcTemplate.update("INSERT INTO user_contrib_sync "
+                        + "(user_name, last_timestamp, last_rev_id, last_sync) VALUES (?, ?, ?, ?) "
+                        + "ON DUPLICATE KEY UPDATE last_timestamp = VALUES(last_timestamp), "
+                        + "last_rev_id = VALUES(last_rev_id), last_sync = VALUES(last_sync)",
+                        userName, lastTimestamp.toString(UTC_DATETIME_FORMATTER), lastRevisionId,
+                        new DateTime().toString(MYSQL_DATETIME_FORMATTER));
+            }
+        });
+    }
+
+    @Override
+    public void touchUserContribSync(final String userName) {
+        jdbcTemplate.update("UPDATE user_contrib_sync SET last_sync = ? WHERE user_name = ?",
+                new DateTime().toString(MYSQL_DATETIME_FORMATTER), userName);
+    }
+
+    /**
+     * Counted over the stored contributions, i.e. the newest maxContributions
+     *
+     * @return titles of the pages most edited by the user, most edits first
+     */
+    @Override
+    public List<String> getMostEditedPages(final String userName,
+                                           final int numberOfPages) {
+        return jdbcTemplate.query("SELECT page_title FROM user_contribs WHERE user_name = ? "
+                + "GROUP BY page_title ORDER BY COUNT(0) DESC LIMIT ?",
+                new SingleColumnRowMapper<String>(String.class), userName, numberOfPages);
+    }
+
+    /**
+     * Decoded row of link_sets
+     */
+    private static final class StoredLinkSet {
+        private final int frameIndex;
+        private final int pageId;
+        private final int[] titleIds;
+
+        private StoredLinkSet(final int frameIndex,
+                              final int pageId,
+                              final int[] titleIds) {
+            this.frameIndex = frameIndex;
+            this.pageId = pageId;
+            this.titleIds = titleIds;
+        }
+    }
+
+    /**
+     * MySQL returns DATETIME values as strings with fractional seconds
+     */
+    private static String normalizeDateString(final String dateTime) {
+        return StringUtils.removeEnd(dateTime, ".0");
+    }
+
 }
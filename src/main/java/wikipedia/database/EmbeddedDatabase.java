@@ -0,0 +1,75 @@
+package wikipedia.database;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import org.apache.commons.dbcp.BasicDataSource;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.CannotGetJdbcConnectionException;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import com.google.common.collect.Maps;
+
+/**
+ * File-based H2 database in MySQL mode for local runs without the database
+ * server. The schema (embedded_schema.sql) is created on first use.
+ */
+public final class EmbeddedDatabase {
+
+    private static final String DATABASE_NAME = "page_link_revisions";
+    /**
+     * MySQL syntax, lower case identifiers, 256 MB page cache (in KB) and the
+     * same lock wait as the connection pool
+     */
+    private static final String URL_OPTIONS = ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;CACHE_SIZE=262144"
+            + ";LOCK_TIMEOUT=60000";
+    private static final int MAX_ACTIVE = 32;
+
+    private static final Map<String, DataSource> OPEN_DATABASES = Maps.newHashMap();
+
+    private EmbeddedDatabase() { }
+
+    /**
+     * @return pool for the database in the given directory, one per directory
+     *         and process
+     */
+    public static DataSource get(final File directory) {
+        return get("jdbc:h2:file:" + new File(directory, DATABASE_NAME).getAbsolutePath() + URL_OPTIONS);
+    }
+
+    /**
+     * @param url H2 JDBC URL, e.g. jdbc:h2:mem:test;MODE=MySQL;DB_CLOSE_DELAY=-1
+     */
+    public static synchronized DataSource get(final String url) {
+        DataSource dataSource = OPEN_DATABASES.get(url);
+        if (dataSource == null) {
+            BasicDataSource pool = new BasicDataSource();
+            pool.setDriverClassName("org.h2.Driver");
+            pool.setUrl(url);
+            pool.setMaxActive(MAX_ACTIVE);
+            pool.setMaxIdle(MAX_ACTIVE);
+            createSchema(pool);
+            dataSource = pool;
+            OPEN_DATABASES.put(url, dataSource);
+        }
+        return dataSource;
+    }
+
+    private static void createSchema(final DataSource dataSource) {
+        ResourceDatabasePopulator populator = new ResourceDatabasePopulator();
+        populator.addScript(new ClassPathResource("embedded_schema.sql"));
+        Connection connection = DataSourceUtils.getConnection(dataSource);
+        try {
+            populator.populate(connection);
+        } catch (SQLException e) {
+            throw new CannotGetJdbcConnectionException("Could not create embedded schema", e);
+        } finally {
+            DataSourceUtils.releaseConnection(connection, dataSource);
+        }
+    }
+}
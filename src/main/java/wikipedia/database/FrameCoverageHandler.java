@@ -0,0 +1,13 @@
+package wikipedia.database;
+
+/**
+ * Callback for streamed (page, frame) pairs that already have links stored
+ */
+public interface FrameCoverageHandler {
+
+    /**
+     * @param frameIndex index of the revision date in the requested date list
+     */
+    void frameCovered(int frameIndex, int pageId);
+
+}
@@ -0,0 +1,158 @@
+package wikipedia.database;
+
+import java.io.PrintWriter;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+import javax.sql.DataSource;
+
+import org.apache.commons.dbcp.BasicDataSource;
+
+import com.google.common.base.Supplier;
+
+/**
+ * Connection pool that is created on the first connection request and
+ * records how long callers waited for a connection
+ */
+public final class InstrumentedDataSource implements DataSource {
+
+    private final Supplier<BasicDataSource> poolFactory;
+    /** null until the first connection request */
+    private volatile BasicDataSource pool;
+
+    private final AtomicLong connectionRequests = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+
+    public InstrumentedDataSource(final Supplier<BasicDataSource> poolFactory) {
+        this.poolFactory = poolFactory;
+    }
+
+    private BasicDataSource getPool() {
+        BasicDataSource createdPool = pool;
+        if (createdPool == null) {
+            synchronized (this) {
+                createdPool = pool;
+                if (createdPool == null) {
+                    createdPool = poolFactory.get();
+                    pool = createdPool;
+                }
+            }
+        }
+        return createdPool;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        final long start = System.nanoTime();
+        try {
+            return getPool().getConnection();
+        } finally {
+            recordWait(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public Connection getConnection(final String username,
+                                    final String password) throws SQLException {
+        final long start = System.nanoTime();
+        try {
+            return getPool().getConnection(username, password);
+        } finally {
+            recordWait(System.nanoTime() - start);
+        }
+    }
+
+    private void recordWait(final long waitNanos) {
+        connectionRequests.incrementAndGet();
+        totalWaitNanos.addAndGet(waitNanos);
+        long currentMax = maxWaitNanos.get();
+        while (waitNanos > currentMax && !maxWaitNanos.compareAndSet(currentMax, waitNanos)) {
+            currentMax = maxWaitNanos.get();
+        }
+    }
+
+    /**
+     * The statistics do not create the pool, they are 0 before the first
+     * connection request
+     */
+    public int getNumActive() {
+        final BasicDataSource createdPool = pool;
+        return createdPool == null ? 0 : createdPool.getNumActive();
+    }
+
+    public int getNumIdle() {
+        final BasicDataSource createdPool = pool;
+        return createdPool == null ? 0 : createdPool.getNumIdle();
+    }
+
+    public int getMaxActive() {
+        final BasicDataSource createdPool = pool;
+        return createdPool == null ? 0 : createdPool.getMaxActive();
+    }
+
+    public long getConnectionRequests() {
+        return connectionRequests.get();
+    }
+
+    public double getAverageWaitMillis() {
+        final long requests = connectionRequests.get();
+        if (requests == 0) {
+            return 0;
+        }
+        return (double) TimeUnit.NANOSECONDS.toMicros(totalWaitNanos.get()) / requests / 1000;
+    }
+
+    public long getMaxWaitMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(maxWaitNanos.get());
+    }
+
+    public String getPoolStatistics() {
+        return "active=" + getNumActive() + "/" + getMaxActive() + ", idle=" + getNumIdle()
+                + ", requests=" + getConnectionRequests() + ", avgWait="
+                + String.format("%.2f", getAverageWaitMillis()) + "ms, maxWait=" + getMaxWaitMillis()
+                + "ms";
+    }
+
+    @Override
+    public PrintWriter getLogWriter() throws SQLException {
+        return getPool().getLogWriter();
+    }
+
+    @Override
+    public void setLogWriter(final PrintWriter out) throws SQLException {
+        getPool().setLogWriter(out);
+    }
+
+    @Override
+    public void setLoginTimeout(final int seconds) throws SQLException {
+        getPool().setLoginTimeout(seconds);
+    }
+
+    @Override
+    public int getLoginTimeout() throws SQLException {
+        return getPool().getLoginTimeout();
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        throw new SQLFeatureNotSupportedException();
+    }
+
+    @Override
+    public <T> T unwrap(final Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) {
+            return iface.cast(this);
+        }
+        return getPool().unwrap(iface);
+    }
+
+    @Override
+    public boolean isWrapperFor(final Class<?> iface) throws SQLException {
+        return iface.isInstance(this) || getPool().isWrapperFor(iface);
+    }
+}
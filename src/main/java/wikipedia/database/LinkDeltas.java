@@ -0,0 +1,61 @@
+package wikipedia.database;
+
+import java.util.Arrays;
+
+/**
+ * Set operations on sorted, distinct title id arrays as produced by
+ * LinkSetCodec.decode, used to store a link set as difference to an
+ * earlier link set of the same page
+ */
+public final class LinkDeltas {
+
+    private LinkDeltas() {
+    }
+
+    /**
+     * @return all ids of left that are not in right
+     */
+    public static int[] difference(final int[] left,
+                                   final int[] right) {
+        int[] result = new int[left.length];
+        int size = 0;
+        int j = 0;
+        for (int id : left) {
+            while (j < right.length && right[j] < id) {
+                j++;
+            }
+            if (j == right.length || right[j] != id) {
+                result[size++] = id;
+            }
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    public static int[] union(final int[] left,
+                              final int[] right) {
+        int[] result = new int[left.length + right.length];
+        int size = 0;
+        int i = 0;
+        int j = 0;
+        while (i < left.length || j < right.length) {
+            if (j == right.length || (i < left.length && left[i] < right[j])) {
+                result[size++] = left[i++];
+            } else if (i == left.length || right[j] < left[i]) {
+                result[size++] = right[j++];
+            } else {
+                result[size++] = left[i++];
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    /**
+     * @return (base \ removed) u added
+     */
+    public static int[] apply(final int[] base,
+                              final int[] added,
+                              final int[] removed) {
+        return union(difference(base, removed), added);
+    }
+}
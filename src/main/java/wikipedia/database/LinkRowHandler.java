@@ -0,0 +1,13 @@
+package wikipedia.database;
+
+/**
+ * Callback for streamed outgoing link rows
+ */
+public interface LinkRowHandler {
+
+    /**
+     * @param frameIndex index of the revision date in the requested date list
+     */
+    void processLink(int frameIndex, int srcPageId, String targetPageTitle);
+
+}
@@ -0,0 +1,127 @@
+package wikipedia.database;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Binary format of a stored link set: the title ids are sorted, duplicates
+ * removed and written as count followed by the gaps between consecutive ids,
+ * each as unsigned varint (7 bits per byte, high bit = more bytes follow).
+ * The result is deflated.
+ */
+public final class LinkSetCodec {
+
+    private static final int VARINT_PAYLOAD_BITS = 7;
+    private static final int VARINT_PAYLOAD_MASK = 0x7F;
+    private static final int VARINT_CONTINUATION = 0x80;
+    private static final int BUFFER_SIZE = 4096;
+
+    private LinkSetCodec() {
+    }
+
+    public static byte[] encode(final int[] titleIds) {
+        final int[] sortedIds = titleIds.clone();
+        Arrays.sort(sortedIds);
+        ByteArrayOutputStream varints = new ByteArrayOutputStream(sortedIds.length * 2 + 5);
+        final int numberOfIds = countDistinct(sortedIds);
+        writeVarint(varints, numberOfIds);
+        int previousId = 0;
+        for (int i = 0; i < sortedIds.length; i++) {
+            if (i > 0 && sortedIds[i] == sortedIds[i - 1]) {
+                continue;
+            }
+            writeVarint(varints, sortedIds[i] - previousId);
+            previousId = sortedIds[i];
+        }
+        return deflate(varints.toByteArray());
+    }
+
+    /**
+     * @return sorted, distinct title ids
+     */
+    public static int[] decode(final byte[] linkSet) {
+        final byte[] varints = inflate(linkSet);
+        final int[] position = {0 };
+        final int numberOfIds = readVarint(varints, position);
+        final int[] titleIds = new int[numberOfIds];
+        int previousId = 0;
+        for (int i = 0; i < numberOfIds; i++) {
+            previousId += readVarint(varints, position);
+            titleIds[i] = previousId;
+        }
+        return titleIds;
+    }
+
+    private static int countDistinct(final int[] sortedIds) {
+        int distinct = 0;
+        for (int i = 0; i < sortedIds.length; i++) {
+            if (i == 0 || sortedIds[i] != sortedIds[i - 1]) {
+                distinct++;
+            }
+        }
+        return distinct;
+    }
+
+    private static void writeVarint(final ByteArrayOutputStream out,
+                                    final int value) {
+        int remaining = value;
+        while ((remaining & ~VARINT_PAYLOAD_MASK) != 0) {
+            out.write((remaining & VARINT_PAYLOAD_MASK) | VARINT_CONTINUATION);
+            remaining >>>= VARINT_PAYLOAD_BITS;
+        }
+        out.write(remaining);
+    }
+
+    private static int readVarint(final byte[] in,
+                                  final int[] position) {
+        int value = 0;
+        int shift = 0;
+        byte current;
+        do {
+            current = in[position[0]++];
+            value |= (current & VARINT_PAYLOAD_MASK) << shift;
+            shift += VARINT_PAYLOAD_BITS;
+        } while ((current & VARINT_CONTINUATION) != 0);
+        return value;
+    }
+
+    private static byte[] deflate(final byte[] data) {
+        Deflater deflater = new Deflater();
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 2 + 16);
+            byte[] buffer = new byte[BUFFER_SIZE];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(final byte[] data) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(data.length * 2);
+            byte[] buffer = new byte[BUFFER_SIZE];
+            while (!inflater.finished()) {
+                final int inflated = inflater.inflate(buffer);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IllegalArgumentException("Truncated link set");
+                }
+                out.write(buffer, 0, inflated);
+            }
+            return out.toByteArray();
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException("Corrupt link set", e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
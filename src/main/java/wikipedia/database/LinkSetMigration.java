@@ -0,0 +1,43 @@
+package wikipedia.database;
+
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Copies all links from outgoing_links into the compressed link_sets layout
+ * (see db_scripts/link_sets_2026-10-19.sql). Can be rerun, already copied
+ * pages are overwritten. outgoing_links is left untouched.
+ */
+public final class LinkSetMigration {
+
+    private static final Logger LOG = LoggerFactory.getLogger(LinkSetMigration.class.getName());
+
+    private static final int PAGES_PER_CHUNK = 100;
+    private static final int MODULO_LOG = 100;
+    private static final int BYTES_PER_MB = 1024 * 1024;
+
+    private LinkSetMigration() {
+    }
+
+    public static void main(final String[] args) {
+        final DBUtil database = new DBUtil();
+        final List<Integer> pageIds = database.getPageIdsWithLinkRows();
+        LOG.info("Migrating links of " + pageIds.size() + " pages");
+        int chunkCounter = 0;
+        int linkSets = 0;
+        for (List<Integer> pageIdChunk : Lists.partition(pageIds, PAGES_PER_CHUNK)) {
+            linkSets += database.copyLinkRowsToLinkSets(pageIdChunk);
+            if (++chunkCounter % MODULO_LOG == 0) {
+                LOG.info("Migrated " + chunkCounter * PAGES_PER_CHUNK + " pages, " + linkSets + " link sets");
+            }
+        }
+        final long rowsSize = database.getTableSize("outgoing_links");
+        final long linkSetsSize = database.getTableSize("link_sets") + database.getTableSize("link_titles");
+        LOG.info("Migrated " + linkSets + " link sets. outgoing_links: " + rowsSize / BYTES_PER_MB
+                + " MB, link_sets + link_titles: " + linkSetsSize / BYTES_PER_MB + " MB");
+    }
+}
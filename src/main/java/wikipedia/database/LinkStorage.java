@@ -0,0 +1,34 @@
+package wikipedia.database;
+
+/**
+ * Table layout used for outgoing links
+ */
+public enum LinkStorage {
+
+    /** one row per link in outgoing_links */
+    ROWS("outgoing_links"),
+    /** one compressed row per (page, revision date) in link_sets, see LinkSetCodec */
+    LINK_SETS("link_sets"),
+    /**
+     * per page a checkpoint (full link set) followed by the added/removed
+     * targets relative to an earlier frame in link_deltas
+     */
+    LINK_DELTAS("link_deltas");
+
+    /** system property to select the layout, e.g. -Dwikimaps.linkStorage=LINK_SETS */
+    public static final String PROPERTY = "wikimaps.linkStorage";
+
+    private final String tableName;
+
+    private LinkStorage(final String tableName) {
+        this.tableName = tableName;
+    }
+
+    String getTableName() {
+        return tableName;
+    }
+
+    public static LinkStorage fromSystemProperty() {
+        return valueOf(System.getProperty(PROPERTY, ROWS.name()));
+    }
+}
@@ -0,0 +1,190 @@
+package wikipedia.database;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.joda.time.DateTime;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.ConcurrencyFailureException;
+
+import wikipedia.network.PageLinkInfo;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * Write-behind buffer between the fetch workers and the storage. Link infos
+ * are queued and stored by dedicated writer threads, each write stores
+ * everything queued so far (up to maxBatchSize) in one transaction, a batch
+ * that fails is stored again one link info per transaction. put() blocks
+ * while the queue is full, close() flushes the remaining entries.
+ */
+public final class LinkWriteQueue {
+
+    private static final Logger LOG = LoggerFactory.getLogger(LinkWriteQueue.class.getName());
+
+    private static final int POLL_TIMEOUT_MSEC = 100;
+    private static final int MAX_ATTEMPTS = 3;
+
+    private final WikiStorage storage;
+    private final BlockingQueue<QueuedLinkInfo> queue;
+    private final int maxBatchSize;
+    private final List<Thread> writers = Lists.newArrayList();
+
+    private final AtomicInteger numberOfStoredLinkInfos = new AtomicInteger();
+    private final AtomicInteger numberOfFailedLinkInfos = new AtomicInteger();
+    private final AtomicInteger numberOfBatches = new AtomicInteger();
+    private volatile boolean closed;
+
+    public LinkWriteQueue(final WikiStorage storage, final int capacity, final int numberOfWriters,
+            final int maxBatchSize) {
+        this.storage = storage;
+        this.queue = new ArrayBlockingQueue<QueuedLinkInfo>(capacity);
+        this.maxBatchSize = maxBatchSize;
+        for (int i = 0; i < numberOfWriters; i++) {
+            Thread writer = new Thread(new Writer(), "link-writer-" + i);
+            writer.setDaemon(true);
+            writer.start();
+            writers.add(writer);
+        }
+    }
+
+    /**
+     * Blocks while the queue is full
+     */
+    public void put(final PageLinkInfo linkInfo,
+                    final DateTime firstRevisionDate) throws InterruptedException {
+        if (closed) {
+            throw new IllegalStateException("Link write queue is closed");
+        }
+        queue.put(new QueuedLinkInfo(linkInfo, firstRevisionDate));
+    }
+
+    /**
+     * Waits until all queued link infos are stored and stops the writers
+     */
+    public void close() {
+        closed = true;
+        for (Thread writer : writers) {
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                LOG.error("Interrupted while waiting for link writer: " + writer.getName(), e);
+                Thread.currentThread().interrupt();
+            }
+        }
+        // entries of puts racing with close
+        while (!queue.isEmpty()) {
+            writeNextBatch(null);
+        }
+    }
+
+    public int getNumberOfStoredLinkInfos() {
+        return numberOfStoredLinkInfos.get();
+    }
+
+    public int getNumberOfFailedLinkInfos() {
+        return numberOfFailedLinkInfos.get();
+    }
+
+    @Override
+    public String toString() {
+        return "stored: " + numberOfStoredLinkInfos + ", batches: " + numberOfBatches + ", failed: "
+                + numberOfFailedLinkInfos + ", queued: " + queue.size();
+    }
+
+    /**
+     * @param first already taken head of the batch or null
+     */
+    private void writeNextBatch(final QueuedLinkInfo first) {
+        List<QueuedLinkInfo> batch = Lists.newArrayListWithCapacity(maxBatchSize);
+        if (first != null) {
+            batch.add(first);
+        }
+        queue.drainTo(batch, maxBatchSize - batch.size());
+        if (batch.isEmpty()) {
+            return;
+        }
+        List<PageLinkInfo> linkInfos = Lists.newArrayListWithCapacity(batch.size());
+        Map<Integer, DateTime> firstRevisionDates = Maps.newHashMap();
+        for (QueuedLinkInfo queued : batch) {
+            linkInfos.add(queued.linkInfo);
+            firstRevisionDates.put(queued.linkInfo.getPageID(), queued.firstRevisionDate);
+        }
+        numberOfBatches.incrementAndGet();
+        if (store(linkInfos, firstRevisionDates)) {
+            numberOfStoredLinkInfos.addAndGet(batch.size());
+            return;
+        }
+        if (batch.size() == 1) {
+            numberOfFailedLinkInfos.incrementAndGet();
+            return;
+        }
+        // one bad link info must not cost the whole batch
+        LOG.warn("Storing the " + batch.size() + " link infos of the failed batch one by one");
+        for (QueuedLinkInfo queued : batch) {
+            if (store(ImmutableList.of(queued.linkInfo),
+                    ImmutableMap.of(queued.linkInfo.getPageID(), queued.firstRevisionDate))) {
+                numberOfStoredLinkInfos.incrementAndGet();
+            } else {
+                numberOfFailedLinkInfos.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Retries lock conflicts up to MAX_ATTEMPTS times
+     *
+     * @return false if the link infos could not be stored
+     */
+    private boolean store(final List<PageLinkInfo> linkInfos,
+                          final Map<Integer, DateTime> firstRevisionDates) {
+        for (int attempt = 1; attempt <= MAX_ATTEMPTS; attempt++) {
+            try {
+                storage.storePageLinkInfos(linkInfos, firstRevisionDates);
+                return true;
+            } catch (ConcurrencyFailureException e) {
+                // lock timeout or deadlock with another writer, the transaction was rolled back
+                LOG.warn("Lock conflict storing " + linkInfos.size() + " link infos, attempt " + attempt, e);
+            } catch (Exception e) {
+                LOG.error("Could not store " + linkInfos.size() + " link infos", e);
+                return false;
+            }
+        }
+        return false;
+    }
+
+    private final class Writer implements Runnable {
+        @Override
+        public void run() {
+            try {
+                while (!closed || !queue.isEmpty()) {
+                    final QueuedLinkInfo first = queue.poll(POLL_TIMEOUT_MSEC, TimeUnit.MILLISECONDS);
+                    if (first != null) {
+                        writeNextBatch(first);
+                    }
+                }
+            } catch (InterruptedException e) {
+                LOG.error("Link writer interrupted, " + queue.size() + " link infos queued", e);
+            }
+        }
+    }
+
+    private static final class QueuedLinkInfo {
+        private final PageLinkInfo linkInfo;
+        private final DateTime firstRevisionDate;
+
+        private QueuedLinkInfo(final PageLinkInfo linkInfo, final DateTime firstRevisionDate) {
+            this.linkInfo = linkInfo;
+            this.firstRevisionDate = firstRevisionDate;
+        }
+    }
+
+}
@@ -0,0 +1,83 @@
+package wikipedia.database;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Schema version 2: rebuilds outgoing_links as outgoing_links_new (see
+ * migrations/002_outgoing_links_partitioned.sql) while the fetchers keep
+ * writing. A trigger copies new links, the existing links are copied in
+ * chunks of source pages, each chunk in its own short transaction. At the
+ * end the tables are swapped with one atomic rename, the old table is kept
+ * as outgoing_links_old. Restartable: chunks already copied are skipped by
+ * the primary key. MySQL only.
+ */
+public final class OutgoingLinksRepartitioning extends SchemaMigration {
+
+    private static final Logger LOG = LoggerFactory.getLogger(OutgoingLinksRepartitioning.class.getName());
+
+    private static final int PAGES_PER_CHUNK = 500;
+    private static final int MODULO_LOG = 100;
+    /** leaves room for the fetchers between two chunks */
+    private static final int PAUSE_BETWEEN_CHUNKS_MSEC = 50;
+
+    public OutgoingLinksRepartitioning() {
+        super(2, "outgoing_links partitioned by revision date, covering primary key");
+    }
+
+    @Override
+    public void apply(final DataSource dataSource) {
+        final JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        if (tableExists(jdbcTemplate, "outgoing_links_old")) {
+            LOG.info("Tables already swapped by an earlier run");
+            jdbcTemplate.execute("DROP TRIGGER IF EXISTS outgoing_links_copy");
+            return;
+        }
+        runScript(dataSource, "migrations/002_outgoing_links_partitioned.sql");
+        int chunkCounter = 0;
+        long copiedLinks = 0;
+        int lastPageId = -1;
+        while (true) {
+            // next PAGES_PER_CHUNK source pages that have links, gaps in the ids cost nothing
+            final Integer chunkEnd = jdbcTemplate.queryForObject("SELECT MAX(src_page_id) FROM "
+                    + "(SELECT DISTINCT src_page_id FROM outgoing_links WHERE src_page_id > ? "
+                    + "ORDER BY src_page_id LIMIT " + PAGES_PER_CHUNK + ") chunk", Integer.class, lastPageId);
+            if (chunkEnd == null) {
+                break;
+            }
+            // unique key (src_page_id, revision_date, target_page_title) limits the range scan
+            copiedLinks += jdbcTemplate.update("INSERT IGNORE INTO outgoing_links_new "
+                    + "(src_page_id, revision_date, target_page_title) "
+                    + "SELECT src_page_id, revision_date, target_page_title FROM outgoing_links "
+                    + "WHERE src_page_id > ? AND src_page_id <= ?", lastPageId, chunkEnd);
+            lastPageId = chunkEnd;
+            if (++chunkCounter % MODULO_LOG == 0) {
+                LOG.info("Copied links of page ids <= " + lastPageId + ", " + copiedLinks + " links");
+            }
+            pause();
+        }
+        jdbcTemplate.execute("RENAME TABLE outgoing_links TO outgoing_links_old, "
+                + "outgoing_links_new TO outgoing_links");
+        // after the rename nothing writes to outgoing_links_old anymore
+        jdbcTemplate.execute("DROP TRIGGER IF EXISTS outgoing_links_copy");
+        LOG.info("Copied " + copiedLinks + " links. Drop outgoing_links_old once the new table is verified");
+    }
+
+    private static boolean tableExists(final JdbcTemplate jdbcTemplate,
+                                       final String tableName) {
+        return jdbcTemplate.queryForInt("SELECT COUNT(0) FROM information_schema.tables "
+                + "WHERE table_schema = DATABASE() AND table_name = ?", tableName) > 0;
+    }
+
+    private static void pause() {
+        try {
+            Thread.sleep(PAUSE_BETWEEN_CHUNKS_MSEC);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while copying outgoing_links", e);
+        }
+    }
+}
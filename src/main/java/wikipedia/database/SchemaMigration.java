@@ -0,0 +1,71 @@
+package wikipedia.database;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import javax.sql.DataSource;
+
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.UncategorizedSQLException;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+/**
+ * One step of the versioned schema, applied by SchemaMigrator. Migrations
+ * have to be restartable: a failed migration is not recorded and runs again
+ * from the start.
+ */
+public abstract class SchemaMigration {
+
+    private final int version;
+    private final String description;
+
+    protected SchemaMigration(final int version, final String description) {
+        this.version = version;
+        this.description = description;
+    }
+
+    public final int getVersion() {
+        return version;
+    }
+
+    public final String getDescription() {
+        return description;
+    }
+
+    public abstract void apply(DataSource dataSource);
+
+    /**
+     * @return migration that runs the given classpath script (statements
+     *         separated by semicolons)
+     */
+    public static SchemaMigration script(final int version,
+                                         final String description,
+                                         final String scriptResource) {
+        return new SchemaMigration(version, description) {
+            @Override
+            public void apply(final DataSource dataSource) {
+                runScript(dataSource, scriptResource);
+            }
+        };
+    }
+
+    protected static void runScript(final DataSource dataSource,
+                                    final String scriptResource) {
+        ResourceDatabasePopulator populator = new ResourceDatabasePopulator();
+        populator.addScript(new ClassPathResource(scriptResource));
+        Connection connection = DataSourceUtils.getConnection(dataSource);
+        try {
+            populator.populate(connection);
+        } catch (SQLException e) {
+            throw new UncategorizedSQLException("Migration script " + scriptResource, null, e);
+        } finally {
+            DataSourceUtils.releaseConnection(connection, dataSource);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return version + " (" + description + ")";
+    }
+}
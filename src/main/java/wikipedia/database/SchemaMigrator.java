@@ -0,0 +1,89 @@
+package wikipedia.database;
+
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.joda.time.DateTime;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Brings a database to the newest schema version. Applied versions are
+ * recorded in schema_version. Databases without that table are at the
+ * baseline: the dump in db_scripts and its upgrade scripts up to 2026-10-19.
+ */
+public final class SchemaMigrator {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SchemaMigrator.class.getName());
+
+    public static final int BASELINE_VERSION = 1;
+
+    /** ascending versions, starting after the baseline */
+    private static final List<SchemaMigration> MIGRATIONS = ImmutableList.<SchemaMigration>of(
+            new OutgoingLinksRepartitioning());
+
+    private final DataSource dataSource;
+    private final JdbcTemplate jdbcTemplate;
+    private final List<SchemaMigration> migrations;
+
+    public SchemaMigrator(final DataSource dataSource, final List<SchemaMigration> migrations) {
+        this.dataSource = dataSource;
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.migrations = migrations;
+    }
+
+    public SchemaMigrator(final DataSource dataSource) {
+        this(dataSource, MIGRATIONS);
+    }
+
+    public static void main(final String[] args) {
+        new SchemaMigrator(SharedDataSource.get()).migrate();
+    }
+
+    /**
+     * Records the baseline if the database has no version yet
+     */
+    public int getCurrentVersion() {
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS schema_version ("
+                + "version int(11) NOT NULL, description varchar(255) NOT NULL, "
+                + "applied_at datetime NOT NULL, PRIMARY KEY (version))");
+        final int version = jdbcTemplate.queryForInt("SELECT COALESCE(MAX(version), 0) FROM schema_version");
+        if (version > 0) {
+            return version;
+        }
+        recordVersion(BASELINE_VERSION, "baseline");
+        return BASELINE_VERSION;
+    }
+
+    /**
+     * Applies all pending migrations in order, each is recorded as soon as it
+     * is complete
+     *
+     * @return the new schema version
+     */
+    public int migrate() {
+        int version = getCurrentVersion();
+        LOG.info("Schema version: " + version);
+        for (SchemaMigration migration : migrations) {
+            if (migration.getVersion() <= version) {
+                continue;
+            }
+            LOG.info("Applying migration " + migration);
+            migration.apply(dataSource);
+            recordVersion(migration.getVersion(), migration.getDescription());
+            version = migration.getVersion();
+        }
+        LOG.info("Schema is at version " + version);
+        return version;
+    }
+
+    private void recordVersion(final int version,
+                               final String description) {
+        jdbcTemplate.update("INSERT INTO schema_version (version, description, applied_at) VALUES (?, ?, ?)",
+                version, description, new DateTime().toString(DBUtil.MYSQL_DATETIME_FORMATTER));
+    }
+}
@@ -0,0 +1,29 @@
+package wikipedia.database;
+
+import org.apache.commons.dbcp.BasicDataSource;
+import org.springframework.beans.factory.xml.XmlBeanFactory;
+import org.springframework.core.io.ClassPathResource;
+
+import com.google.common.base.Supplier;
+
+/**
+ * Process-wide connection pool configured in context.xml. The pool is only
+ * created when the first connection is requested.
+ */
+public final class SharedDataSource {
+
+    private static final InstrumentedDataSource INSTANCE = new InstrumentedDataSource(
+            new Supplier<BasicDataSource>() {
+                @Override
+                public BasicDataSource get() {
+                    XmlBeanFactory beanFactory = new XmlBeanFactory(new ClassPathResource("context.xml"));
+                    return (BasicDataSource) beanFactory.getBean("dataSource");
+                }
+            });
+
+    private SharedDataSource() { }
+
+    public static InstrumentedDataSource get() {
+        return INSTANCE;
+    }
+}
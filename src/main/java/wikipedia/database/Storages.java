@@ -0,0 +1,43 @@
+package wikipedia.database;
+
+import java.io.File;
+
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+
+/**
+ * Provides the configured WikiStorage: the MySQL database of context.xml or,
+ * with -Dwikimaps.storage=embedded:&lt;directory&gt;, an embedded database in
+ * that directory. All callers share one instance, so lookups cached by
+ * CachingStorage are reused across the whole run.
+ */
+public final class Storages {
+
+    public static final String PROPERTY = "wikimaps.storage";
+    private static final String EMBEDDED_PREFIX = "embedded:";
+
+    private static final Supplier<CachingStorage> SHARED = Suppliers.memoize(new Supplier<CachingStorage>() {
+        @Override
+        public CachingStorage get() {
+            final String storage = System.getProperty(PROPERTY, "");
+            if (storage.startsWith(EMBEDDED_PREFIX)) {
+                return new CachingStorage(new DBUtil(EmbeddedDatabase.get(new File(storage
+                        .substring(EMBEDDED_PREFIX.length())))));
+            }
+            return new CachingStorage(new DBUtil());
+        }
+    });
+
+    private Storages() { }
+
+    public static WikiStorage open() {
+        return SHARED.get();
+    }
+
+    /**
+     * @return hit/miss counts of the lookup caches of the shared storage
+     */
+    public static String getCacheStatistics() {
+        return SHARED.get().getStatistics();
+    }
+}
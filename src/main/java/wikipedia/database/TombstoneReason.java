@@ -0,0 +1,31 @@
+package wikipedia.database;
+
+/**
+ * Reasons for a failed fetch, each with the number of days to wait before
+ * the first retry. The wait time doubles with every further failure.
+ */
+public enum TombstoneReason {
+
+    /** Page renamed, deleted or never existed (no page id in the API answer) */
+    PAGE_MISSING(30),
+    /** Revision found, but without any outgoing links (e.g. blank text) */
+    EMPTY_LINK_INFO(14),
+    /** Date of the oldest revision could not be downloaded */
+    FIRST_REVISION_UNAVAILABLE(3);
+
+    private static final int MAX_RETRY_DAYS = 180;
+
+    private final int initialRetryDays;
+
+    private TombstoneReason(final int initialRetryDays) {
+        this.initialRetryDays = initialRetryDays;
+    }
+
+    /**
+     * @param attempts number of failed fetches so far (>= 1)
+     */
+    public int getRetryDays(final int attempts) {
+        long retryDays = (long) initialRetryDays << Math.min(attempts - 1, Integer.SIZE - 2);
+        return (int) Math.min(retryDays, MAX_RETRY_DAYS);
+    }
+}
@@ -0,0 +1,46 @@
+package wikipedia.database;
+
+import java.util.Set;
+
+import org.joda.time.DateTime;
+
+import com.google.common.collect.Sets;
+
+/**
+ * In-memory view of all (page, frame) and page-level fetch failures whose
+ * retry date has not been reached yet
+ */
+public final class Tombstones {
+
+    /** revision_date value used for failures that affect the whole page */
+    public static final String PAGE_LEVEL_DATE = "1970-01-01 00:00:00";
+
+    private final Set<Integer> blockedPages = Sets.newHashSet();
+    private final Set<String> blockedFrames = Sets.newHashSet();
+
+    void add(final int pageId, final String revisionDate) {
+        if (PAGE_LEVEL_DATE.equals(revisionDate)) {
+            blockedPages.add(pageId);
+        } else {
+            blockedFrames.add(frameKey(pageId, revisionDate));
+        }
+    }
+
+    public boolean isPageBlocked(final int pageId) {
+        return blockedPages.contains(pageId);
+    }
+
+    public boolean isFrameBlocked(final int pageId, final DateTime revisionDate) {
+        return blockedPages.contains(pageId)
+                || blockedFrames.contains(frameKey(pageId,
+                        revisionDate.toString(DBUtil.MYSQL_DATETIME_FORMATTER)));
+    }
+
+    public int size() {
+        return blockedPages.size() + blockedFrames.size();
+    }
+
+    private static String frameKey(final int pageId, final String revisionDate) {
+        return pageId + "@" + revisionDate;
+    }
+}
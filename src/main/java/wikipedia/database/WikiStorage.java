@@ -0,0 +1,133 @@
+package wikipedia.database;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import org.joda.time.DateTime;
+
+import wikipedia.analysis.useractivity.Revisions;
+import wikipedia.network.GraphEdge;
+import wikipedia.network.PageLinkInfo;
+import wikipedia.xml.Rev;
+
+/**
+ * Persistent store of everything the fetchers download and the builders
+ * read. Obtain the configured implementation with Storages.open().
+ */
+public interface WikiStorage {
+
+    // page metadata
+
+    /**
+     * Bulk insert of page entries, existing pages are left untouched
+     *
+     * @param creationDates key: page id, value: date of the first revision
+     */
+    void storePageEntries(Map<Integer, String> pageTitles, Map<Integer, DateTime> creationDates);
+
+    /**
+     * @return creation date as stored or "" if the page is unknown
+     */
+    String getFirstRevisionDate(int pageId);
+
+    /**
+     * @return key: page id, value: date of the first revision, only for known pages
+     */
+    Map<Integer, DateTime> getCreationDates(Collection<Integer> pageIds);
+
+    /**
+     * Downloads the id if the page is unknown
+     */
+    int getPageIDFromCache(String pageTitle, String lang);
+
+    // link snapshots
+
+    void storePageLinkInfo(PageLinkInfo pliToBeStored, DateTime firstRevisionDate);
+
+    /**
+     * Stores all link infos in a single transaction
+     *
+     * @param firstRevisionDates key: page id, value: date of the first revision
+     */
+    void storePageLinkInfos(List<PageLinkInfo> linkInfos, Map<Integer, DateTime> firstRevisionDates);
+
+    boolean localDataForRecordUnavailable(int pageId, DateTime revisionDate);
+
+    Collection<String> getAllLinksForRevision(int pageId, String dateTime);
+
+    void streamLinksForFrames(Collection<Integer> pageIds, List<DateTime> revisionDates, LinkRowHandler handler);
+
+    void streamFrameCoverage(Collection<Integer> pageIds, List<DateTime> revisionDates,
+            FrameCoverageHandler handler);
+
+    // category membership
+
+    /**
+     * Creates the category if necessary, existing memberships are left
+     * untouched. The pages have to be stored already (see storePageEntries).
+     */
+    void storeCategoryMembers(String categoryName, Collection<Integer> pageIds);
+
+    void removeCategoryMembers(String categoryName, Collection<Integer> pageIds);
+
+    /**
+     * @return start of the last complete member download or null if the
+     *         category is unknown or was never synchronized
+     */
+    DateTime getCategoryLastSync(String categoryName);
+
+    /**
+     * Creates the category if necessary
+     */
+    void setCategoryLastSync(String categoryName, DateTime lastSync);
+
+    Map<Integer, String> getCategoryMembersByCategoryName(String categoryName);
+
+    void streamCategoryMembers(String categoryName, CategoryMemberHandler handler);
+
+    // usertalk cache
+
+    boolean userConversationInCache(GraphEdge userCommunicationPair);
+
+    int getUserConversationFromCache(GraphEdge userCommunicationPair);
+
+    void cacheUserConversation(GraphEdge userCommunicationPair, int numberOfRevisions);
+
+    // redirects and failed fetches
+
+    Map<String, String> getCachedRedirectTargets(Collection<String> titles, DateTime oldestValidEntry);
+
+    void cacheRedirectTargets(Map<String, String> redirectTargets);
+
+    /**
+     * @param revisionDate null for a failure that affects the whole page
+     */
+    void storeTombstone(int pageId, DateTime revisionDate, TombstoneReason reason);
+
+    Tombstones getActiveTombstones();
+
+    // revision histories and user contributions
+
+    CachedRevisionRange getCachedRevisionRange(String pageTitle);
+
+    void storeRevisions(String pageTitle, List<Rev> revisions);
+
+    void loadCachedRevisions(String pageTitle, int maxRevisions, Revisions revisions);
+
+    /**
+     * @return null if the contributions of the user were never stored
+     */
+    ContribSyncState getContribSyncState(String userName);
+
+    /**
+     * @param pageTitlesByRevisionId key: revision id, value: title of the edited page
+     * @param maxContributions number of the newest contributions kept per user
+     */
+    void storeUserContributions(String userName, Map<Integer, String> pageTitlesByRevisionId,
+            DateTime lastTimestamp, int lastRevisionId, int maxContributions);
+
+    void touchUserContribSync(String userName);
+
+    List<String> getMostEditedPages(String userName, int numberOfPages);
+}
@@ -2,54 +2,72 @@ package wikipedia.http;
 
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.impl.conn.tsccm.ThreadSafeClientConnManager;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.joda.time.format.ISODateTimeFormat;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import util.HTTPUtil;
 import wikipedia.analysis.pagenetwork.CategoryLists;
-import wikipedia.database.DBUtil;
+import wikipedia.database.CategoryMemberHandler;
+import wikipedia.database.Storages;
+import wikipedia.database.WikiStorage;
 import wikipedia.xml.Api;
 import wikipedia.xml.CategoryMember;
+import wikipedia.xml.CategoryMembers;
 import wikipedia.xml.XMLTransformer;
 
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 
 /**
- * Download a list of all the pages that belong to a given list of categories
+ * Download a list of all the pages that belong to a given list of categories.
+ * The members are stored, categories synchronized longer than maxAgeHours ago
+ * are refreshed incrementally.
  */
 public final class CategoryMemberFetcher {
 
     private static final Logger LOG = LoggerFactory.getLogger(CategoryMemberFetcher.class.getName());
 
-    private final DefaultHttpClient httpclient = new DefaultHttpClient();
-    private final WikiAPIClient wikiAPIClient = new WikiAPIClient(httpclient);
+    private static final int DEFAULT_MAX_AGE_HOURS = 7 * 24;
+    /** members added shortly before the last sync may not have been listed yet */
+    private static final int SYNC_OVERLAP_MINUTES = 60;
+    /** shared by the member download and the creation date downloads */
+    private static final int MAX_REQUESTS_PER_SECOND = 5;
+
+    private final DefaultHttpClient httpclient = new DefaultHttpClient(new ThreadSafeClientConnManager());
+    private final WikiAPIClient wikiAPIClient = new WikiAPIClient(httpclient, true, MAX_REQUESTS_PER_SECOND);
 
     private final List<String> categoryNames;
     private final String lang;
-    private final DBUtil database;
+    private final WikiStorage database;
+    private final int maxAgeHours;
+    private final CategoryMembershipWriter membershipWriter;
 
     public CategoryMemberFetcher(final List<String> categoryNames, final String lang,
-            final DBUtil database) {
+            final WikiStorage database, final int maxAgeHours) {
         this.categoryNames = categoryNames;
         this.lang = lang;
         this.database = database;
+        this.maxAgeHours = maxAgeHours;
+        this.membershipWriter = new CategoryMembershipWriter(database, lang, wikiAPIClient);
+    }
+
+    public CategoryMemberFetcher(final List<String> categoryNames, final String lang,
+            final WikiStorage database) {
+        this(categoryNames, lang, database, DEFAULT_MAX_AGE_HOURS);
     }
 
     public static void main(final String[] args) {
         // manually refresh all category members
         CategoryMemberFetcher cmf = new CategoryMemberFetcher(CategoryLists.BORN_IN_THE_80IES, "en",
-                new DBUtil());
-        cmf.updateAllCategoryMembersInDB();
-    }
-
-    private void updateAllCategoryMembersInDB() {
-        for (String categoryName : categoryNames) {
-            final Map<Integer, String> allPageTitles = downloadCategoryMembers(categoryName);
-            database.storeAllCategoryMemberPages(categoryName, lang, allPageTitles);
-        }
-
+                Storages.open(), 0);
+        cmf.getAllPagesInAllCategories();
     }
 
     public Map<Integer, String> getAllPagesInAllCategories() {
@@ -60,46 +78,122 @@ public final class CategoryMemberFetcher {
         return allPageIDsAndTitles;
     }
 
+    /**
+     * Members as stored, refreshed first if the last synchronization is older
+     * than maxAgeHours. The last synchronization is only advanced if all
+     * members were stored, skipped members are downloaded again next time.
+     */
     private Map<Integer, String> getAllPagesInSingleCategory(final String categoryName) {
-        if (database.categoryMembersInDatabase(categoryName)) {
-            return database.getCategoryMembersByCategoryName(categoryName);
-        } else {
-            final Map<Integer, String> allPageTitles = downloadCategoryMembers(categoryName);
-            database.storeAllCategoryMemberPages(categoryName, lang, allPageTitles);
-            return allPageTitles;
+        final DateTime lastSync = database.getCategoryLastSync(categoryName);
+        final DateTime syncStart = new DateTime();
+        if (lastSync == null) {
+            if (synchronizeAllMembers(categoryName)) {
+                database.setCategoryLastSync(categoryName, syncStart);
+            }
+        } else if (lastSync.isBefore(syncStart.minusHours(maxAgeHours))) {
+            if (synchronizeChangedMembers(categoryName, lastSync)) {
+                database.setCategoryLastSync(categoryName, syncStart);
+            }
         }
+        return database.getCategoryMembersByCategoryName(categoryName);
     }
 
-    private Map<Integer, String> downloadCategoryMembers(final String categoryName) {
+    /**
+     * Full download, also for categories stored before the last sync was
+     * recorded
+     *
+     * @return false if members were skipped
+     */
+    private boolean synchronizeAllMembers(final String categoryName) {
+        final Map<Integer, String> members = downloadCategoryMembers(categoryName, "ids%7Ctitle", "");
+        final boolean complete = membershipWriter.store(categoryName, members);
+        removeMissingMembers(categoryName, members.keySet());
+        return complete;
+    }
+
+    /**
+     * Additions: members added since the last sync (sorted by the time they
+     * were added). Removals: the member ids (no titles) compared to the stored
+     * members.
+     *
+     * @return false if added members were skipped
+     */
+    private boolean synchronizeChangedMembers(final String categoryName,
+                                           final DateTime lastSync) {
+        final String start = lastSync.minusMinutes(SYNC_OVERLAP_MINUTES).withZone(DateTimeZone.UTC)
+                .toString(ISODateTimeFormat.dateTimeNoMillis());
+        final Map<Integer, String> addedMembers = downloadCategoryMembers(categoryName, "ids%7Ctitle",
+                "&cmsort=timestamp&cmdir=asc&cmstart=" + HTTPUtil.urlEncode(start));
+        final boolean complete = membershipWriter.store(categoryName, addedMembers);
+        removeMissingMembers(categoryName,
+                downloadCategoryMembers(categoryName, "ids", "").keySet());
+        return complete;
+    }
+
+    private void removeMissingMembers(final String categoryName,
+                                      final Set<Integer> currentMembers) {
+        if (currentMembers.isEmpty()) {
+            LOG.warn("No members downloaded for " + categoryName + ", stored members are kept");
+            return;
+        }
+        final List<Integer> removedMembers = Lists.newArrayList();
+        database.streamCategoryMembers(categoryName, new CategoryMemberHandler() {
+            @Override
+            public void categoryMember(final int pageId,
+                                       final String pageTitle) {
+                if (!currentMembers.contains(pageId)) {
+                    removedMembers.add(pageId);
+                }
+            }
+        });
+        if (!removedMembers.isEmpty()) {
+            LOG.info(categoryName + ": " + removedMembers.size() + " members removed");
+            database.removeCategoryMembers(categoryName, removedMembers);
+        }
+    }
+
+    /**
+     * @return key: page id, value: title (null if not requested)
+     */
+    private Map<Integer, String> downloadCategoryMembers(final String categoryName,
+                                                         final String properties,
+                                                         final String sortParameters) {
         Map<Integer, String> allPages = Maps.newLinkedHashMap();
         Api revisionResult = null;
         String queryContinue = "";
         while (true) {
-            final String url = getURL(categoryName, queryContinue);
+            final String url = getURL(categoryName, properties, sortParameters + queryContinue);
             LOG.info("Fetching URL: " + url);
             final String xmlResponse = wikiAPIClient.executeHTTPRequest(url);
             revisionResult = XMLTransformer.getRevisionFromXML(xmlResponse);
-            for (CategoryMember member : revisionResult.getQuery().getCategorymembers()) {
-                allPages.put(member.getPageid(), member.getTitle());
+            final List<CategoryMember> members = revisionResult.getQuery().getCategorymembers();
+            if (members != null) {
+                for (CategoryMember member : members) {
+                    allPages.put(member.getPageid(), member.getTitle());
+                }
             }
             if (revisionResult.getQueryContinue() == null) {
                 break;
+            }
+            final CategoryMembers continuation = revisionResult.getQueryContinue().getCategorymembers();
+            if (continuation.getCmcontinue() != null) {
+                queryContinue = "&cmcontinue=" + HTTPUtil.urlEncode(continuation.getCmcontinue());
             } else {
-                queryContinue = revisionResult.getQueryContinue().getCategorymembers()
-                        .getCmcontinue();
+                // older API versions continue a timestamp sort with a new start
+                queryContinue = "&cmstart=" + HTTPUtil.urlEncode(continuation.getCmstart());
             }
         }
         return allPages;
     }
 
     private String getURL(final String categoryName,
-                          final String queryContinue) {
+                          final String properties,
+                          final String additionalParameters) {
         final String encodedCategoryName = HTTPUtil.urlEncode(categoryName);
-        final String encodedqueryContinue = HTTPUtil.urlEncode(queryContinue);
         return "http://"
                 + lang
                 + ".wikipedia.org/w/api.php?format=xml&action=query&cmlimit=500&list=categorymembers&cmtitle="
-                + encodedCategoryName + "&cmnamespace=0&cmcontinue=" + encodedqueryContinue;
+                + encodedCategoryName + "&cmnamespace=0&cmprop=" + properties + additionalParameters;
     }
 
 }
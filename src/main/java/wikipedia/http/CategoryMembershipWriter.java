@@ -0,0 +1,114 @@
+package wikipedia.http;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.joda.time.DateTime;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import wikipedia.database.WikiStorage;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * Stores the members of a category. One query finds the members that are
+ * not stored as pages yet. Their creation dates are downloaded concurrently
+ * through the given (shared, rate limited) client. Page entries and
+ * memberships are written with batched, idempotent inserts.
+ */
+public final class CategoryMembershipWriter {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CategoryMembershipWriter.class.getName());
+
+    private static final int NUM_THREADS = 4;
+    /** new pages per write, limits the work lost if the download is aborted */
+    private static final int PAGES_PER_BATCH = 500;
+
+    private final WikiStorage database;
+    private final String lang;
+    private final WikiAPIClient wikiAPIClient;
+
+    public CategoryMembershipWriter(final WikiStorage database, final String lang,
+            final WikiAPIClient wikiAPIClient) {
+        this.database = database;
+        this.lang = lang;
+        this.wikiAPIClient = wikiAPIClient;
+    }
+
+    /**
+     * Members whose creation date can not be downloaded are skipped
+     *
+     * @param members key: page id, value: page title
+     * @return false if members were skipped, they are only stored by a later
+     *         call
+     */
+    public boolean store(final String categoryName,
+                      final Map<Integer, String> members) {
+        final Map<Integer, DateTime> storedPages = database.getCreationDates(members.keySet());
+        database.storeCategoryMembers(categoryName, storedPages.keySet());
+
+        List<Integer> newPageIds = Lists.newArrayList();
+        for (Integer pageId : members.keySet()) {
+            if (!storedPages.containsKey(pageId)) {
+                newPageIds.add(pageId);
+            }
+        }
+        LOG.info(categoryName + ": " + members.size() + " members, " + newPageIds.size() + " new pages");
+
+        final ExecutorService threadPool = Executors.newFixedThreadPool(NUM_THREADS);
+        try {
+            int skippedPages = 0;
+            for (List<Integer> batch : Lists.partition(newPageIds, PAGES_PER_BATCH)) {
+                final Map<Integer, DateTime> creationDates = downloadCreationDates(threadPool, batch, members);
+                database.storePageEntries(members, creationDates);
+                database.storeCategoryMembers(categoryName, creationDates.keySet());
+                skippedPages += batch.size() - creationDates.size();
+            }
+            if (skippedPages > 0) {
+                LOG.warn(categoryName + ": " + skippedPages + " new pages skipped");
+            }
+            return skippedPages == 0;
+        } catch (InterruptedException e) {
+            LOG.error("Interrupted while storing members of: " + categoryName, e);
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            threadPool.shutdownNow();
+        }
+    }
+
+    private Map<Integer, DateTime> downloadCreationDates(final ExecutorService threadPool,
+                                                         final List<Integer> pageIds,
+                                                         final Map<Integer, String> pageTitles)
+        throws InterruptedException {
+        Map<Integer, Future<DateTime>> pendingDates = Maps.newLinkedHashMap();
+        for (Integer pageId : pageIds) {
+            final String pageTitle = pageTitles.get(pageId);
+            pendingDates.put(pageId, threadPool.submit(new Callable<DateTime>() {
+                @Override
+                public DateTime call() {
+                    return new FirstRevisionFetcher(pageTitle, lang, wikiAPIClient).getFirstRevisionDate();
+                }
+            }));
+        }
+        Map<Integer, DateTime> creationDates = Maps.newHashMapWithExpectedSize(pageIds.size());
+        for (Entry<Integer, Future<DateTime>> entry : pendingDates.entrySet()) {
+            try {
+                creationDates.put(entry.getKey(), entry.getValue().get());
+            } catch (ExecutionException e) {
+                LOG.error("IGNORING ARTICLE: " + pageTitles.get(entry.getKey())
+                        + " (first revision unavailable)", e.getCause());
+            }
+        }
+        return creationDates;
+    }
+
+}
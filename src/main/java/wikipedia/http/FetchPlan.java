@@ -0,0 +1,146 @@
+package wikipedia.http;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+
+import org.joda.time.DateTime;
+
+import wikipedia.database.FrameCoverageHandler;
+import wikipedia.database.Tombstones;
+import wikipedia.database.WikiStorage;
+
+import com.google.common.primitives.Ints;
+
+/**
+ * Download plan for a set of pages and frames, computed before any request
+ * is sent. A (page, frame) pair needs no fetch if links are already stored,
+ * it is tombstoned or it lies within the first week after the page's
+ * creation. The state is kept in one bitmap with a bit per pair.
+ */
+public final class FetchPlan {
+
+    private final int[] pageIds;
+    private final List<DateTime> frames;
+    private final Map<Integer, DateTime> creationDates;
+    /** bit (pageIndex * frames + frameIndex) set when nothing has to be fetched */
+    private final BitSet done;
+
+    private FetchPlan(final int[] pageIds,
+                      final List<DateTime> frames,
+                      final Map<Integer, DateTime> creationDates) {
+        this.pageIds = pageIds;
+        this.frames = frames;
+        this.creationDates = creationDates;
+        this.done = new BitSet(pageIds.length * frames.size());
+    }
+
+    /**
+     * Loads coverage and creation dates of all pages in bulk
+     */
+    public static FetchPlan create(final WikiStorage database,
+                                   final Map<Integer, String> pages,
+                                   final List<DateTime> frames,
+                                   final Tombstones tombstones) {
+        final int[] pageIds = Ints.toArray(pages.keySet());
+        Arrays.sort(pageIds);
+        final FetchPlan plan = new FetchPlan(pageIds, frames, database.getCreationDates(pages.keySet()));
+        database.streamFrameCoverage(pages.keySet(), frames, new FrameCoverageHandler() {
+            @Override
+            public void frameCovered(final int frameIndex, final int pageId) {
+                plan.markDone(pageId, frameIndex);
+            }
+        });
+        for (int pageIndex = 0; pageIndex < pageIds.length; pageIndex++) {
+            final DateTime creationDate = plan.creationDates.get(pageIds[pageIndex]);
+            for (int frameIndex = 0; frameIndex < frames.size(); frameIndex++) {
+                final DateTime frame = frames.get(frameIndex);
+                if (tombstones.isFrameBlocked(pageIds[pageIndex], frame)
+                        || (creationDate != null && !isStable(frame, creationDate))) {
+                    plan.done.set(plan.bitIndex(pageIndex, frameIndex));
+                }
+            }
+        }
+        return plan;
+    }
+
+    /**
+     * The first week of an article is ignored, it is not stable yet
+     */
+    static boolean isStable(final DateTime frame, final DateTime creationDate) {
+        return frame.isAfter(creationDate.plusWeeks(1));
+    }
+
+    private void markDone(final int pageId, final int frameIndex) {
+        final int pageIndex = Arrays.binarySearch(pageIds, pageId);
+        if (pageIndex >= 0) {
+            done.set(bitIndex(pageIndex, frameIndex));
+        }
+    }
+
+    private int bitIndex(final int pageIndex, final int frameIndex) {
+        return pageIndex * frames.size() + frameIndex;
+    }
+
+    public boolean isFetchRequired(final int pageId, final int frameIndex) {
+        final int pageIndex = Arrays.binarySearch(pageIds, pageId);
+        return pageIndex >= 0 && !done.get(bitIndex(pageIndex, frameIndex));
+    }
+
+    public boolean hasMissingFrames(final int pageId) {
+        final int pageIndex = Arrays.binarySearch(pageIds, pageId);
+        if (pageIndex < 0) {
+            return false;
+        }
+        final int firstBit = bitIndex(pageIndex, 0);
+        final int nextClear = done.nextClearBit(firstBit);
+        return nextClear < firstBit + frames.size();
+    }
+
+    /**
+     * @return stored creation date or null if it has to be downloaded first
+     */
+    public DateTime getCreationDate(final int pageId) {
+        return creationDates.get(pageId);
+    }
+
+    public List<DateTime> getFrames() {
+        return frames;
+    }
+
+    /**
+     * @return upper bound of link requests, frames within the first week of
+     *         pages without stored creation date are counted as well
+     */
+    public int getNumberOfFetches() {
+        return pageIds.length * frames.size() - done.cardinality();
+    }
+
+    public int getNumberOfPages() {
+        int numberOfPages = 0;
+        for (int pageId : pageIds) {
+            if (hasMissingFrames(pageId)) {
+                numberOfPages++;
+            }
+        }
+        return numberOfPages;
+    }
+
+    public int getNumberOfUnknownCreationDates() {
+        int unknown = 0;
+        for (int pageId : pageIds) {
+            if (!creationDates.containsKey(pageId) && hasMissingFrames(pageId)) {
+                unknown++;
+            }
+        }
+        return unknown;
+    }
+
+    @Override
+    public String toString() {
+        return getNumberOfFetches() + " link requests for " + getNumberOfPages() + " of "
+                + pageIds.length + " pages and " + frames.size() + " frames ("
+                + getNumberOfUnknownCreationDates() + " creation dates to download)";
+    }
+}
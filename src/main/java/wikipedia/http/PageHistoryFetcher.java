@@ -7,7 +7,6 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 
-import org.apache.commons.lang.StringUtils;
 import org.apache.http.impl.client.DefaultHttpClient;
 import org.apache.http.impl.conn.tsccm.ThreadSafeClientConnManager;
 import org.joda.time.DateMidnight;
@@ -17,7 +16,12 @@ import org.slf4j.LoggerFactory;
 
 import util.DateListGenerator;
 import wikipedia.analysis.pagenetwork.CategoryLists;
-import wikipedia.database.DBUtil;
+import wikipedia.database.LinkWriteQueue;
+import wikipedia.database.SharedDataSource;
+import wikipedia.database.Storages;
+import wikipedia.database.TombstoneReason;
+import wikipedia.database.Tombstones;
+import wikipedia.database.WikiStorage;
 import wikipedia.network.PageLinkInfo;
 
 /**
@@ -28,11 +32,15 @@ public final class PageHistoryFetcher {
     //private static final int THREAD_SLEEP_MSEC = 1200;
     private static final int THREADPOOL_TERMINATION_WAIT_MINUTES = 1;
     private static final int NUM_THREADS = 8;
+    private static final int NUM_WRITER_THREADS = 2;
+    /** link infos waiting to be stored, fetch workers block if it is full */
+    private static final int WRITE_QUEUE_CAPACITY = 1000;
+    private static final int WRITE_BATCH_SIZE = 200;
 
     private static final Logger LOG = LoggerFactory.getLogger(PageHistoryFetcher.class.getName());
 
     private final List<DateTime> allRelevantTimeStamps;
-    private final DBUtil dataBaseUtil = new DBUtil();
+    private final WikiStorage dataBaseUtil = Storages.open();
 
     private final DefaultHttpClient httpClient = new DefaultHttpClient(
             new ThreadSafeClientConnManager());
@@ -40,11 +48,14 @@ public final class PageHistoryFetcher {
     private final ExecutorService threadPool = Executors.newFixedThreadPool(NUM_THREADS);
     private final Map<Integer, String> allPagesInAllCategories;
     private final String lang;
+    private final RedirectResolver redirectResolver;
+    private FetchPlan fetchPlan;
+    private LinkWriteQueue linkWriteQueue;
 
     public PageHistoryFetcher(final List<String> categories,
                               final String lang,
                               final List<DateTime> allRelevantTimeStamps) {
-        this(new CategoryMemberFetcher(categories, lang, new DBUtil()).getAllPagesInAllCategories(),
+        this(new CategoryMemberFetcher(categories, lang, Storages.open()).getAllPagesInAllCategories(),
                 lang, allRelevantTimeStamps);
     }
 
@@ -54,63 +65,62 @@ public final class PageHistoryFetcher {
         this.lang = lang;
         this.allRelevantTimeStamps = allRelevantTimeStamps;
         allPagesInAllCategories = pages;
+        redirectResolver = new RedirectResolver(lang, new WikiAPIClient(httpClient), dataBaseUtil);
     }
 
     protected void fetchAllRecords(final int pageId,
                                    final String pageTitle) {
         // get oldest revision of article, if it didnt exist yet, do not execute
         // http request!
-        String storedCreationDate = dataBaseUtil.getFirstRevisionDate(pageId);
-        DateTime firstRevisionDate;
-        if (StringUtils.isEmpty(storedCreationDate)) {
+        DateTime firstRevisionDate = fetchPlan.getCreationDate(pageId);
+        if (firstRevisionDate == null) {
             final WikiAPIClient wikiAPIClient = new WikiAPIClient(httpClient);
             try {
                 firstRevisionDate = new FirstRevisionFetcher(pageTitle, lang, wikiAPIClient)
                         .getFirstRevisionDate();
             } catch (Exception e) {
                 LOG.error("Error while fetching first revision date for: " + pageTitle);
+                dataBaseUtil.storeTombstone(pageId, null, TombstoneReason.FIRST_REVISION_UNAVAILABLE);
                 return;
             }
-        } else {
-            firstRevisionDate = DBUtil.MYSQL_DATETIME_FORMATTER.parseDateTime(StringUtils.removeEnd(
-                    storedCreationDate, ".0"));
         }
 
         final WikiAPIClient wikiAPIClient = new WikiAPIClient(httpClient);
-        for (DateTime dateToFetch : allRelevantTimeStamps) {
-            downloadLinkInfoIfNecessary(pageId, pageTitle, firstRevisionDate, wikiAPIClient,
-                    dateToFetch);
+        for (int frameIndex = 0; frameIndex < allRelevantTimeStamps.size(); frameIndex++) {
+            if (Thread.currentThread().isInterrupted()) {
+                return;
+            }
+            final DateTime dateToFetch = allRelevantTimeStamps.get(frameIndex);
+            if (fetchPlan.isFetchRequired(pageId, frameIndex)
+                    && FetchPlan.isStable(dateToFetch, firstRevisionDate)) {
+                downloadLinkInfo(pageId, pageTitle, firstRevisionDate, wikiAPIClient, dateToFetch);
+            }
         }
     }
 
-    private void downloadLinkInfoIfNecessary(final int pageId,
-                                             final String pageTitle,
-                                             final DateTime firstRevisionDate,
-                                             final WikiAPIClient wikiAPIClient,
-                                             final DateTime dateToFetch) {
-        if (dateToFetch.isAfter(firstRevisionDate.plusWeeks(1))) { // ignore
-                                                                   // first week
-                                                                   // of
-                                                                   // article,
-                                                                   // not stable
-                                                                   // yet
-            if (dataBaseUtil.localDataForRecordUnavailable(pageId, dateToFetch)) {
-                /*try {
-                    Thread.sleep(THREAD_SLEEP_MSEC); // with a poolsize of 8,
-                                                     // this should lead to ~7
-                                                     // request pro second
-                } catch (InterruptedException e) {
-                    e.printStackTrace();
-                }*/
-                PageLinkInfoFetcher plif = new PageLinkInfoFetcher(pageTitle, lang, dateToFetch, wikiAPIClient);
-                PageLinkInfo linkInformation;
-                try {
-                    linkInformation = plif.getLinkInformation();
-                    dataBaseUtil.storePageLinkInfo(linkInformation, firstRevisionDate);
-                } catch (Exception e) {
-                    e.printStackTrace();
-                }
+    private void downloadLinkInfo(final int pageId,
+                                  final String pageTitle,
+                                  final DateTime firstRevisionDate,
+                                  final WikiAPIClient wikiAPIClient,
+                                  final DateTime dateToFetch) {
+        PageLinkInfoFetcher plif = new PageLinkInfoFetcher(pageTitle, lang, dateToFetch, wikiAPIClient);
+        PageLinkInfo linkInformation;
+        try {
+            linkInformation = plif.getLinkInformation();
+            if (linkInformation.getPageID() == 0) {
+                dataBaseUtil.storeTombstone(pageId, dateToFetch, TombstoneReason.PAGE_MISSING);
+            } else if (linkInformation.getFilteredLinks().isEmpty()) {
+                dataBaseUtil.storeTombstone(pageId, dateToFetch, TombstoneReason.EMPTY_LINK_INFO);
+            } else {
+                linkInformation = redirectResolver.resolveLinks(linkInformation);
+                linkWriteQueue.put(linkInformation, firstRevisionDate);
             }
+        } catch (InterruptedException e) {
+            // thread pool shut down while waiting for the write queue, stop this task
+            LOG.warn("Interrupted while queueing the links of " + pageTitle + " at " + dateToFetch);
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            e.printStackTrace();
         }
     }
 
@@ -136,15 +146,28 @@ public final class PageHistoryFetcher {
     }
 
     public void fetchCompleteCategories() {
-        LOG.info("Total Number of Tasks: " + allPagesInAllCategories.size());
+        final Tombstones tombstones = dataBaseUtil.getActiveTombstones();
+        LOG.info("Active Tombstones: " + tombstones.size());
+        fetchPlan = FetchPlan.create(dataBaseUtil, allPagesInAllCategories, allRelevantTimeStamps,
+                tombstones);
+        LOG.info("Fetch Plan: " + fetchPlan);
+        linkWriteQueue = new LinkWriteQueue(dataBaseUtil, WRITE_QUEUE_CAPACITY, NUM_WRITER_THREADS,
+                WRITE_BATCH_SIZE);
         int counter = 1;
         try {
             for (final Entry<Integer, String> pageEntry : allPagesInAllCategories.entrySet()) {
+                if (!fetchPlan.hasMissingFrames(pageEntry.getKey())) {
+                    continue;
+                }
                 threadPool.execute(new ExecutorTask(this, pageEntry, counter++));
             }
         } finally {
             shutdownThreadPool();
+            linkWriteQueue.close();
+            LOG.info("Link Writes: " + linkWriteQueue);
             httpClient.getConnectionManager().shutdown();
+            LOG.info("Connection Pool: " + SharedDataSource.get().getPoolStatistics());
+            LOG.info("Lookup Caches: " + Storages.getCacheStatistics());
         }
     }
 
@@ -0,0 +1,121 @@
+package wikipedia.http;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.lang.StringUtils;
+import org.joda.time.DateTime;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import util.HTTPUtil;
+import wikipedia.database.WikiStorage;
+import wikipedia.network.PageLinkInfo;
+import wikipedia.xml.Api;
+import wikipedia.xml.Redirect;
+import wikipedia.xml.XMLTransformer;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+/**
+ * Resolves link targets to their canonical page titles (follows redirects and
+ * title normalization). Lookups are batched and cached in the database for
+ * REDIRECT_TTL_DAYS, titles that are no redirect are cached as mapping to
+ * themselves.
+ */
+public final class RedirectResolver {
+
+    private static final Logger LOG = LoggerFactory.getLogger(RedirectResolver.class.getName());
+
+    /** API limit for the titles parameter of non-bot users */
+    private static final int TITLES_PER_REQUEST = 50;
+    private static final int REDIRECT_TTL_DAYS = 30;
+
+    private final String lang;
+    private final WikiAPIClient wikiAPIClient;
+    private final WikiStorage database;
+
+    public RedirectResolver(final String lang, final WikiAPIClient wikiAPIClient,
+            final WikiStorage database) {
+        this.lang = lang;
+        this.wikiAPIClient = wikiAPIClient;
+        this.database = database;
+    }
+
+    /**
+     * @return copy of the given link info, all links replaced by their canonical title
+     */
+    public PageLinkInfo resolveLinks(final PageLinkInfo pageLinkInfo) {
+        Map<String, String> canonicalTitles = resolve(pageLinkInfo.getFilteredLinks());
+        List<String> resolvedLinks = Lists.newArrayList();
+        for (String link : pageLinkInfo.getLinks()) {
+            final String canonicalTitle = canonicalTitles.get(link);
+            resolvedLinks.add(canonicalTitle == null ? link : canonicalTitle);
+        }
+        return new PageLinkInfo(pageLinkInfo.getPageTitle(), pageLinkInfo.getTimeStamp(),
+                resolvedLinks, pageLinkInfo.getPageID());
+    }
+
+    /**
+     * @return key: title as given, value: canonical title
+     */
+    public Map<String, String> resolve(final Collection<String> titles) {
+        Set<String> uniqueTitles = Sets.newLinkedHashSet(titles);
+        final DateTime oldestValidEntry = new DateTime().minusDays(REDIRECT_TTL_DAYS);
+        Map<String, String> canonicalTitles = database.getCachedRedirectTargets(uniqueTitles,
+                oldestValidEntry);
+        List<String> unresolvedTitles = Lists.newArrayList(Sets.difference(uniqueTitles,
+                canonicalTitles.keySet()));
+        for (List<String> batch : Lists.partition(unresolvedTitles, TITLES_PER_REQUEST)) {
+            try {
+                Map<String, String> batchResult = downloadCanonicalTitles(batch);
+                database.cacheRedirectTargets(batchResult);
+                canonicalTitles.putAll(batchResult);
+            } catch (Exception e) {
+                LOG.error("Could not resolve redirects for: " + batch, e);
+            }
+        }
+        return canonicalTitles;
+    }
+
+    private Map<String, String> downloadCanonicalTitles(final List<String> titles) {
+        final String xmlResponse = wikiAPIClient.executeHTTPRequest(getURL(titles));
+        final Api result = XMLTransformer.getRevisionFromXML(xmlResponse);
+        Map<String, String> normalized = toMap(result.getQuery().getNormalized());
+        Map<String, String> redirects = toMap(result.getQuery().getRedirects());
+        Map<String, String> canonicalTitles = Maps.newHashMap();
+        for (String title : titles) {
+            String canonicalTitle = title;
+            if (normalized.containsKey(canonicalTitle)) {
+                canonicalTitle = normalized.get(canonicalTitle);
+            }
+            if (redirects.containsKey(canonicalTitle)) {
+                canonicalTitle = redirects.get(canonicalTitle);
+            }
+            canonicalTitles.put(title, canonicalTitle);
+        }
+        return canonicalTitles;
+    }
+
+    private static Map<String, String> toMap(final List<Redirect> mappings) {
+        Map<String, String> result = Maps.newHashMap();
+        if (mappings != null) {
+            for (Redirect mapping : mappings) {
+                result.put(mapping.getFrom(), mapping.getTo());
+            }
+        }
+        return result;
+    }
+
+    private String getURL(final List<String> titles) {
+        final String encodedTitles = HTTPUtil.urlEncode(StringUtils.join(titles, "|"));
+        return "http://" + lang
+                + ".wikipedia.org/w/api.php?format=xml&action=query&redirects&titles="
+                + encodedTitles;
+    }
+
+}
@@ -1,6 +1,7 @@
 package wikipedia.http;
 
 import java.io.IOException;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.io.IOUtils;
 import org.apache.http.Header;
@@ -25,7 +26,9 @@ import org.slf4j.LoggerFactory;
 import util.Const;
 
 /**
- * Gzipped requests with a high timeout value for the wikipedia api
+ * Gzipped requests with a high timeout value for the wikipedia api. Can be
+ * shared by several threads (with a thread safe connection manager), an
+ * optional rate limit then applies to all of them.
  */
 public final class WikiAPIClient {
 
@@ -33,12 +36,19 @@ public final class WikiAPIClient {
     private static final Logger LOG = LoggerFactory.getLogger(WikiAPIClient.class.getName());
 
     private final DefaultHttpClient httpclient;
+    /** 0 if requests are not throttled */
+    private final long minRequestIntervalNanos;
+    private final Object throttleLock = new Object();
+    private long nextRequestNanos;
 
     /**
-     * Allow Users to disable gzip for small requests
+     * @param maxRequestsPerSecond 0 for no limit
      */
-    public WikiAPIClient(final DefaultHttpClient httpclient, final boolean enableGzip) {
+    public WikiAPIClient(final DefaultHttpClient httpclient, final boolean enableGzip,
+            final int maxRequestsPerSecond) {
         this.httpclient = httpclient;
+        this.minRequestIntervalNanos = maxRequestsPerSecond == 0 ? 0 : TimeUnit.SECONDS.toNanos(1)
+                / maxRequestsPerSecond;
         setHTTPClientTimeouts(httpclient);
         if (enableGzip) {
             addGzipRequestInterceptor(httpclient);
@@ -46,6 +56,13 @@ public final class WikiAPIClient {
         }
     }
 
+    /**
+     * Allow Users to disable gzip for small requests
+     */
+    public WikiAPIClient(final DefaultHttpClient httpclient, final boolean enableGzip) {
+        this(httpclient, enableGzip, 0);
+    }
+
     public WikiAPIClient(final DefaultHttpClient httpclient) {
         this(httpclient, true);
     }
@@ -56,6 +73,7 @@ public final class WikiAPIClient {
         LOG.debug("executing request " + httpget.getURI());
         BasicHttpContext context = new BasicHttpContext();
         try {
+            awaitRequestSlot();
             HttpResponse response = this.httpclient.execute(httpget, context);
             HttpEntity entity = response.getEntity();
             if (entity != null) {
@@ -63,6 +81,9 @@ public final class WikiAPIClient {
             }
             // ensure the connection gets released to the manager
             EntityUtils.consume(entity);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            LOG.error("Interrupted while waiting for the rate limit");
         } catch (Exception ex) {
             httpget.abort();
             LOG.error("HTTP Abort!", ex);
@@ -71,6 +92,24 @@ public final class WikiAPIClient {
         return "";
     }
 
+    /**
+     * Blocks until the rate limit allows the next request, slots are handed
+     * out in order of arrival
+     */
+    private void awaitRequestSlot() throws InterruptedException {
+        if (minRequestIntervalNanos == 0) {
+            return;
+        }
+        final long waitNanos;
+        synchronized (throttleLock) {
+            final long now = System.nanoTime();
+            final long slot = Math.max(now, nextRequestNanos);
+            nextRequestNanos = slot + minRequestIntervalNanos;
+            waitNanos = slot - now;
+        }
+        TimeUnit.NANOSECONDS.sleep(waitNanos);
+    }
+
     private void addGzipRequestInterceptor(final DefaultHttpClient client) {
         client.addRequestInterceptor(new HttpRequestInterceptor() {
             @Override
@@ -0,0 +1,145 @@
+package wikipedia.network;
+
+import java.util.Arrays;
+
+/**
+ * Unweighted shortest paths along the links of a graph. Each search visits
+ * every node and edge at most once, the queue is a plain int array. The
+ * bidirectional search needs the reverse adjacency of an IntGraph.
+ */
+public final class BreadthFirstSearch {
+
+    /** distance of nodes that can not be reached, sorts after all real distances */
+    public static final int UNREACHABLE = Integer.MAX_VALUE;
+
+    private BreadthFirstSearch() {
+    }
+
+    /**
+     * @return number of links on the shortest path from source, indexed by node
+     */
+    public static int[] getDistances(final LinkGraph graph,
+                                     final int source) {
+        return getDistances(graph, new int[] {source });
+    }
+
+    /**
+     * @return number of links on the shortest path from the nearest of the sources, indexed by node
+     */
+    public static int[] getDistances(final LinkGraph graph,
+                                     final int[] sources) {
+        int[] distances = new int[graph.getNumberOfNodes()];
+        Arrays.fill(distances, UNREACHABLE);
+        int[] queue = new int[distances.length];
+        int tail = 0;
+        for (int source : sources) {
+            if (distances[source] == UNREACHABLE) {
+                distances[source] = 0;
+                queue[tail++] = source;
+            }
+        }
+        for (int head = 0; head < tail; head++) {
+            final int node = queue[head];
+            final int outDegree = graph.getOutDegree(node);
+            for (int index = 0; index < outDegree; index++) {
+                final int target = graph.getOutNeighbor(node, index);
+                if (distances[target] == UNREACHABLE) {
+                    distances[target] = distances[node] + 1;
+                    queue[tail++] = target;
+                }
+            }
+        }
+        return distances;
+    }
+
+    /**
+     * Searches forward from source and backward from target, one level at a
+     * time on the side with the smaller frontier, until the searches meet
+     *
+     * @return number of links on the shortest path from source to target
+     */
+    public static int getDistance(final IntGraph graph,
+                                  final int source,
+                                  final int target) {
+        if (source == target) {
+            return 0;
+        }
+        final int numberOfNodes = graph.getNumberOfNodes();
+        int[] forwardDistances = new int[numberOfNodes];
+        int[] backwardDistances = new int[numberOfNodes];
+        Arrays.fill(forwardDistances, UNREACHABLE);
+        Arrays.fill(backwardDistances, UNREACHABLE);
+        forwardDistances[source] = 0;
+        backwardDistances[target] = 0;
+        Frontier forward = new Frontier(numberOfNodes, source);
+        Frontier backward = new Frontier(numberOfNodes, target);
+
+        while (!forward.isEmpty() && !backward.isEmpty()) {
+            final int meeting;
+            if (forward.size() <= backward.size()) {
+                meeting = expand(graph, forward, forwardDistances, backwardDistances, true);
+            } else {
+                meeting = expand(graph, backward, backwardDistances, forwardDistances, false);
+            }
+            if (meeting != UNREACHABLE) {
+                return meeting;
+            }
+        }
+        return UNREACHABLE;
+    }
+
+    /**
+     * Visits the next level of one side, following out links forward and in
+     * links backward
+     *
+     * @return shortest path length through a node already seen by the other side or UNREACHABLE
+     */
+    private static int expand(final IntGraph graph,
+                              final Frontier frontier,
+                              final int[] distances,
+                              final int[] otherDistances,
+                              final boolean forward) {
+        int shortest = UNREACHABLE;
+        final int levelEnd = frontier.tail;
+        for (; frontier.head < levelEnd; frontier.head++) {
+            final int node = frontier.queue[frontier.head];
+            final int firstEdge = forward ? graph.getFirstOutEdge(node) : graph.getFirstInEdge(node);
+            final int lastEdge = firstEdge + (forward ? graph.getOutDegree(node) : graph.getInDegree(node));
+            for (int edge = firstEdge; edge < lastEdge; edge++) {
+                final int neighbor = forward ? graph.getTarget(edge) : graph.getSource(edge);
+                if (distances[neighbor] != UNREACHABLE) {
+                    continue;
+                }
+                distances[neighbor] = distances[node] + 1;
+                if (otherDistances[neighbor] != UNREACHABLE) {
+                    shortest = Math.min(shortest, distances[neighbor] + otherDistances[neighbor]);
+                }
+                frontier.queue[frontier.tail++] = neighbor;
+            }
+        }
+        return shortest;
+    }
+
+    /**
+     * Queue of one side of a bidirectional search, the nodes from head to
+     * tail are the current level
+     */
+    private static final class Frontier {
+        private final int[] queue;
+        private int head;
+        private int tail;
+
+        private Frontier(final int numberOfNodes, final int start) {
+            queue = new int[numberOfNodes];
+            queue[tail++] = start;
+        }
+
+        private boolean isEmpty() {
+            return head == tail;
+        }
+
+        private int size() {
+            return tail - head;
+        }
+    }
+}
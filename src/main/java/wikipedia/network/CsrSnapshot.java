@@ -0,0 +1,100 @@
+package wikipedia.network;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel.MapMode;
+
+/**
+ * Link graph of a single frame in compressed sparse row layout, read through
+ * a memory mapped file. The outgoing links of node n are the targets at the
+ * positions offset(n) to offset(n + 1) - 1.
+ *
+ * File layout (big endian ints): magic, number of nodes, number of edges,
+ * offsets (nodes + 1), targets (edges)
+ */
+public final class CsrSnapshot {
+
+    private static final int MAGIC = 0x43535231; // "CSR1"
+    private static final int HEADER_INTS = 3;
+    private static final int WRITE_BUFFER_SIZE = 1 << 16;
+
+    private final IntBuffer data;
+    private final int numberOfNodes;
+    private final int numberOfEdges;
+
+    private CsrSnapshot(final IntBuffer data) {
+        this.data = data;
+        this.numberOfNodes = data.get(1);
+        this.numberOfEdges = data.get(2);
+    }
+
+    /**
+     * The mapping stays valid after the file is closed, pages are loaded by
+     * the OS on first access
+     */
+    public static CsrSnapshot map(final File file) throws IOException {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try {
+            IntBuffer data = randomAccessFile.getChannel().map(MapMode.READ_ONLY, 0, randomAccessFile.length())
+                    .asIntBuffer();
+            if (data.get(0) != MAGIC) {
+                throw new IOException("Not a CSR snapshot: " + file);
+            }
+            return new CsrSnapshot(data);
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    /**
+     * @param offsets length = number of nodes + 1, offsets[0] = 0
+     */
+    public static void write(final File file,
+                             final int[] offsets,
+                             final int[] targets) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file),
+                WRITE_BUFFER_SIZE));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(offsets.length - 1);
+            out.writeInt(targets.length);
+            for (int offset : offsets) {
+                out.writeInt(offset);
+            }
+            for (int target : targets) {
+                out.writeInt(target);
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    public int getNumberOfNodes() {
+        return numberOfNodes;
+    }
+
+    public int getNumberOfEdges() {
+        return numberOfEdges;
+    }
+
+    /**
+     * @return index of the first outgoing edge of the node, the edges of node
+     *         n end before getFirstEdge(n + 1)
+     */
+    public int getFirstEdge(final int node) {
+        return data.get(HEADER_INTS + node);
+    }
+
+    public int getOutDegree(final int node) {
+        return getFirstEdge(node + 1) - getFirstEdge(node);
+    }
+
+    public int getTarget(final int edge) {
+        return data.get(HEADER_INTS + numberOfNodes + 1 + edge);
+    }
+}
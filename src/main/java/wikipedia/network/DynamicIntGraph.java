@@ -0,0 +1,199 @@
+package wikipedia.network;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * Mutable graph on the nodes of an IntGraph, for applying link changes
+ * between frames. Each node keeps its sorted targets in its own growable
+ * array. In degrees and mutual degrees (number of mutual neighbours, a
+ * self link counts once) are updated with every added or removed edge.
+ */
+public final class DynamicIntGraph implements LinkGraph {
+
+    private static final int MIN_CAPACITY = 4;
+
+    private final String[] names;
+    private final Map<String, Integer> nodesByName;
+    private final int[][] targets;
+    private final int[] outDegrees;
+    private final int[] inDegrees;
+    private final int[] mutualDegrees;
+    private int numberOfEdges;
+
+    /**
+     * Copies nodes and edges of the graph
+     */
+    public DynamicIntGraph(final IntGraph graph) {
+        final int numberOfNodes = graph.getNumberOfNodes();
+        names = new String[numberOfNodes];
+        nodesByName = Maps.newHashMapWithExpectedSize(numberOfNodes);
+        targets = new int[numberOfNodes][];
+        outDegrees = graph.getOutDegrees();
+        inDegrees = graph.getInDegrees();
+        mutualDegrees = Reciprocity.getMutualDegrees(graph);
+        numberOfEdges = graph.getNumberOfEdges();
+        for (int node = 0; node < numberOfNodes; node++) {
+            names[node] = graph.getName(node);
+            nodesByName.put(names[node], node);
+            final int firstEdge = graph.getFirstOutEdge(node);
+            targets[node] = new int[Math.max(MIN_CAPACITY, outDegrees[node])];
+            for (int index = 0; index < outDegrees[node]; index++) {
+                targets[node][index] = graph.getTarget(firstEdge + index);
+            }
+        }
+    }
+
+    /**
+     * @return false if the edge already exists
+     */
+    public boolean addEdge(final int from,
+                           final int to) {
+        final int position = Arrays.binarySearch(targets[from], 0, outDegrees[from], to);
+        if (position >= 0) {
+            return false;
+        }
+        final int insertAt = -position - 1;
+        if (outDegrees[from] == targets[from].length) {
+            targets[from] = Arrays.copyOf(targets[from], targets[from].length * 2);
+        }
+        System.arraycopy(targets[from], insertAt, targets[from], insertAt + 1, outDegrees[from] - insertAt);
+        targets[from][insertAt] = to;
+        outDegrees[from]++;
+        inDegrees[to]++;
+        numberOfEdges++;
+        updateMutualDegrees(from, to, 1);
+        return true;
+    }
+
+    /**
+     * @return false if the edge does not exist
+     */
+    public boolean removeEdge(final int from,
+                              final int to) {
+        final int position = Arrays.binarySearch(targets[from], 0, outDegrees[from], to);
+        if (position < 0) {
+            return false;
+        }
+        System.arraycopy(targets[from], position + 1, targets[from], position, outDegrees[from] - position - 1);
+        outDegrees[from]--;
+        inDegrees[to]--;
+        numberOfEdges--;
+        updateMutualDegrees(from, to, -1);
+        return true;
+    }
+
+    private void updateMutualDegrees(final int from,
+                                     final int to,
+                                     final int change) {
+        if (from == to) {
+            mutualDegrees[from] += change;
+        } else if (hasEdge(to, from)) {
+            mutualDegrees[from] += change;
+            mutualDegrees[to] += change;
+        }
+    }
+
+    public int getMutualDegree(final int node) {
+        return mutualDegrees[node];
+    }
+
+    /**
+     * @return all nodes that node links to and that link back to node, ascending
+     */
+    public int[] getMutualNeighbors(final int node) {
+        int[] neighbors = new int[mutualDegrees[node]];
+        int size = 0;
+        for (int index = 0; index < outDegrees[node] && size < neighbors.length; index++) {
+            final int target = targets[node][index];
+            if (hasEdge(target, node)) {
+                neighbors[size++] = target;
+            }
+        }
+        return neighbors;
+    }
+
+    @Override
+    public int getNumberOfNodes() {
+        return names.length;
+    }
+
+    @Override
+    public int getNumberOfEdges() {
+        return numberOfEdges;
+    }
+
+    @Override
+    public String getName(final int node) {
+        return names[node];
+    }
+
+    @Override
+    public int getNode(final String name) {
+        final Integer node = nodesByName.get(name);
+        return node == null ? -1 : node;
+    }
+
+    @Override
+    public int getOutDegree(final int node) {
+        return outDegrees[node];
+    }
+
+    @Override
+    public int getOutNeighbor(final int node,
+                              final int index) {
+        return targets[node][index];
+    }
+
+    @Override
+    public boolean hasEdge(final int from,
+                           final int to) {
+        return Arrays.binarySearch(targets[from], 0, outDegrees[from], to) >= 0;
+    }
+
+    @Override
+    public int[] getInDegrees() {
+        return inDegrees.clone();
+    }
+
+    @Override
+    public int[] getLinkedNodes() {
+        int[] linkedNodes = new int[names.length];
+        int size = 0;
+        for (int node = 0; node < names.length; node++) {
+            if (inDegrees[node] > 0) {
+                linkedNodes[size++] = node;
+            }
+        }
+        return Arrays.copyOf(linkedNodes, size);
+    }
+
+    @Override
+    public List<GraphEdge> getEdgesWithin(final Collection<String> nodeNames) {
+        boolean[] selected = new boolean[names.length];
+        for (String name : nodeNames) {
+            final int node = getNode(name);
+            if (node >= 0) {
+                selected[node] = true;
+            }
+        }
+        List<GraphEdge> edges = Lists.newArrayList();
+        for (int from = 0; from < names.length; from++) {
+            if (!selected[from]) {
+                continue;
+            }
+            for (int index = 0; index < outDegrees[from]; index++) {
+                final int to = targets[from][index];
+                if (to != from && selected[to]) {
+                    edges.add(new GraphEdge(names[from], names[to]));
+                }
+            }
+        }
+        return edges;
+    }
+}
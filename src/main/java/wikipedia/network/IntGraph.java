@@ -0,0 +1,284 @@
+package wikipedia.network;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * Directed graph on the int nodes 0 to n - 1, each labelled with a name (page
+ * title), in compressed sparse row layout. Forward adjacency: the targets of
+ * node n are at the out edges getFirstOutEdge(n) to getFirstOutEdge(n + 1) - 1,
+ * ascending. Reverse adjacency: the sources of node n are at the in edges
+ * getFirstInEdge(n) to getFirstInEdge(n + 1) - 1, ascending. Immutable, create
+ * it with a Builder. Duplicate edges are dropped, self links are kept.
+ */
+public final class IntGraph implements LinkGraph {
+
+    private static final int NODE_BITS = 32;
+    private static final long NODE_MASK = 0xFFFFFFFFL;
+
+    private final String[] names;
+    private final Map<String, Integer> nodesByName;
+    private final int[] outOffsets;
+    private final int[] targets;
+    private final int[] inOffsets;
+    private final int[] sources;
+
+    private IntGraph(final String[] names, final Map<String, Integer> nodesByName, final int[] outOffsets,
+            final int[] targets, final int[] inOffsets, final int[] sources) {
+        this.names = names;
+        this.nodesByName = nodesByName;
+        this.outOffsets = outOffsets;
+        this.targets = targets;
+        this.inOffsets = inOffsets;
+        this.sources = sources;
+    }
+
+    @Override
+    public int getNumberOfNodes() {
+        return names.length;
+    }
+
+    @Override
+    public int getNumberOfEdges() {
+        return targets.length;
+    }
+
+    @Override
+    public String getName(final int node) {
+        return names[node];
+    }
+
+    /**
+     * @return node with the given name or -1
+     */
+    @Override
+    public int getNode(final String name) {
+        final Integer node = nodesByName.get(name);
+        return node == null ? -1 : node;
+    }
+
+    public int getFirstOutEdge(final int node) {
+        return outOffsets[node];
+    }
+
+    @Override
+    public int getOutDegree(final int node) {
+        return outOffsets[node + 1] - outOffsets[node];
+    }
+
+    public int getTarget(final int outEdge) {
+        return targets[outEdge];
+    }
+
+    @Override
+    public int getOutNeighbor(final int node,
+                              final int index) {
+        return targets[outOffsets[node] + index];
+    }
+
+    public int getFirstInEdge(final int node) {
+        return inOffsets[node];
+    }
+
+    public int getInDegree(final int node) {
+        return inOffsets[node + 1] - inOffsets[node];
+    }
+
+    public int getSource(final int inEdge) {
+        return sources[inEdge];
+    }
+
+    /**
+     * @return out degree, indexed by node
+     */
+    public int[] getOutDegrees() {
+        return getDegrees(outOffsets);
+    }
+
+    /**
+     * @return in degree, indexed by node
+     */
+    @Override
+    public int[] getInDegrees() {
+        return getDegrees(inOffsets);
+    }
+
+    /**
+     * @return all nodes with at least one incoming link, ascending
+     */
+    @Override
+    public int[] getLinkedNodes() {
+        int[] linkedNodes = new int[names.length];
+        int size = 0;
+        for (int node = 0; node < names.length; node++) {
+            if (inOffsets[node + 1] > inOffsets[node]) {
+                linkedNodes[size++] = node;
+            }
+        }
+        return Arrays.copyOf(linkedNodes, size);
+    }
+
+    private static int[] getDegrees(final int[] offsets) {
+        int[] degrees = new int[offsets.length - 1];
+        for (int node = 0; node < degrees.length; node++) {
+            degrees[node] = offsets[node + 1] - offsets[node];
+        }
+        return degrees;
+    }
+
+    /**
+     * Binary search in the sorted targets of from
+     */
+    @Override
+    public boolean hasEdge(final int from,
+                           final int to) {
+        return Arrays.binarySearch(targets, outOffsets[from], outOffsets[from + 1], to) >= 0;
+    }
+
+    /**
+     * @return all edges between the named nodes, without self links
+     */
+    @Override
+    public List<GraphEdge> getEdgesWithin(final Collection<String> nodeNames) {
+        boolean[] selected = new boolean[names.length];
+        for (String name : nodeNames) {
+            final int node = getNode(name);
+            if (node >= 0) {
+                selected[node] = true;
+            }
+        }
+        List<GraphEdge> edges = Lists.newArrayList();
+        for (int from = 0; from < names.length; from++) {
+            if (!selected[from]) {
+                continue;
+            }
+            for (int edge = outOffsets[from]; edge < outOffsets[from + 1]; edge++) {
+                final int to = targets[edge];
+                if (to != from && selected[to]) {
+                    edges.add(new GraphEdge(names[from], names[to]));
+                }
+            }
+        }
+        return edges;
+    }
+
+    /**
+     * Collects nodes and edges, the edges are kept as one long per edge until
+     * build() sorts them into the CSR arrays. Thread safe.
+     */
+    public static final class Builder {
+
+        private static final int INITIAL_CAPACITY = 1024;
+
+        private final List<String> names = Lists.newArrayList();
+        private final Map<String, Integer> nodesByName = Maps.newHashMap();
+        private long[] edges = new long[INITIAL_CAPACITY];
+        private int numberOfEdges;
+
+        /**
+         * @return node of the name, added if it is new
+         */
+        public synchronized int addNode(final String name) {
+            Integer node = nodesByName.get(name);
+            if (node == null) {
+                node = names.size();
+                names.add(name);
+                nodesByName.put(name, node);
+            }
+            return node;
+        }
+
+        /**
+         * Adds many nodes under one lock
+         *
+         * @return node of each name, in the same order
+         */
+        public synchronized int[] addNodes(final List<String> newNames) {
+            int[] nodes = new int[newNames.size()];
+            for (int i = 0; i < nodes.length; i++) {
+                nodes[i] = addNode(newNames.get(i));
+            }
+            return nodes;
+        }
+
+        public synchronized void addEdge(final int from,
+                                         final int to) {
+            if (from < 0 || from >= names.size() || to < 0 || to >= names.size()) {
+                throw new IllegalArgumentException("Unknown node in edge " + from + " -> " + to);
+            }
+            if (numberOfEdges == edges.length) {
+                edges = Arrays.copyOf(edges, edges.length * 2);
+            }
+            edges[numberOfEdges++] = ((long) from << NODE_BITS) | to;
+        }
+
+        /**
+         * Adds many edges under one lock
+         *
+         * @param packedEdges source node in the upper, target node in the
+         *        lower 32 bits of each edge
+         */
+        public synchronized void addEdges(final long[] packedEdges) {
+            for (long edge : packedEdges) {
+                final int from = (int) (edge >>> NODE_BITS);
+                final int to = (int) (edge & NODE_MASK);
+                if (from < 0 || from >= names.size() || to < 0 || to >= names.size()) {
+                    throw new IllegalArgumentException("Unknown node in edge " + from + " -> " + to);
+                }
+            }
+            if (numberOfEdges + packedEdges.length > edges.length) {
+                edges = Arrays.copyOf(edges, Math.max(edges.length * 2, numberOfEdges + packedEdges.length));
+            }
+            System.arraycopy(packedEdges, 0, edges, numberOfEdges, packedEdges.length);
+            numberOfEdges += packedEdges.length;
+        }
+
+        /**
+         * Adds the nodes if they are new
+         */
+        public synchronized void addEdge(final String from,
+                                         final String to) {
+            addEdge(addNode(from), addNode(to));
+        }
+
+        public synchronized IntGraph build() {
+            final int numberOfNodes = names.size();
+            long[] sortedEdges = Arrays.copyOf(edges, numberOfEdges);
+            // upper 32 bits source, lower 32 bits target: sorted by source, then target
+            Arrays.sort(sortedEdges);
+            int[] outOffsets = new int[numberOfNodes + 1];
+            int[] targets = new int[sortedEdges.length];
+            int[] inOffsets = new int[numberOfNodes + 1];
+            int uniqueEdges = 0;
+            for (int i = 0; i < sortedEdges.length; i++) {
+                if (i > 0 && sortedEdges[i] == sortedEdges[i - 1]) {
+                    continue;
+                }
+                final int to = (int) (sortedEdges[i] & NODE_MASK);
+                outOffsets[(int) (sortedEdges[i] >>> NODE_BITS) + 1]++;
+                inOffsets[to + 1]++;
+                targets[uniqueEdges++] = to;
+            }
+            targets = Arrays.copyOf(targets, uniqueEdges);
+            for (int node = 0; node < numberOfNodes; node++) {
+                outOffsets[node + 1] += outOffsets[node];
+                inOffsets[node + 1] += inOffsets[node];
+            }
+            // sources are visited in ascending order, so each in list ends up sorted
+            int[] sources = new int[uniqueEdges];
+            int[] nextInEdge = Arrays.copyOf(inOffsets, numberOfNodes);
+            for (int from = 0; from < numberOfNodes; from++) {
+                for (int edge = outOffsets[from]; edge < outOffsets[from + 1]; edge++) {
+                    sources[nextInEdge[targets[edge]]++] = from;
+                }
+            }
+            return new IntGraph(names.toArray(new String[numberOfNodes]), Maps.newHashMap(nodesByName),
+                    outOffsets, targets, inOffsets, sources);
+        }
+    }
+}
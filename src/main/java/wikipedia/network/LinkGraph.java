@@ -0,0 +1,47 @@
+package wikipedia.network;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Read access to a directed graph on the int nodes 0 to n - 1, each labelled
+ * with a name (page title). The targets of a node are ascending.
+ */
+public interface LinkGraph {
+
+    int getNumberOfNodes();
+
+    int getNumberOfEdges();
+
+    String getName(int node);
+
+    /**
+     * @return node with the given name or -1
+     */
+    int getNode(String name);
+
+    int getOutDegree(int node);
+
+    /**
+     * @param index 0 to getOutDegree(node) - 1
+     */
+    int getOutNeighbor(int node, int index);
+
+    boolean hasEdge(int from, int to);
+
+    /**
+     * @return in degree, indexed by node
+     */
+    int[] getInDegrees();
+
+    /**
+     * @return all nodes with at least one incoming link, ascending
+     */
+    int[] getLinkedNodes();
+
+    /**
+     * @return all edges between the named nodes, without self links, ordered by source and target node
+     */
+    List<GraphEdge> getEdgesWithin(Collection<String> nodeNames);
+
+}
@@ -0,0 +1,249 @@
+package wikipedia.network;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import org.joda.time.DateTime;
+import org.joda.time.format.DateTimeFormat;
+import org.joda.time.format.DateTimeFormatter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import wikipedia.database.LinkRowHandler;
+import wikipedia.database.WikiStorage;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.primitives.Ints;
+
+/**
+ * Directory of CSR snapshots for a fixed page set: pages.dat holds the
+ * nodes (page id and title, node = position in the file), one .csr file per
+ * frame holds the links between these pages. Past frames never change, so a
+ * snapshot exported once replaces the database for all later analysis runs.
+ */
+public final class LinkSnapshots {
+
+    /** system property with the snapshot directory, e.g. -Dwikimaps.snapshots=out/snapshots */
+    public static final String PROPERTY = "wikimaps.snapshots";
+
+    private static final Logger LOG = LoggerFactory.getLogger(LinkSnapshots.class.getName());
+
+    private static final String PAGES_FILE = "pages.dat";
+    private static final String FRAME_FILE_SUFFIX = ".csr";
+    private static final DateTimeFormatter FRAME_FILE_FORMATTER = DateTimeFormat.forPattern("yyyyMMdd'T'HHmmss");
+    private static final int NODE_BITS = 32;
+    private static final long NODE_MASK = 0xFFFFFFFFL;
+
+    private final File directory;
+    private final int[] pageIds;
+    private final String[] titles;
+
+    private LinkSnapshots(final File directory,
+                          final int[] pageIds,
+                          final String[] titles) {
+        this.directory = directory;
+        this.pageIds = pageIds;
+        this.titles = titles;
+    }
+
+    public static LinkSnapshots open(final File directory) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(new File(directory,
+                PAGES_FILE))));
+        try {
+            final int numberOfNodes = in.readInt();
+            int[] pageIds = new int[numberOfNodes];
+            String[] titles = new String[numberOfNodes];
+            for (int node = 0; node < numberOfNodes; node++) {
+                pageIds[node] = in.readInt();
+                titles[node] = in.readUTF();
+            }
+            return new LinkSnapshots(directory, pageIds, titles);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * @return snapshots of the directory set in the wikimaps.snapshots system
+     *         property, null if the property is not set or the directory
+     *         holds no snapshots
+     */
+    public static LinkSnapshots fromSystemProperty() {
+        final String directory = System.getProperty(PROPERTY);
+        if (directory == null || !new File(directory, PAGES_FILE).isFile()) {
+            return null;
+        }
+        try {
+            return open(new File(directory));
+        } catch (IOException e) {
+            LOG.error("Could not open link snapshots in " + directory, e);
+            return null;
+        }
+    }
+
+    /**
+     * Writes the links between the given pages for every frame, frames already
+     * exported are overwritten
+     */
+    public static LinkSnapshots export(final WikiStorage storage,
+                                       final Map<Integer, String> pages,
+                                       final List<DateTime> frames,
+                                       final File directory) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Could not create " + directory);
+        }
+        final int[] pageIds = Ints.toArray(pages.keySet());
+        Arrays.sort(pageIds);
+        String[] titles = new String[pageIds.length];
+        final Map<Integer, Integer> nodesByPageId = Maps.newHashMapWithExpectedSize(pageIds.length);
+        final Map<String, Integer> nodesByTitle = Maps.newHashMapWithExpectedSize(pageIds.length);
+        for (int node = 0; node < pageIds.length; node++) {
+            titles[node] = pages.get(pageIds[node]);
+            nodesByPageId.put(pageIds[node], node);
+            if (!nodesByTitle.containsKey(titles[node])) {
+                nodesByTitle.put(titles[node], node);
+            }
+        }
+        writePages(new File(directory, PAGES_FILE), pageIds, titles);
+
+        for (DateTime frame : frames) {
+            final FrameEdges edges = new FrameEdges(nodesByPageId, nodesByTitle);
+            storage.streamLinksForFrames(nodesByPageId.keySet(), ImmutableList.of(frame), edges);
+            writeFrame(getFrameFile(directory, frame), pageIds.length, edges.edges, edges.size);
+            LOG.info("Exported " + edges.size + " links at " + frame);
+        }
+        return new LinkSnapshots(directory, pageIds, titles);
+    }
+
+    private static void writePages(final File file,
+                                   final int[] pageIds,
+                                   final String[] titles) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+        try {
+            out.writeInt(pageIds.length);
+            for (int node = 0; node < pageIds.length; node++) {
+                out.writeInt(pageIds[node]);
+                out.writeUTF(titles[node]);
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * @param edges source node in the upper, target node in the lower 32 bits,
+     *        sorting them (in place) groups the edges by source
+     * @param size number of used entries of edges
+     */
+    private static void writeFrame(final File file,
+                                   final int numberOfNodes,
+                                   final long[] edges,
+                                   final int size) throws IOException {
+        Arrays.sort(edges, 0, size);
+        int[] offsets = new int[numberOfNodes + 1];
+        int[] targets = new int[size];
+        int numberOfEdges = 0;
+        for (int i = 0; i < size; i++) {
+            if (i > 0 && edges[i] == edges[i - 1]) {
+                continue;
+            }
+            offsets[(int) (edges[i] >>> NODE_BITS) + 1]++;
+            targets[numberOfEdges++] = (int) (edges[i] & NODE_MASK);
+        }
+        for (int node = 0; node < numberOfNodes; node++) {
+            offsets[node + 1] += offsets[node];
+        }
+        CsrSnapshot.write(file, offsets, Arrays.copyOf(targets, numberOfEdges));
+    }
+
+    private static File getFrameFile(final File directory,
+                                     final DateTime frame) {
+        return new File(directory, frame.toString(FRAME_FILE_FORMATTER) + FRAME_FILE_SUFFIX);
+    }
+
+    /**
+     * @return key: page id, value: page title of all nodes
+     */
+    public Map<Integer, String> getPages() {
+        Map<Integer, String> pages = Maps.newLinkedHashMap();
+        for (int node = 0; node < pageIds.length; node++) {
+            pages.put(pageIds[node], titles[node]);
+        }
+        return pages;
+    }
+
+    public boolean hasFrame(final DateTime frame) {
+        return getFrameFile(directory, frame).isFile();
+    }
+
+    public CsrSnapshot getFrame(final DateTime frame) throws IOException {
+        return CsrSnapshot.map(getFrameFile(directory, frame));
+    }
+
+    public int getPageId(final int node) {
+        return pageIds[node];
+    }
+
+    public String getTitle(final int node) {
+        return titles[node];
+    }
+
+    /**
+     * @return the given pages without node in the snapshots, their links have
+     *         to come from the database
+     */
+    public List<Integer> getMissingPages(final Collection<Integer> pages) {
+        List<Integer> missingPages = Lists.newArrayList();
+        for (Integer pageId : pages) {
+            // pages.dat is sorted by page id
+            if (Arrays.binarySearch(pageIds, pageId) < 0) {
+                missingPages.add(pageId);
+            }
+        }
+        return missingPages;
+    }
+
+    /**
+     * Collects the links between the exported pages of one frame as packed
+     * edges in a growable array
+     */
+    private static final class FrameEdges implements LinkRowHandler {
+        private static final int INITIAL_CAPACITY = 1024;
+
+        private final Map<Integer, Integer> nodesByPageId;
+        private final Map<String, Integer> nodesByTitle;
+        private long[] edges = new long[INITIAL_CAPACITY];
+        private int size;
+
+        private FrameEdges(final Map<Integer, Integer> nodesByPageId, final Map<String, Integer> nodesByTitle) {
+            this.nodesByPageId = nodesByPageId;
+            this.nodesByTitle = nodesByTitle;
+        }
+
+        @Override
+        public void processLink(final int frameIndex,
+                                final int srcPageId,
+                                final String targetPageTitle) {
+            final Integer target = nodesByTitle.get(targetPageTitle);
+            if (target == null) {
+                return;
+            }
+            if (size == edges.length) {
+                edges = Arrays.copyOf(edges, size * 2);
+            }
+            edges[size++] = ((long) nodesByPageId.get(srcPageId) << NODE_BITS) | target;
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package wikipedia.network;
+
+import java.util.Arrays;
+
+/**
+ * Mutual links of an IntGraph. The mutual neighbours of a node are the
+ * intersection of its sorted targets and its sorted sources, so a merge of
+ * both lists finds them in O(out degree + in degree) and all of them in O(E).
+ * A self link counts as a mutual link of its node.
+ */
+public final class Reciprocity {
+
+    private Reciprocity() {
+    }
+
+    /**
+     * Callback for reciprocal pairs
+     */
+    public interface PairHandler {
+
+        /**
+         * @param node linked from and to otherNode, node <= otherNode
+         */
+        void reciprocalPair(int node, int otherNode);
+
+    }
+
+    /**
+     * @return all nodes that node links to and that link back to node, ascending
+     */
+    public static int[] getMutualNeighbors(final IntGraph graph,
+                                           final int node) {
+        int[] neighbors = new int[Math.min(graph.getOutDegree(node), graph.getInDegree(node))];
+        final int size = mergeMutualNeighbors(graph, node, neighbors);
+        return Arrays.copyOf(neighbors, size);
+    }
+
+    /**
+     * @return number of mutual neighbours, indexed by node
+     */
+    public static int[] getMutualDegrees(final IntGraph graph) {
+        int[] mutualDegrees = new int[graph.getNumberOfNodes()];
+        for (int node = 0; node < mutualDegrees.length; node++) {
+            mutualDegrees[node] = mergeMutualNeighbors(graph, node, null);
+        }
+        return mutualDegrees;
+    }
+
+    /**
+     * @return share of the links of a node that are returned, 0 for nodes without links, indexed by node
+     */
+    public static float[] getReciprocity(final IntGraph graph) {
+        final int[] mutualDegrees = getMutualDegrees(graph);
+        float[] reciprocity = new float[mutualDegrees.length];
+        for (int node = 0; node < reciprocity.length; node++) {
+            final int outDegree = graph.getOutDegree(node);
+            if (outDegree > 0) {
+                reciprocity[node] = (float) mutualDegrees[node] / (float) outDegree;
+            }
+        }
+        return reciprocity;
+    }
+
+    /**
+     * Passes each reciprocal pair once to the handler
+     *
+     * @return number of reciprocal pairs
+     */
+    public static int forEachReciprocalPair(final IntGraph graph,
+                                            final PairHandler handler) {
+        int numberOfPairs = 0;
+        for (int node = 0; node < graph.getNumberOfNodes(); node++) {
+            for (int neighbor : getMutualNeighbors(graph, node)) {
+                if (node <= neighbor) {
+                    handler.reciprocalPair(node, neighbor);
+                    numberOfPairs++;
+                }
+            }
+        }
+        return numberOfPairs;
+    }
+
+    /**
+     * Intersects the targets and sources of node
+     *
+     * @param neighbors receives the mutual neighbours if not null
+     * @return number of mutual neighbours
+     */
+    private static int mergeMutualNeighbors(final IntGraph graph,
+                                            final int node,
+                                            final int[] neighbors) {
+        int outEdge = graph.getFirstOutEdge(node);
+        final int lastOutEdge = outEdge + graph.getOutDegree(node);
+        int inEdge = graph.getFirstInEdge(node);
+        final int lastInEdge = inEdge + graph.getInDegree(node);
+        int size = 0;
+        while (outEdge < lastOutEdge && inEdge < lastInEdge) {
+            final int target = graph.getTarget(outEdge);
+            final int source = graph.getSource(inEdge);
+            if (target < source) {
+                outEdge++;
+            } else if (source < target) {
+                inEdge++;
+            } else {
+                if (neighbors != null) {
+                    neighbors[size] = target;
+                }
+                size++;
+                outEdge++;
+                inEdge++;
+            }
+        }
+        return size;
+    }
+}
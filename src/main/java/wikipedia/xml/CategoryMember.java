@@ -13,10 +13,10 @@ public final class CategoryMember {
     @Attribute
     private int pageid;
 
-    @Attribute
+    @Attribute(required = false)
     private String ns;
 
-    @Attribute
+    @Attribute(required = false)
     private String title;
 
     public int getPageid() {
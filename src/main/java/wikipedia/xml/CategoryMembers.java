@@ -8,9 +8,13 @@ import org.simpleframework.xml.Attribute;
  */
 public final class CategoryMembers {
 
-    @Attribute
+    @Attribute(required = false)
     private String cmcontinue;
 
+    /** continuation of older API versions for cmsort=timestamp */
+    @Attribute(required = false)
+    private String cmstart;
+
     public String getCmcontinue() {
         return cmcontinue;
     }
@@ -18,4 +22,12 @@ public final class CategoryMembers {
     public void setCmcontinue(final String cmcontinue) {
         this.cmcontinue = cmcontinue;
     }
+
+    public String getCmstart() {
+        return cmstart;
+    }
+
+    public void setCmstart(final String cmstart) {
+        this.cmstart = cmstart;
+    }
 }
@@ -19,6 +19,25 @@ public final class Item {
     @Attribute
     private String title;
 
+    @Attribute(required = false)
+    private int revid;
+
+    @Attribute(required = false)
+    private String timestamp;
+
+    public int getRevid() {
+        return revid;
+    }
+    public void setRevid(final int revid) {
+        this.revid = revid;
+    }
+    public String getTimestamp() {
+        return timestamp;
+    }
+    public void setTimestamp(final String timestamp) {
+        this.timestamp = timestamp;
+    }
+
     public String getUserid() {
         return userid;
     }
@@ -33,6 +33,28 @@ public final class Query {
     @ElementList(required = false)
     private List<Item> usercontribs;
 
+    @ElementList(required = false, entry = "r", type = Redirect.class)
+    private List<Redirect> redirects;
+
+    @ElementList(required = false, entry = "n", type = Redirect.class)
+    private List<Redirect> normalized;
+
+    public List<Redirect> getRedirects() {
+        return redirects;
+    }
+
+    public void setRedirects(final List<Redirect> redirects) {
+        this.redirects = redirects;
+    }
+
+    public List<Redirect> getNormalized() {
+        return normalized;
+    }
+
+    public void setNormalized(final List<Redirect> normalized) {
+        this.normalized = normalized;
+    }
+
     public List<Item> getUsercontribs() {
         return usercontribs;
     }
@@ -0,0 +1,34 @@
+package wikipedia.xml;
+
+import org.simpleframework.xml.Attribute;
+import org.simpleframework.xml.Root;
+
+/**
+ * XML Element returned from Wikipedia API (redirect or title normalization)
+ * see http://en.wikipedia.org/w/api.php
+ */
+@Root(strict = false, name = "r")
+public final class Redirect {
+
+    @Attribute
+    private String from;
+
+    @Attribute
+    private String to;
+
+    public String getFrom() {
+        return from;
+    }
+
+    public void setFrom(final String from) {
+        this.from = from;
+    }
+
+    public String getTo() {
+        return to;
+    }
+
+    public void setTo(final String to) {
+        this.to = to;
+    }
+}
@@ -0,0 +1,128 @@
+-- Schema of the embedded H2 database (MySQL mode), same tables and keys as
+-- db_scripts/page_link_revisions_2011-08-10.sql. Executed on every start.
+
+CREATE TABLE IF NOT EXISTS `categories` (
+  `category_id` int(11) NOT NULL AUTO_INCREMENT,
+  `category_name` varchar(256) NOT NULL,
+  `last_sync` datetime DEFAULT NULL,
+  PRIMARY KEY (`category_id`)
+);
+
+CREATE TABLE IF NOT EXISTS `fetch_tombstones` (
+  `page_id` int(11) NOT NULL,
+  `revision_date` datetime NOT NULL,
+  `reason` varchar(32) NOT NULL,
+  `attempts` int(11) NOT NULL,
+  `retry_after` datetime NOT NULL,
+  PRIMARY KEY (`page_id`,`revision_date`),
+  KEY `retry_after` (`retry_after`)
+);
+
+CREATE TABLE IF NOT EXISTS `link_deltas` (
+  `src_page_id` int(11) NOT NULL,
+  `revision_date` datetime NOT NULL,
+  `base_revision_date` datetime NOT NULL,
+  `chain_length` int(11) NOT NULL,
+  `nbr_links` int(11) NOT NULL,
+  `added` blob NOT NULL,
+  `removed` blob NOT NULL,
+  PRIMARY KEY (`src_page_id`,`revision_date`)
+);
+
+CREATE TABLE IF NOT EXISTS `link_sets` (
+  `src_page_id` int(11) NOT NULL,
+  `revision_date` datetime NOT NULL,
+  `nbr_links` int(11) NOT NULL,
+  `links` blob NOT NULL,
+  PRIMARY KEY (`src_page_id`,`revision_date`)
+);
+
+CREATE TABLE IF NOT EXISTS `link_titles` (
+  `title_id` int(11) NOT NULL AUTO_INCREMENT,
+  `title` varchar(255) NOT NULL,
+  PRIMARY KEY (`title_id`),
+  UNIQUE KEY `title` (`title`)
+);
+
+CREATE TABLE IF NOT EXISTS `pages` (
+  `page_id` int(11) NOT NULL,
+  `page_title` varchar(255) NOT NULL,
+  `creation_date` datetime NOT NULL,
+  PRIMARY KEY (`page_id`)
+);
+
+CREATE TABLE IF NOT EXISTS `outgoing_links` (
+  `src_page_id` int(11) NOT NULL,
+  `revision_date` datetime NOT NULL,
+  `target_page_title` varchar(255) NOT NULL,
+  PRIMARY KEY (`src_page_id`,`revision_date`,`target_page_title`),
+  KEY `target` (`target_page_title`)
+);
+
+CREATE TABLE IF NOT EXISTS `page_activity_cache` (
+  `page_id` int(11) NOT NULL,
+  `page_title` varchar(256) NOT NULL,
+  `numberOfWeeklyEdits` int(11) NOT NULL,
+  `lastUpdate` datetime NOT NULL,
+  PRIMARY KEY (`page_id`)
+);
+
+CREATE TABLE IF NOT EXISTS `page_revisions` (
+  `page_title` varchar(255) NOT NULL,
+  `rev_id` int(11) NOT NULL,
+  `parent_id` int(11) NOT NULL,
+  `user_name` varchar(255) DEFAULT NULL,
+  `rev_timestamp` datetime NOT NULL,
+  `size` int(11) NOT NULL,
+  PRIMARY KEY (`page_title`,`rev_id`)
+);
+
+CREATE TABLE IF NOT EXISTS `pages_in_categories` (
+  `page_id` int(11) DEFAULT NULL,
+  `category_id` int(11) DEFAULT NULL,
+  KEY `page_id` (`page_id`),
+  UNIQUE KEY `membership` (`category_id`,`page_id`),
+  FOREIGN KEY (`page_id`) REFERENCES `pages` (`page_id`),
+  FOREIGN KEY (`category_id`) REFERENCES `categories` (`category_id`)
+);
+
+CREATE TABLE IF NOT EXISTS `redirect_cache` (
+  `redirect_title` varchar(255) NOT NULL,
+  `target_title` varchar(255) NOT NULL,
+  `last_update` datetime NOT NULL,
+  PRIMARY KEY (`redirect_title`)
+);
+
+CREATE TABLE IF NOT EXISTS `user_contribs` (
+  `user_name` varchar(255) NOT NULL,
+  `rev_id` int(11) NOT NULL,
+  `page_title` varchar(255) NOT NULL,
+  PRIMARY KEY (`user_name`,`rev_id`)
+);
+
+CREATE TABLE IF NOT EXISTS `user_contrib_sync` (
+  `user_name` varchar(255) NOT NULL,
+  `last_timestamp` datetime NOT NULL,
+  `last_rev_id` int(11) NOT NULL,
+  `last_sync` datetime NOT NULL,
+  PRIMARY KEY (`user_name`)
+);
+
+CREATE TABLE IF NOT EXISTS `usertalk_cache` (
+  `talk_id` int(11) NOT NULL AUTO_INCREMENT,
+  `from` varchar(256) NOT NULL,
+  `to` varchar(256) NOT NULL,
+  `nbrRevisions` int(11) NOT NULL,
+  PRIMARY KEY (`talk_id`)
+);
+
+CREATE TABLE IF NOT EXISTS `schema_version` (
+  `version` int(11) NOT NULL,
+  `description` varchar(255) NOT NULL,
+  `applied_at` datetime NOT NULL,
+  PRIMARY KEY (`version`)
+);
+
+-- same layout as schema version 2, without the MySQL partitions
+INSERT IGNORE INTO `schema_version` (`version`, `description`, `applied_at`)
+  VALUES (2, 'embedded schema', CURRENT_TIMESTAMP);
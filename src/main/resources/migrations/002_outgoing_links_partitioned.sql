@@ -0,0 +1,51 @@
+-- Version 2: outgoing_links partitioned by year of revision_date. The primary
+-- key covers the frame and existence queries (src_page_id, revision_date), the
+-- full length title replaces the 255 character prefix indexes. Titles are
+-- compared case sensitive like in link_titles. Partitioned tables can not
+-- have foreign keys, the key to pages is dropped.
+-- Applied online by OutgoingLinksRepartitioning: the trigger copies new links
+-- while the existing ones are copied in chunks, then the tables are swapped.
+-- Split pmax before it fills: ALTER TABLE outgoing_links REORGANIZE PARTITION pmax INTO (...)
+
+CREATE TABLE IF NOT EXISTS `outgoing_links_new` (
+  `src_page_id` int(11) NOT NULL,
+  `revision_date` datetime NOT NULL,
+  `target_page_title` varchar(255) CHARACTER SET utf8 COLLATE utf8_bin NOT NULL,
+  PRIMARY KEY (`src_page_id`,`revision_date`,`target_page_title`),
+  KEY `target` (`target_page_title`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8
+PARTITION BY RANGE (TO_DAYS(`revision_date`)) (
+  PARTITION p2001 VALUES LESS THAN (TO_DAYS('2002-01-01')),
+  PARTITION p2002 VALUES LESS THAN (TO_DAYS('2003-01-01')),
+  PARTITION p2003 VALUES LESS THAN (TO_DAYS('2004-01-01')),
+  PARTITION p2004 VALUES LESS THAN (TO_DAYS('2005-01-01')),
+  PARTITION p2005 VALUES LESS THAN (TO_DAYS('2006-01-01')),
+  PARTITION p2006 VALUES LESS THAN (TO_DAYS('2007-01-01')),
+  PARTITION p2007 VALUES LESS THAN (TO_DAYS('2008-01-01')),
+  PARTITION p2008 VALUES LESS THAN (TO_DAYS('2009-01-01')),
+  PARTITION p2009 VALUES LESS THAN (TO_DAYS('2010-01-01')),
+  PARTITION p2010 VALUES LESS THAN (TO_DAYS('2011-01-01')),
+  PARTITION p2011 VALUES LESS THAN (TO_DAYS('2012-01-01')),
+  PARTITION p2012 VALUES LESS THAN (TO_DAYS('2013-01-01')),
+  PARTITION p2013 VALUES LESS THAN (TO_DAYS('2014-01-01')),
+  PARTITION p2014 VALUES LESS THAN (TO_DAYS('2015-01-01')),
+  PARTITION p2015 VALUES LESS THAN (TO_DAYS('2016-01-01')),
+  PARTITION p2016 VALUES LESS THAN (TO_DAYS('2017-01-01')),
+  PARTITION p2017 VALUES LESS THAN (TO_DAYS('2018-01-01')),
+  PARTITION p2018 VALUES LESS THAN (TO_DAYS('2019-01-01')),
+  PARTITION p2019 VALUES LESS THAN (TO_DAYS('2020-01-01')),
+  PARTITION p2020 VALUES LESS THAN (TO_DAYS('2021-01-01')),
+  PARTITION p2021 VALUES LESS THAN (TO_DAYS('2022-01-01')),
+  PARTITION p2022 VALUES LESS THAN (TO_DAYS('2023-01-01')),
+  PARTITION p2023 VALUES LESS THAN (TO_DAYS('2024-01-01')),
+  PARTITION p2024 VALUES LESS THAN (TO_DAYS('2025-01-01')),
+  PARTITION p2025 VALUES LESS THAN (TO_DAYS('2026-01-01')),
+  PARTITION p2026 VALUES LESS THAN (TO_DAYS('2027-01-01')),
+  PARTITION pmax VALUES LESS THAN MAXVALUE
+);
+
+DROP TRIGGER IF EXISTS `outgoing_links_copy`;
+
+CREATE TRIGGER `outgoing_links_copy` AFTER INSERT ON `outgoing_links` FOR EACH ROW
+  INSERT IGNORE INTO `outgoing_links_new` (`src_page_id`, `revision_date`, `target_page_title`)
+  VALUES (NEW.`src_page_id`, NEW.`revision_date`, NEW.`target_page_title`);
@@ -0,0 +1,52 @@
+package links;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.joda.time.DateTime;
+import org.junit.Test;
+
+import util.LRUCache;
+import wikipedia.database.CachingStorage;
+import wikipedia.database.DBUtil;
+import wikipedia.database.EmbeddedDatabase;
+import wikipedia.network.GraphEdge;
+
+public final class TestCachingStorage {
+
+    @Test
+    public void testLeastRecentlyUsedEntryEvicted() {
+        LRUCache<String, Integer> cache = new LRUCache<String, Integer>("test", 2);
+        cache.put("a", 1);
+        cache.put("b", 2);
+        assertEquals(Integer.valueOf(1), cache.get("a"));
+        cache.put("c", 3);
+        assertNull(cache.get("b"));
+        assertEquals(Integer.valueOf(3), cache.get("c"));
+        assertEquals(2, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void testUsertalkWritesUpdateCache() {
+        CachingStorage storage = new CachingStorage(new DBUtil(EmbeddedDatabase.get("jdbc:h2:mem:caching"
+                + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1")));
+        final GraphEdge conversation = new GraphEdge("Alice", "Bob");
+        assertFalse(storage.userConversationInCache(conversation));
+        storage.cacheUserConversation(conversation, 3);
+        assertTrue(storage.userConversationInCache(conversation));
+        assertEquals(3, storage.getUserConversationFromCache(conversation));
+    }
+
+    @Test
+    public void testCategoryLastSyncWriteUpdatesCache() {
+        CachingStorage storage = new CachingStorage(new DBUtil(EmbeddedDatabase.get("jdbc:h2:mem:cachingsync"
+                + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1")));
+        assertNull(storage.getCategoryLastSync("Category:Test"));
+        final DateTime lastSync = new DateTime(2026, 10, 19, 12, 30, 15, 0);
+        storage.setCategoryLastSync("Category:Test", lastSync);
+        assertEquals(lastSync, storage.getCategoryLastSync("Category:Test"));
+    }
+}
@@ -0,0 +1,159 @@
+package links;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Set;
+
+import org.joda.time.DateMidnight;
+import org.joda.time.DateTime;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import wikipedia.database.DBUtil;
+import wikipedia.database.EmbeddedDatabase;
+import wikipedia.database.LinkRowHandler;
+import wikipedia.database.LinkStorage;
+import wikipedia.network.GraphEdge;
+import wikipedia.network.PageLinkInfo;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+public final class TestEmbeddedStorage {
+
+    private static final DateTime CREATION = new DateMidnight(2010, 1, 1).toDateTime();
+
+    private static DBUtil openStorage(final String name,
+                                      final LinkStorage linkStorage) {
+        DBUtil storage = new DBUtil(EmbeddedDatabase.get(getURL(name)));
+        storage.setLinkStorage(linkStorage);
+        return storage;
+    }
+
+    private static String getURL(final String name) {
+        return "jdbc:h2:mem:" + name + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1";
+    }
+
+    @Test
+    public void testLinkRowsRoundTrip() {
+        assertFramesRoundTrip(openStorage("rows", LinkStorage.ROWS));
+    }
+
+    @Test
+    public void testLinkSetsRoundTrip() {
+        assertFramesRoundTrip(openStorage("sets", LinkStorage.LINK_SETS));
+    }
+
+    @Test
+    public void testLinkDeltasRoundTrip() {
+        assertFramesRoundTrip(openStorage("deltas", LinkStorage.LINK_DELTAS));
+    }
+
+    @Test
+    public void testUsertalkCache() {
+        DBUtil storage = openStorage("usertalk", LinkStorage.ROWS);
+        final GraphEdge conversation = new GraphEdge("Alice", "Bob");
+        assertFalse(storage.userConversationInCache(conversation));
+        storage.cacheUserConversation(conversation, 7);
+        assertTrue(storage.userConversationInCache(conversation));
+        assertEquals(7, storage.getUserConversationFromCache(conversation));
+    }
+
+    @Test
+    public void testCategoryMembersAreStoredOnce() {
+        DBUtil storage = openStorage("categories", LinkStorage.ROWS);
+        storage.storePageEntries(ImmutableMap.of(1, "First", 2, "Second"),
+                ImmutableMap.of(1, CREATION, 2, CREATION));
+        storage.storeCategoryMembers("Category:Test", ImmutableList.of(1));
+        storage.storeCategoryMembers("Category:Test", ImmutableList.of(1, 2));
+        assertEquals(ImmutableMap.of(1, "First", 2, "Second"),
+                storage.getCategoryMembersByCategoryName("Category:Test"));
+        assertEquals(2, new JdbcTemplate(EmbeddedDatabase.get(getURL("categories")))
+                .queryForInt("SELECT COUNT(0) FROM pages_in_categories"));
+
+        storage.removeCategoryMembers("Category:Test", ImmutableList.of(2));
+        assertEquals(ImmutableMap.of(1, "First"), storage.getCategoryMembersByCategoryName("Category:Test"));
+    }
+
+    @Test
+    public void testCategoryLastSync() {
+        DBUtil storage = openStorage("categorysync", LinkStorage.ROWS);
+        assertNull(storage.getCategoryLastSync("Category:Test"));
+        storage.storeCategoryMembers("Category:Test", ImmutableList.<Integer>of());
+        assertNull(storage.getCategoryLastSync("Category:Test"));
+        final DateTime lastSync = new DateTime(2026, 10, 19, 12, 30, 15, 0);
+        storage.setCategoryLastSync("Category:Test", lastSync);
+        assertEquals(lastSync.getMillis(), storage.getCategoryLastSync("Category:Test").getMillis());
+    }
+
+    @Test
+    public void testUserContributionsKeepNewestOnly() {
+        DBUtil storage = openStorage("contribs", LinkStorage.ROWS);
+        assertNull(storage.getContribSyncState("Alice"));
+        final DateTime lastTimestamp = new DateTime(2026, 10, 19, 12, 0, 0, 0);
+        storage.storeUserContributions("Alice", ImmutableMap.of(1, "Old", 2, "Old", 3, "Old", 4, "New"),
+                lastTimestamp, 4, 3);
+        assertEquals(ImmutableList.of("Old", "New"), storage.getMostEditedPages("Alice", 10));
+        storage.storeUserContributions("Alice", ImmutableMap.of(5, "New", 6, "New"), lastTimestamp, 6, 3);
+        assertEquals(ImmutableList.of("New"), storage.getMostEditedPages("Alice", 10));
+        assertEquals(6, storage.getContribSyncState("Alice").getLastRevisionId());
+    }
+
+    @Test
+    public void testUserContributionsRefreshLargerThanWindow() {
+        DBUtil storage = openStorage("contribsrefresh", LinkStorage.ROWS);
+        final DateTime lastTimestamp = new DateTime(2026, 10, 19, 12, 0, 0, 0);
+        storage.storeUserContributions("Bot", ImmutableMap.of(1, "Old", 2, "Old", 3, "Old"), lastTimestamp, 3, 3);
+        // more new edits since the cursor than the window holds, all of them downloaded
+        storage.storeUserContributions("Bot", ImmutableMap.of(4, "Middle", 5, "Middle", 6, "New", 7, "New", 8,
+                "New"), lastTimestamp.plusHours(1), 8, 3);
+        assertEquals(ImmutableList.of("New"), storage.getMostEditedPages("Bot", 10));
+        assertEquals(8, storage.getContribSyncState("Bot").getLastRevisionId());
+    }
+
+    /**
+     * Stores twelve monthly frames of a slowly changing page out of order and
+     * reads every frame back
+     */
+    private static void assertFramesRoundTrip(final DBUtil storage) {
+        List<DateTime> frames = Lists.newArrayList();
+        List<Set<String>> expectedLinks = Lists.newArrayList();
+        for (int month = 0; month < 12; month++) {
+            frames.add(CREATION.plusMonths(month + 1));
+            Set<String> links = Sets.newHashSet();
+            for (int link = month; link < month + 20; link++) {
+                links.add("Target " + link);
+            }
+            expectedLinks.add(links);
+        }
+        for (int frameIndex : new int[] {5, 0, 1, 2, 3, 4, 11, 6, 7, 8, 9, 10 }) {
+            storage.storePageLinkInfo(new PageLinkInfo("Page", frames.get(frameIndex),
+                    Lists.newArrayList(expectedLinks.get(frameIndex)), 42), CREATION);
+        }
+
+        final List<Set<String>> actualLinks = Lists.newArrayList();
+        for (int i = 0; i < frames.size(); i++) {
+            actualLinks.add(Sets.<String>newHashSet());
+        }
+        storage.streamLinksForFrames(ImmutableSet.of(42, 43), frames, new LinkRowHandler() {
+            @Override
+            public void processLink(final int frameIndex, final int srcPageId, final String targetPageTitle) {
+                assertEquals(42, srcPageId);
+                actualLinks.get(frameIndex).add(targetPageTitle);
+            }
+        });
+        assertEquals(expectedLinks, actualLinks);
+        assertEquals(expectedLinks.get(7), Sets.newHashSet(storage.getAllLinksForRevision(42,
+                frames.get(7).toString(DBUtil.MYSQL_DATETIME_FORMATTER))));
+        assertFalse(storage.localDataForRecordUnavailable(42, frames.get(3)));
+        assertTrue(storage.localDataForRecordUnavailable(42, CREATION));
+        assertEquals(ImmutableMap.of(42, CREATION), storage.getCreationDates(ImmutableList.of(42, 43)));
+    }
+}
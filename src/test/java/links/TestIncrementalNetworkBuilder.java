@@ -0,0 +1,98 @@
+package links;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import org.joda.time.DateMidnight;
+import org.joda.time.DateTime;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import wikipedia.analysis.pagenetwork.ArticleNetworkBuilder;
+import wikipedia.analysis.pagenetwork.IncrementalNetworkBuilder;
+import wikipedia.database.DBUtil;
+import wikipedia.database.EmbeddedDatabase;
+import wikipedia.network.LinkSnapshots;
+import wikipedia.network.PageLinkInfo;
+import wikipedia.network.TimeFrameGraph;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+public final class TestIncrementalNetworkBuilder {
+
+    private static final DateTime CREATION = new DateMidnight(2009, 1, 1).toDateTime();
+    private static final List<DateTime> FRAMES = ImmutableList.of(new DateMidnight(2010, 1, 1).toDateTime(),
+            new DateMidnight(2010, 2, 1).toDateTime(), new DateMidnight(2010, 3, 1).toDateTime(),
+            new DateMidnight(2010, 4, 1).toDateTime(), new DateMidnight(2010, 5, 1).toDateTime(),
+            new DateMidnight(2010, 6, 1).toDateTime(), new DateMidnight(2010, 7, 1).toDateTime(),
+            new DateMidnight(2010, 8, 1).toDateTime());
+    private static final Map<Integer, String> PAGES = ImmutableMap.of(1, "A", 2, "B", 3, "C", 4, "D", 5, "E");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testSameGraphsAsFullBuild() {
+        DBUtil storage = createStorage("incremental");
+        assertSameGraphs(new ArticleNetworkBuilder(PAGES, storage, null, "A"), new IncrementalNetworkBuilder(PAGES,
+                storage, null, "A"));
+    }
+
+    @Test
+    public void testSameGraphsWithSnapshot() throws IOException {
+        DBUtil storage = createStorage("incrementalsnapshot");
+        LinkSnapshots.export(storage, PAGES, ImmutableList.of(FRAMES.get(1)), folder.getRoot());
+        LinkSnapshots snapshots = LinkSnapshots.open(folder.getRoot());
+        assertSameGraphs(new ArticleNetworkBuilder(PAGES, storage, snapshots, "A"), new IncrementalNetworkBuilder(
+                PAGES, storage, snapshots, "A"));
+    }
+
+    @Test
+    public void testSearchTermNotInNetwork() {
+        DBUtil storage = createStorage("incrementalmissing");
+        assertSameGraphs(new ArticleNetworkBuilder(PAGES, storage, null, "Missing"), new IncrementalNetworkBuilder(
+                PAGES, storage, null, "Missing"));
+    }
+
+    private static DBUtil createStorage(final String name) {
+        DBUtil storage = new DBUtil(EmbeddedDatabase.get("jdbc:h2:mem:" + name
+                + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1"));
+        // A and B link each other throughout, C joins, leaves and returns, E is only reached through D
+        storage.storePageLinkInfo(new PageLinkInfo("A", FRAMES.get(0), ImmutableList.of("B", "D", "Outside"), 1),
+                CREATION);
+        storage.storePageLinkInfo(new PageLinkInfo("B", FRAMES.get(0), ImmutableList.of("A"), 2), CREATION);
+        storage.storePageLinkInfo(new PageLinkInfo("D", FRAMES.get(0), ImmutableList.of("E", "D"), 4), CREATION);
+        storage.storePageLinkInfo(new PageLinkInfo("C", FRAMES.get(1), ImmutableList.of("A", "E"), 3), CREATION);
+        storage.storePageLinkInfo(new PageLinkInfo("A", FRAMES.get(1), ImmutableList.of("B", "C", "D"), 1),
+                CREATION);
+        storage.storePageLinkInfo(new PageLinkInfo("A", FRAMES.get(2), ImmutableList.of("B", "E"), 1), CREATION);
+        storage.storePageLinkInfo(new PageLinkInfo("D", FRAMES.get(2), ImmutableList.of("A"), 4), CREATION);
+        storage.storePageLinkInfo(new PageLinkInfo("A", FRAMES.get(3), ImmutableList.of("B", "C", "D"), 1),
+                CREATION);
+        storage.storePageLinkInfo(new PageLinkInfo("E", FRAMES.get(3), ImmutableList.of("C"), 5), CREATION);
+        // the later segment starts with a complete frame
+        storage.storePageLinkInfo(new PageLinkInfo("B", FRAMES.get(5), ImmutableList.of("A", "C"), 2), CREATION);
+        storage.storePageLinkInfo(new PageLinkInfo("A", FRAMES.get(6), ImmutableList.of("E"), 1), CREATION);
+        storage.storePageLinkInfo(new PageLinkInfo("C", FRAMES.get(7), ImmutableList.of("B"), 3), CREATION);
+        return storage;
+    }
+
+    private static void assertSameGraphs(final ArticleNetworkBuilder fullBuilder,
+                                         final IncrementalNetworkBuilder incrementalBuilder) {
+        List<TimeFrameGraph> incrementalGraphs = incrementalBuilder.getGraphsAtDates(FRAMES);
+        assertEquals(FRAMES.size(), incrementalGraphs.size());
+        for (int frameIndex = 0; frameIndex < FRAMES.size(); frameIndex++) {
+            TimeFrameGraph expected = fullBuilder.getGraphAtDate(FRAMES.get(frameIndex));
+            TimeFrameGraph actual = incrementalGraphs.get(frameIndex);
+            assertEquals(ImmutableList.copyOf(expected.getNameIndexMap().entrySet()), ImmutableList.copyOf(actual
+                    .getNameIndexMap().entrySet()));
+            assertEquals(expected.getAllEdges(), actual.getAllEdges());
+            assertEquals(expected.getFormatedDate(), actual.getFormatedDate());
+        }
+    }
+}
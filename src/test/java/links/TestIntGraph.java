@@ -0,0 +1,182 @@
+package links;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import wikipedia.network.BreadthFirstSearch;
+import wikipedia.network.DynamicIntGraph;
+import wikipedia.network.GraphEdge;
+import wikipedia.network.IntGraph;
+import wikipedia.network.Reciprocity;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+public final class TestIntGraph {
+
+    @Test
+    public void testForwardAndReverseAdjacency() {
+        IntGraph.Builder builder = new IntGraph.Builder();
+        final int a = builder.addNode("A");
+        final int b = builder.addNode("B");
+        final int c = builder.addNode("C");
+        builder.addEdge(c, a);
+        builder.addEdge(a, c);
+        builder.addEdge(a, b);
+        builder.addEdge(a, b);
+        builder.addEdge(b, b);
+        IntGraph graph = builder.build();
+
+        assertEquals(3, graph.getNumberOfNodes());
+        assertEquals(4, graph.getNumberOfEdges());
+        assertArrayEquals(new int[] {2, 1, 1 }, graph.getOutDegrees());
+        assertArrayEquals(new int[] {1, 2, 1 }, graph.getInDegrees());
+        assertEquals(b, graph.getTarget(graph.getFirstOutEdge(a)));
+        assertEquals(c, graph.getTarget(graph.getFirstOutEdge(a) + 1));
+        assertEquals(a, graph.getSource(graph.getFirstInEdge(b)));
+        assertEquals(b, graph.getSource(graph.getFirstInEdge(b) + 1));
+        assertTrue(graph.hasEdge(c, a));
+        assertFalse(graph.hasEdge(b, a));
+        assertEquals(c, graph.getNode("C"));
+        assertEquals(-1, graph.getNode("D"));
+    }
+
+    @Test
+    public void testBulkEdgesMatchSingleEdges() {
+        IntGraph.Builder builder = new IntGraph.Builder();
+        final int a = builder.addNode("A");
+        final int b = builder.addNode("B");
+        final int c = builder.addNode("C");
+        builder.addEdge(c, a);
+        long[] packedEdges = new long[2000];
+        for (int i = 0; i < packedEdges.length; i++) {
+            packedEdges[i] = ((long) a << 32) | (i % 2 == 0 ? b : c);
+        }
+        builder.addEdges(packedEdges);
+        IntGraph graph = builder.build();
+
+        assertEquals(3, graph.getNumberOfEdges());
+        assertArrayEquals(new int[] {2, 0, 1 }, graph.getOutDegrees());
+        assertTrue(graph.hasEdge(a, b));
+        assertTrue(graph.hasEdge(a, c));
+        assertTrue(graph.hasEdge(c, a));
+    }
+
+    @Test
+    public void testBulkNodesReuseExistingNodes() {
+        IntGraph.Builder builder = new IntGraph.Builder();
+        final int b = builder.addNode("B");
+        assertArrayEquals(new int[] {1, b, 2 }, builder.addNodes(ImmutableList.of("A", "B", "C")));
+        assertEquals(3, builder.build().getNumberOfNodes());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBulkEdgesRejectUnknownNodes() {
+        IntGraph.Builder builder = new IntGraph.Builder();
+        builder.addNode("A");
+        builder.addEdges(new long[] {1L });
+    }
+
+    @Test
+    public void testEdgesWithinSkipSelfLinks() {
+        IntGraph.Builder builder = new IntGraph.Builder();
+        builder.addEdge("A", "B");
+        builder.addEdge("B", "A");
+        builder.addEdge("B", "B");
+        builder.addEdge("B", "C");
+        IntGraph graph = builder.build();
+
+        assertEquals(ImmutableSet.of(new GraphEdge("A", "B"), new GraphEdge("B", "A")),
+                Sets.newHashSet(graph.getEdgesWithin(ImmutableList.of("A", "B", "D"))));
+    }
+
+    @Test
+    public void testReciprocity() {
+        IntGraph.Builder builder = new IntGraph.Builder();
+        builder.addEdge("A", "B");
+        builder.addEdge("B", "A");
+        builder.addEdge("A", "C");
+        builder.addEdge("C", "A");
+        builder.addEdge("B", "C");
+        builder.addEdge("C", "C");
+        final IntGraph graph = builder.build();
+        final int a = graph.getNode("A");
+        final int c = graph.getNode("C");
+
+        assertArrayEquals(new int[] {graph.getNode("B"), c }, Reciprocity.getMutualNeighbors(graph, a));
+        assertArrayEquals(new int[] {a, c }, Reciprocity.getMutualNeighbors(graph, c));
+        assertArrayEquals(new int[] {2, 1, 2 }, Reciprocity.getMutualDegrees(graph));
+        assertArrayEquals(new float[] {1f, 0.5f, 1f }, Reciprocity.getReciprocity(graph), 0f);
+
+        final List<GraphEdge> pairs = Lists.newArrayList();
+        final int numberOfPairs = Reciprocity.forEachReciprocalPair(graph, new Reciprocity.PairHandler() {
+            @Override
+            public void reciprocalPair(final int node, final int otherNode) {
+                pairs.add(new GraphEdge(graph.getName(node), graph.getName(otherNode)));
+            }
+        });
+        assertEquals(3, numberOfPairs);
+        assertEquals(ImmutableList.of(new GraphEdge("A", "B"), new GraphEdge("A", "C"), new GraphEdge("C", "C")),
+                pairs);
+    }
+
+    @Test
+    public void testBreadthFirstSearch() {
+        IntGraph.Builder builder = new IntGraph.Builder();
+        builder.addEdge("A", "B");
+        builder.addEdge("B", "C");
+        builder.addEdge("C", "D");
+        builder.addEdge("A", "D");
+        builder.addEdge("D", "E");
+        builder.addNode("F");
+        IntGraph graph = builder.build();
+        final int a = graph.getNode("A");
+        final int e = graph.getNode("E");
+        final int u = BreadthFirstSearch.UNREACHABLE;
+
+        assertArrayEquals(new int[] {0, 1, 2, 1, 2, u }, BreadthFirstSearch.getDistances(graph, a));
+        assertArrayEquals(new int[] {u, 0, 1, 2, 3, u }, BreadthFirstSearch.getDistances(graph, graph.getNode("B")));
+        assertArrayEquals(new int[] {0, 1, 0, 1, 2, u },
+                BreadthFirstSearch.getDistances(graph, new int[] {a, graph.getNode("C") }));
+        assertEquals(2, BreadthFirstSearch.getDistance(graph, a, e));
+        assertEquals(0, BreadthFirstSearch.getDistance(graph, e, e));
+        assertEquals(u, BreadthFirstSearch.getDistance(graph, e, a));
+        assertEquals(u, BreadthFirstSearch.getDistance(graph, a, graph.getNode("F")));
+    }
+
+    @Test
+    public void testDynamicGraphFollowsChanges() {
+        IntGraph.Builder builder = new IntGraph.Builder();
+        final int a = builder.addNode("A");
+        final int b = builder.addNode("B");
+        final int c = builder.addNode("C");
+        builder.addEdge(a, b);
+        builder.addEdge(b, a);
+        builder.addEdge(a, c);
+        DynamicIntGraph graph = new DynamicIntGraph(builder.build());
+        assertArrayEquals(new int[] {b }, graph.getMutualNeighbors(a));
+
+        assertTrue(graph.addEdge(c, a));
+        assertFalse(graph.addEdge(c, a));
+        assertTrue(graph.addEdge(c, c));
+        assertTrue(graph.removeEdge(b, a));
+        assertFalse(graph.removeEdge(b, a));
+
+        assertEquals(4, graph.getNumberOfEdges());
+        assertArrayEquals(new int[] {1, 1, 2 }, graph.getInDegrees());
+        assertArrayEquals(new int[] {c }, graph.getMutualNeighbors(a));
+        assertEquals(2, graph.getMutualDegree(c));
+        assertEquals(0, graph.getMutualDegree(b));
+        assertArrayEquals(new int[] {BreadthFirstSearch.UNREACHABLE, 0, BreadthFirstSearch.UNREACHABLE },
+                BreadthFirstSearch.getDistances(graph, b));
+        assertArrayEquals(new int[] {0, 1, 1 }, BreadthFirstSearch.getDistances(graph, a));
+    }
+}
@@ -0,0 +1,32 @@
+package links;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import org.junit.Test;
+
+import wikipedia.database.LinkDeltas;
+
+public final class TestLinkDeltas {
+
+    @Test
+    public void testDifference() {
+        assertArrayEquals(new int[] {1, 7 }, LinkDeltas.difference(new int[] {1, 3, 7, 9 }, new int[] {2, 3, 9 }));
+        assertArrayEquals(new int[0], LinkDeltas.difference(new int[0], new int[] {1 }));
+    }
+
+    @Test
+    public void testUnion() {
+        assertArrayEquals(new int[] {1, 2, 3, 9 }, LinkDeltas.union(new int[] {1, 3, 9 }, new int[] {2, 3 }));
+    }
+
+    @Test
+    public void testApplyRebuildsNextFrame() {
+        final int[] previous = {10, 20, 30, 40 };
+        final int[] next = {10, 25, 30, 40, 50 };
+        final int[] added = LinkDeltas.difference(next, previous);
+        final int[] removed = LinkDeltas.difference(previous, next);
+        assertArrayEquals(new int[] {25, 50 }, added);
+        assertArrayEquals(new int[] {20 }, removed);
+        assertArrayEquals(next, LinkDeltas.apply(previous, added, removed));
+    }
+}
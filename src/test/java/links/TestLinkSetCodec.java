@@ -0,0 +1,34 @@
+package links;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import wikipedia.database.LinkSetCodec;
+
+public final class TestLinkSetCodec {
+
+    @Test
+    public void testRoundTripSortsAndRemovesDuplicates() {
+        final int[] titleIds = {300000, 5, 127, 128, 5, 16384, Integer.MAX_VALUE };
+        assertArrayEquals(new int[] {5, 127, 128, 16384, 300000, Integer.MAX_VALUE },
+                LinkSetCodec.decode(LinkSetCodec.encode(titleIds)));
+    }
+
+    @Test
+    public void testEmptyLinkSet() {
+        assertArrayEquals(new int[0], LinkSetCodec.decode(LinkSetCodec.encode(new int[0])));
+    }
+
+    @Test
+    public void testDenseIdsCompress() {
+        final int[] titleIds = new int[1000];
+        for (int i = 0; i < titleIds.length; i++) {
+            titleIds[i] = 1000000 + i * 3;
+        }
+        final byte[] encoded = LinkSetCodec.encode(titleIds);
+        assertTrue(encoded.length < titleIds.length / 10);
+        assertArrayEquals(titleIds, LinkSetCodec.decode(encoded));
+    }
+}
@@ -0,0 +1,58 @@
+package links;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.Map;
+
+import org.joda.time.DateMidnight;
+import org.joda.time.DateTime;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import wikipedia.database.DBUtil;
+import wikipedia.database.EmbeddedDatabase;
+import wikipedia.network.CsrSnapshot;
+import wikipedia.network.LinkSnapshots;
+import wikipedia.network.PageLinkInfo;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+public final class TestLinkSnapshots {
+
+    private static final DateTime CREATION = new DateMidnight(2010, 1, 1).toDateTime();
+    private static final DateTime FRAME = new DateMidnight(2011, 1, 1).toDateTime();
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testExportAndReadFrame() throws IOException {
+        DBUtil storage = new DBUtil(EmbeddedDatabase.get("jdbc:h2:mem:snapshots"
+                + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1"));
+        storage.storePageLinkInfo(new PageLinkInfo("A", FRAME, ImmutableList.of("B", "C", "Outside"), 1),
+                CREATION);
+        storage.storePageLinkInfo(new PageLinkInfo("B", FRAME, ImmutableList.of("A"), 2), CREATION);
+        storage.storePageLinkInfo(new PageLinkInfo("C", FRAME, ImmutableList.of("A", "B"), 3), CREATION);
+        final Map<Integer, String> pages = ImmutableMap.of(3, "C", 1, "A", 2, "B");
+
+        LinkSnapshots.export(storage, pages, ImmutableList.of(FRAME), folder.getRoot());
+        LinkSnapshots snapshots = LinkSnapshots.open(folder.getRoot());
+        assertTrue(snapshots.hasFrame(FRAME));
+        assertFalse(snapshots.hasFrame(CREATION));
+        assertEquals(pages, snapshots.getPages());
+
+        CsrSnapshot frame = snapshots.getFrame(FRAME);
+        assertEquals(3, frame.getNumberOfNodes());
+        assertEquals(5, frame.getNumberOfEdges());
+        assertEquals(2, frame.getOutDegree(0));
+        assertEquals(1, frame.getTarget(frame.getFirstEdge(0)));
+
+        assertEquals(ImmutableList.of(), snapshots.getMissingPages(ImmutableList.of(1, 2)));
+        assertEquals(ImmutableList.of(4), snapshots.getMissingPages(ImmutableList.of(1, 4, 3)));
+    }
+}
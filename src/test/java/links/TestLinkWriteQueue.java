@@ -0,0 +1,98 @@
+package links;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.joda.time.DateMidnight;
+import org.joda.time.DateTime;
+import org.junit.Test;
+
+import wikipedia.database.DBUtil;
+import wikipedia.database.EmbeddedDatabase;
+import wikipedia.database.LinkRowHandler;
+import wikipedia.database.LinkStorage;
+import wikipedia.database.LinkWriteQueue;
+import wikipedia.network.PageLinkInfo;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+public final class TestLinkWriteQueue {
+
+    private static final DateTime CREATION = new DateMidnight(2010, 1, 1).toDateTime();
+    private static final List<Integer> PAGE_IDS = ImmutableList.of(1, 2, 3);
+    private static final int NUMBER_OF_FRAMES = 12;
+
+    @Test
+    public void testAllQueuedLinkInfosAreStoredOnClose() throws InterruptedException {
+        DBUtil storage = new DBUtil(EmbeddedDatabase.get("jdbc:h2:mem:writequeue"
+                + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1"));
+        storage.setLinkStorage(LinkStorage.LINK_DELTAS);
+        List<DateTime> frames = Lists.newArrayList();
+        for (int month = 0; month < NUMBER_OF_FRAMES; month++) {
+            frames.add(CREATION.plusMonths(month + 1));
+        }
+
+        // small queue and batches, producers have to wait for the writers
+        LinkWriteQueue queue = new LinkWriteQueue(storage, 4, 2, 5);
+        for (int frameIndex = 0; frameIndex < NUMBER_OF_FRAMES; frameIndex++) {
+            for (int pageId : PAGE_IDS) {
+                queue.put(new PageLinkInfo("Page " + pageId, frames.get(frameIndex),
+                        Lists.newArrayList(getLinks(pageId, frameIndex)), pageId), CREATION);
+            }
+        }
+        queue.close();
+        assertEquals(PAGE_IDS.size() * NUMBER_OF_FRAMES, queue.getNumberOfStoredLinkInfos());
+        assertEquals(0, queue.getNumberOfFailedLinkInfos());
+
+        final Map<String, Set<String>> actualLinks = Maps.newHashMap();
+        storage.streamLinksForFrames(PAGE_IDS, frames, new LinkRowHandler() {
+            @Override
+            public void processLink(final int frameIndex, final int srcPageId, final String targetPageTitle) {
+                final String key = srcPageId + "@" + frameIndex;
+                if (!actualLinks.containsKey(key)) {
+                    actualLinks.put(key, Sets.<String>newHashSet());
+                }
+                actualLinks.get(key).add(targetPageTitle);
+            }
+        });
+        for (int frameIndex = 0; frameIndex < NUMBER_OF_FRAMES; frameIndex++) {
+            for (int pageId : PAGE_IDS) {
+                assertEquals(getLinks(pageId, frameIndex), actualLinks.get(pageId + "@" + frameIndex));
+            }
+        }
+    }
+
+    @Test
+    public void testOnlyFailingLinkInfosAreDropped() throws InterruptedException {
+        DBUtil storage = new DBUtil(EmbeddedDatabase.get("jdbc:h2:mem:writequeuefailures"
+                + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1"));
+        storage.setLinkStorage(LinkStorage.LINK_DELTAS);
+        LinkWriteQueue queue = new LinkWriteQueue(storage, 20, 1, 20);
+        for (int month = 1; month <= 6; month++) {
+            queue.put(new PageLinkInfo("Page 1", CREATION.plusMonths(month),
+                    Lists.newArrayList(getLinks(1, month)), 1), CREATION);
+            if (month == 3) {
+                // no revision date, can not be stored
+                queue.put(new PageLinkInfo("Page 2", null, Lists.newArrayList(getLinks(2, month)), 2), CREATION);
+            }
+        }
+        queue.close();
+        assertEquals(6, queue.getNumberOfStoredLinkInfos());
+        assertEquals(1, queue.getNumberOfFailedLinkInfos());
+    }
+
+    private static Set<String> getLinks(final int pageId,
+                                        final int frameIndex) {
+        Set<String> links = Sets.newHashSet();
+        for (int link = frameIndex; link < frameIndex + 10 * pageId; link++) {
+            links.add("Target " + link);
+        }
+        return links;
+    }
+}
@@ -0,0 +1,52 @@
+package links;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.junit.Test;
+
+import wikipedia.analysis.useractivity.Revisions;
+
+public final class TestRevisions {
+
+    @Test
+    public void testAnonymousEditsIgnored() {
+        Revisions revisions = new Revisions("Test");
+        revisions.addEdit("Alice", "2011-07-01T10:00:00Z", 10);
+        revisions.addEdit("192.168.0.1", "2011-07-01T11:00:00Z", 10);
+        revisions.addEdit("2001:DB8::8:800:200C:417A", "2011-07-01T12:00:00Z", 10);
+        revisions.addEdit(null, "2011-07-01T13:00:00Z", 10);
+        revisions.addEdit("Mr. Smith", "2011-07-01T14:00:00Z", 10);
+        revisions.addEdit("Cafe:Bad:Face", "2011-07-01T15:00:00Z", 10);
+        revisions.addEdit("1.2.3", "2011-07-01T16:00:00Z", 10);
+        assertEquals(4, revisions.getNumberOfRevisions());
+        assertEquals(4, revisions.getNumberOfUsers());
+    }
+
+    @Test
+    public void testEditsPerAuthor() {
+        Revisions revisions = new Revisions("Test");
+        for (int i = 0; i < 1000; i++) {
+            revisions.addEdit(i % 3 == 0 ? "Alice" : "Bob", "2011-07-01T10:00:00Z", i);
+        }
+        assertEquals(1000, revisions.getNumberOfRevisions());
+        assertEquals(Integer.valueOf(334), revisions.getEditsPerAuthor().get("Alice"));
+        assertEquals(Integer.valueOf(666), revisions.getEditsPerAuthor().get("Bob"));
+        assertEquals(999, revisions.getEditSize(999));
+        assertEquals("Alice", revisions.getRevisions().get(999).getUserID());
+    }
+
+    @Test
+    public void testEditsPerWindow() {
+        Revisions revisions = new Revisions("Test");
+        revisions.addEdit("Alice", "2011-07-01T10:00:00Z", 1);
+        revisions.addEdit("Alice", "2011-07-02T10:00:00Z", 1);
+        revisions.addEdit("Bob", "2011-07-02T11:00:00Z", 1);
+        revisions.addEdit("Bob", "2011-07-09T11:00:00Z", 1);
+        final long start = new DateTime(2011, 7, 1, 0, 0, 0, 0, DateTimeZone.UTC).getMillis();
+        final long day = 24L * 60 * 60 * 1000;
+        assertArrayEquals(new int[] {1, 2, 0 }, revisions.getEditsPerWindow(start, day, 3));
+    }
+}
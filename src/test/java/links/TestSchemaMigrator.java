@@ -0,0 +1,59 @@
+package links;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sql.DataSource;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import wikipedia.database.EmbeddedDatabase;
+import wikipedia.database.SchemaMigration;
+import wikipedia.database.SchemaMigrator;
+
+import com.google.common.collect.ImmutableList;
+
+public final class TestSchemaMigrator {
+
+    @Test
+    public void testUnversionedDatabaseStartsAtBaseline() {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:unversioned;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1");
+        final AtomicInteger applied = new AtomicInteger();
+        SchemaMigrator migrator = new SchemaMigrator(dataSource, ImmutableList.of(
+                countingMigration(SchemaMigrator.BASELINE_VERSION, applied),
+                countingMigration(SchemaMigrator.BASELINE_VERSION + 1, applied)));
+
+        assertEquals(SchemaMigrator.BASELINE_VERSION + 1, migrator.migrate());
+        assertEquals(1, applied.get());
+    }
+
+    @Test
+    public void testPendingMigrationsAreAppliedOnce() {
+        DataSource dataSource = EmbeddedDatabase.get("jdbc:h2:mem:versioned"
+                + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1");
+        final AtomicInteger applied = new AtomicInteger();
+        SchemaMigrator migrator = new SchemaMigrator(dataSource, ImmutableList.of(
+                countingMigration(2, applied), countingMigration(3, applied), countingMigration(4, applied)));
+
+        // the embedded schema is created at version 2
+        assertEquals(2, migrator.getCurrentVersion());
+        assertEquals(4, migrator.migrate());
+        assertEquals(4, migrator.migrate());
+        assertEquals(2, applied.get());
+        assertEquals(3, new JdbcTemplate(dataSource).queryForInt("SELECT COUNT(0) FROM schema_version"));
+    }
+
+    private static SchemaMigration countingMigration(final int version,
+                                                     final AtomicInteger applied) {
+        return new SchemaMigration(version, "test " + version) {
+            @Override
+            public void apply(final DataSource dataSource) {
+                applied.incrementAndGet();
+            }
+        };
+    }
+}
@@ -0,0 +1,35 @@
+package links;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Map;
+
+import org.junit.Test;
+
+import util.TopK;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+
+public final class TestTopK {
+
+    @Test
+    public void testLargestEntries() {
+        Map<String, Integer> editsPerPage = ImmutableMap.of("A", 3, "B", 7, "C", 1, "D", 5);
+        assertEquals(ImmutableList.of("B", "D"), Lists.newArrayList(TopK.largest(editsPerPage, 2).keySet()));
+        assertEquals(ImmutableList.of(7, 5, 3, 1), Lists.newArrayList(TopK.largest(editsPerPage, 10).values()));
+        assertEquals(0, TopK.largest(editsPerPage, 0).size());
+    }
+
+    @Test
+    public void testPrimitiveSelection() {
+        final int[] values = {4, 9, 0, 7, 2, 9, 5 };
+        assertArrayEquals(new int[] {3, 6, 0 }, TopK.largest(values, new int[] {0, 2, 3, 4, 6 }, 3));
+        assertArrayEquals(new int[] {2, 4, 0 }, TopK.smallest(values, new int[] {0, 2, 3, 4, 6 }, 3));
+        assertArrayEquals(new int[] {2, 4 }, TopK.smallest(values, new int[] {4, 2 }, 5));
+        assertEquals(9, values[TopK.largest(values, 2)[1]]);
+        assertEquals(7, TopK.largest(values, 7).length);
+    }
+}